@@ -0,0 +1,195 @@
+// Slice-level culling kernels shared by the JNI and C ABI entry points. Every kernel has a scalar
+// loop and, with the `simd` feature, an f64x4 body; `for_chunks` splits large batches across the
+// bounded Rayon pool set by NativeCulling.configureThreads (single-threaded until configured).
+
+use rayon::prelude::*;
+use std::sync::atomic::{AtomicUsize, Ordering};
+use std::sync::{Arc, RwLock};
+
+static POOL: RwLock<Option<Arc<rayon::ThreadPool>>> = RwLock::new(None);
+static MIN_PARALLEL: AtomicUsize = AtomicUsize::new(usize::MAX);
+const MIN_CHUNK: usize = 1024;
+
+// threads <= 0 drops the pool; batches shorter than min_parallel always run on the calling thread
+pub fn configure(threads: i32, min_parallel: i32) -> Result<(), String> {
+    let pool = if threads > 0 {
+        let p = rayon::ThreadPoolBuilder::new()
+            .num_threads(threads as usize)
+            .thread_name(|i| format!("culling-rs-{}", i))
+            .build()
+            .map_err(|e| e.to_string())?;
+        Some(Arc::new(p))
+    } else {
+        None
+    };
+    let min = if pool.is_some() { (min_parallel.max(1) as usize).max(MIN_CHUNK) } else { usize::MAX };
+    match POOL.write() {
+        Ok(mut g) => *g = pool,
+        Err(p) => *p.into_inner() = pool,
+    }
+    MIN_PARALLEL.store(min, Ordering::Relaxed);
+    Ok(())
+}
+
+// Runs f(start, out_chunk) over `out`, in parallel chunks when the batch is large enough. JNI entry
+// points only: the C ABI ones run under FFM critical downcalls, which must not block on the pool
+pub fn for_chunks<F>(out: &mut [u8], f: F)
+where
+    F: Fn(usize, &mut [u8]) + Sync,
+{
+    let n = out.len();
+    let pool = if n >= MIN_PARALLEL.load(Ordering::Relaxed) {
+        POOL.read().ok().and_then(|g| g.clone())
+    } else {
+        None
+    };
+    match pool {
+        Some(p) => {
+            let chunk = (n / (p.current_num_threads() * 4)).max(MIN_CHUNK);
+            p.install(|| out.par_chunks_mut(chunk).enumerate().for_each(|(ci, o)| f(ci * chunk, o)));
+        }
+        None => f(0, out),
+    }
+}
+
+#[inline]
+fn type_code(t: i32, types: usize) -> usize {
+    if t < 0 || t as usize >= types { 0 } else { t as usize }
+}
+
+// True when the box (centre x/y/z relative to the eye, half extents hw/hh/hw) is fully behind one of
+// the 4 frustum side planes; each plane is an inward unit normal through the eye
+#[inline]
+pub fn box_outside_frustum(planes: &[f64], x: f64, y: f64, z: f64, hw: f64, hh: f64) -> bool {
+    for q in 0..4 {
+        let nx = planes[q * 3];
+        let ny = planes[q * 3 + 1];
+        let nz = planes[q * 3 + 2];
+        let radius = hw * (nx.abs() + nz.abs()) + hh * ny.abs();
+        if nx * x + ny * y + nz * z < -radius { return true; }
+    }
+    false
+}
+
+#[cfg(feature = "simd")]
+mod lanes {
+    pub use wide::*;
+
+    #[inline]
+    pub fn load(a: &[f64], i: usize) -> f64x4 {
+        f64x4::from([a[i], a[i + 1], a[i + 2], a[i + 3]])
+    }
+
+    #[inline]
+    pub fn store_mask(out: &mut [u8], i: usize, m: f64x4) {
+        let bits = m.move_mask();
+        for k in 0..4 { out[i + k] = ((bits >> k) & 1) as u8; }
+    }
+}
+
+// Global thresholds; `start` offsets the inputs for a chunk of `out`
+pub fn cone_global(d: &[f64], s: &[f64], c: &[f64], md: f64, st: f64, ct: f64, start: usize, out: &mut [u8]) {
+    let n = out.len();
+    let (d, s, c) = (&d[start..start + n], &s[start..start + n], &c[start..start + n]);
+    #[allow(unused_mut)]
+    let mut i = 0usize;
+    #[cfg(feature = "simd")]
+    {
+        use lanes::*;
+        let (vmd, vst, vct) = (f64x4::splat(md), f64x4::splat(st), f64x4::splat(ct));
+        while i + 4 <= n {
+            store_mask(out, i, load(d, i).cmp_gt(vmd) & load(s, i).cmp_lt(vst) & load(c, i).cmp_lt(vct));
+            i += 4;
+        }
+    }
+    while i < n {
+        out[i] = (d[i] > md && s[i] < st && c[i] < ct) as u8;
+        i += 1;
+    }
+}
+
+// Per-type thresholds indexed by type code (out-of-range codes use the defaults at 0)
+pub fn cone_by_type(d: &[f64], s: &[f64], c: &[f64], t: &[i32], md: &[f64], st: &[f64], ct: &[f64], start: usize, out: &mut [u8]) {
+    let n = out.len();
+    let types = md.len();
+    let (d, s, c, t) = (&d[start..start + n], &s[start..start + n], &c[start..start + n], &t[start..start + n]);
+    #[allow(unused_mut)]
+    let mut i = 0usize;
+    #[cfg(feature = "simd")]
+    {
+        use lanes::*;
+        while i + 4 <= n {
+            let k = [type_code(t[i], types), type_code(t[i + 1], types), type_code(t[i + 2], types), type_code(t[i + 3], types)];
+            let vmd = f64x4::from([md[k[0]], md[k[1]], md[k[2]], md[k[3]]]);
+            let vst = f64x4::from([st[k[0]], st[k[1]], st[k[2]], st[k[3]]]);
+            let vct = f64x4::from([ct[k[0]], ct[k[1]], ct[k[2]], ct[k[3]]]);
+            store_mask(out, i, load(d, i).cmp_gt(vmd) & load(s, i).cmp_lt(vst) & load(c, i).cmp_lt(vct));
+            i += 4;
+        }
+    }
+    while i < n {
+        let k = type_code(t[i], types);
+        out[i] = (d[i] > md[k] && s[i] < st[k] && c[i] < ct[k]) as u8;
+        i += 1;
+    }
+}
+
+#[inline]
+fn frustum_one(d: f64, s: f64, rel: &[f64], ext: &[f64], v: i32, planes: &[f64], md: f64, st: f64) -> u8 {
+    if !(d > md && s < st) || v < 0 { return 0; }
+    let base = v as usize * 12;
+    if base + 12 > planes.len() { return 0; }
+    box_outside_frustum(&planes[base..base + 12], rel[0], rel[1], rel[2], ext[0], ext[1]) as u8
+}
+
+// Bounding boxes against per-viewer frustum planes (12 f64 per viewer), per-type distance/speed
+pub fn frustum(d: &[f64], s: &[f64], rel: &[f64], ext: &[f64], pv: &[i32], planes: &[f64], t: &[i32],
+               md: &[f64], st: &[f64], start: usize, out: &mut [u8]) {
+    let n = out.len();
+    let types = md.len();
+    #[allow(unused_mut)]
+    let mut i = 0usize;
+    #[cfg(feature = "simd")]
+    {
+        use lanes::*;
+        let nv = planes.len() / 12;
+        while i + 4 <= n {
+            let g = start + i;
+            let k = [type_code(t[g], types), type_code(t[g + 1], types), type_code(t[g + 2], types), type_code(t[g + 3], types)];
+            let v = [pv[g], pv[g + 1], pv[g + 2], pv[g + 3]];
+            if v.iter().any(|&x| x < 0 || x as usize >= nv) {
+                for l in 0..4 {
+                    let p = g + l;
+                    out[i + l] = frustum_one(d[p], s[p], &rel[p * 3..p * 3 + 3], &ext[p * 2..p * 2 + 2], pv[p], planes, md[k[l]], st[k[l]]);
+                }
+                i += 4;
+                continue;
+            }
+            let b = [v[0] as usize * 12, v[1] as usize * 12, v[2] as usize * 12, v[3] as usize * 12];
+            let near = load(d, g).cmp_gt(f64x4::from([md[k[0]], md[k[1]], md[k[2]], md[k[3]]]))
+                & load(s, g).cmp_lt(f64x4::from([st[k[0]], st[k[1]], st[k[2]], st[k[3]]]));
+            let x = f64x4::from([rel[g * 3], rel[g * 3 + 3], rel[g * 3 + 6], rel[g * 3 + 9]]);
+            let y = f64x4::from([rel[g * 3 + 1], rel[g * 3 + 4], rel[g * 3 + 7], rel[g * 3 + 10]]);
+            let z = f64x4::from([rel[g * 3 + 2], rel[g * 3 + 5], rel[g * 3 + 8], rel[g * 3 + 11]]);
+            let hw = f64x4::from([ext[g * 2], ext[g * 2 + 2], ext[g * 2 + 4], ext[g * 2 + 6]]);
+            let hh = f64x4::from([ext[g * 2 + 1], ext[g * 2 + 3], ext[g * 2 + 5], ext[g * 2 + 7]]);
+            let mut outside = f64x4::splat(0.0); // all lanes false
+            for q in 0..4 {
+                let o = q * 3;
+                let nx = f64x4::from([planes[b[0] + o], planes[b[1] + o], planes[b[2] + o], planes[b[3] + o]]);
+                let ny = f64x4::from([planes[b[0] + o + 1], planes[b[1] + o + 1], planes[b[2] + o + 1], planes[b[3] + o + 1]]);
+                let nz = f64x4::from([planes[b[0] + o + 2], planes[b[1] + o + 2], planes[b[2] + o + 2], planes[b[3] + o + 2]]);
+                let radius = hw * (nx.abs() + nz.abs()) + hh * ny.abs();
+                outside = outside | (nx * x + ny * y + nz * z).cmp_lt(f64x4::splat(0.0) - radius);
+            }
+            store_mask(out, i, near & outside);
+            i += 4;
+        }
+    }
+    while i < n {
+        let p = start + i;
+        let k = type_code(t[p], types);
+        out[i] = frustum_one(d[p], s[p], &rel[p * 3..p * 3 + 3], &ext[p * 2..p * 2 + 2], pv[p], planes, md[k], st[k]);
+        i += 1;
+    }
+}
@@ -4,6 +4,21 @@ use jni::objects::{JObject};
 use jni::sys::{jobject, jint, jdouble};
 use jni::JNIEnv;
 
+mod kernels;
+use kernels::box_outside_frustum;
+
+// Sizes the shared Rayon pool used by the batch kernels (JNI and C ABI); threads <= 0 keeps them on the
+// calling thread, as do batches shorter than min_parallel. Returns false (pool unchanged) on error.
+#[no_mangle]
+pub extern "system" fn Java_id_rnggagib_nativebridge_NativeCulling_configureThreads(
+    _env: JNIEnv,
+    _class: JClass,
+    threads: jint,
+    min_parallel: jint,
+) -> jboolean {
+    if kernels::configure(threads, min_parallel).is_ok() { 1 } else { 0 }
+}
+
 #[no_mangle]
 pub extern "system" fn Java_id_rnggagib_nativebridge_NativeCulling_shouldCull(
     _env: JNIEnv,
@@ -49,12 +64,8 @@ pub extern "system" fn Java_id_rnggagib_nativebridge_NativeCulling_shouldCullBat
     if let Err(e) = env.get_double_array_region(&speeds, 0, &mut s) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("speeds read error: {}", e)); return std::ptr::null_mut(); }
     if let Err(e) = env.get_double_array_region(&cos_angles, 0, &mut c) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("cosAngles read error: {}", e)); return std::ptr::null_mut(); }
 
-    let mut out_vec: Vec<jboolean> = Vec::with_capacity(len_d);
-    unsafe { out_vec.set_len(len_d); }
-    for i in 0..len_d {
-        let cull = d[i] > max_distance && s[i] < speed_threshold && c[i] < cos_angle_threshold;
-        out_vec[i] = if cull { 1 } else { 0 };
-    }
+    let mut out_vec: Vec<jboolean> = vec![0; len_d];
+    kernels::for_chunks(&mut out_vec, |start, o| kernels::cone_global(&d, &s, &c, max_distance, speed_threshold, cos_angle_threshold, start, o));
     let arr = match env.new_boolean_array(len_d as i32) { Ok(a) => a, Err(e) => { let _ = env.throw_new("java/lang/RuntimeException", format!("allocate boolean[] failed: {}", e)); return std::ptr::null_mut(); } };
     if let Err(e) = env.set_boolean_array_region(&arr, 0, &out_vec) {
         let _ = env.throw_new("java/lang/RuntimeException", format!("write boolean[] failed: {}", e));
@@ -93,36 +104,9 @@ pub extern "system" fn Java_id_rnggagib_nativebridge_NativeCulling_shouldCullBat
     if let Err(e) = env.get_double_array_region(&speeds, 0, &mut s) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("speeds read error: {}", e)); return; }
     if let Err(e) = env.get_double_array_region(&cos_angles, 0, &mut c) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("cosAngles read error: {}", e)); return; }
 
-    #[cfg(feature = "simd")]
-    {
-        use wide::f64x4;
-        let mut out: Vec<jboolean> = vec![0; len];
-        let mut i = 0usize;
-        while i + 4 <= len {
-            let vd = f64x4::from_slice_unaligned(&d[i..]);
-            let vs = f64x4::from_slice_unaligned(&s[i..]);
-            let vc = f64x4::from_slice_unaligned(&c[i..]);
-            let md = f64x4::splat(max_distance);
-            let st = f64x4::splat(speed_threshold);
-            let ct = f64x4::splat(cos_angle_threshold);
-            let mask = (vd.gt(md) & vs.lt(st) & vc.lt(ct)).to_int().to_array();
-            for k in 0..4 { out[i + k] = if mask[k] != 0 { 1 } else { 0 }; }
-            i += 4;
-        }
-        while i < len {
-            out[i] = if d[i] > max_distance && s[i] < speed_threshold && c[i] < cos_angle_threshold { 1 } else { 0 };
-            i += 1;
-        }
-    if let Err(e) = env.set_boolean_array_region(&out_flags, 0, &out) { let _ = env.throw_new("java/lang/RuntimeException", format!("write boolean[] failed: {}", e)); }
-        return;
-    }
-
-    // Scalar fallback
     let mut out: Vec<jboolean> = vec![0; len];
-    for i in 0..len {
-        out[i] = if d[i] > max_distance && s[i] < speed_threshold && c[i] < cos_angle_threshold { 1 } else { 0 };
-    }
-    let _ = env.set_boolean_array_region(&out_flags, 0, &out);
+    kernels::for_chunks(&mut out, |start, o| kernels::cone_global(&d, &s, &c, max_distance, speed_threshold, cos_angle_threshold, start, o));
+    if let Err(e) = env.set_boolean_array_region(&out_flags, 0, &out) { let _ = env.throw_new("java/lang/RuntimeException", format!("write boolean[] failed: {}", e)); }
 }
 
 #[no_mangle]
@@ -176,12 +160,7 @@ pub extern "system" fn Java_id_rnggagib_nativebridge_NativeCulling_shouldCullBat
     if env.get_double_array_region(&type_ct, 0, &mut ct).is_err() { return; }
 
     let mut out: Vec<jboolean> = vec![0; len];
-    for i in 0..len {
-        let code = t[i] as usize;
-        if code >= type_md_len { continue; }
-        let cull = d[i] > md[code] && s[i] < st[code] && c[i] < ct[code];
-        out[i] = if cull { 1 } else { 0 };
-    }
+    kernels::for_chunks(&mut out, |start, o| kernels::cone_by_type(&d, &s, &c, &t, &md, &st, &ct, start, o));
     if let Err(e) = env.set_boolean_array_region(&out_flags, 0, &out) { let _ = env.throw_new("java/lang/RuntimeException", format!("write boolean[] failed: {}", e)); }
 }
 
@@ -235,9 +214,447 @@ pub extern "system" fn Java_id_rnggagib_nativebridge_NativeCulling_shouldCullBat
     let md = max_distance as f64;
     let st = speed_threshold as f64;
     let ct = cos_angle_threshold as f64;
-    for i in 0..cnt {
-        let cull = distances[i] > md && speeds[i] < st && cos[i] < ct;
-        out[i] = if cull { 1 } else { 0 };
+    kernels::for_chunks(out, |start, o| kernels::cone_global(distances, speeds, cos, md, st, ct, start, o));
+}
+
+// View-frustum variant: per-pair bounding boxes tested against per-viewer planes (12 f64 per viewer),
+// with per-type distance/speed thresholds. Only the first `count` pairs are read and written.
+#[no_mangle]
+pub extern "system" fn Java_id_rnggagib_nativebridge_NativeCulling_shouldCullBatchFrustum(
+    mut env: JNIEnv,
+    _class: JClass,
+    distances_raw: jdoubleArray,
+    speeds_raw: jdoubleArray,
+    box_rel_raw: jdoubleArray,
+    box_extent_raw: jdoubleArray,
+    pair_viewers_raw: jintArray,
+    viewer_planes_raw: jdoubleArray,
+    type_codes_raw: jintArray,
+    type_max_distance_raw: jdoubleArray,
+    type_speed_threshold_raw: jdoubleArray,
+    count: jint,
+    out_flags_raw: jbooleanArray,
+) {
+    let cnt = if count <= 0 { let _ = env.throw_new("java/lang/IllegalArgumentException", "count must be > 0"); return; } else { count as usize };
+    let distances = unsafe { JDoubleArray::from_raw(distances_raw) };
+    let speeds = unsafe { JDoubleArray::from_raw(speeds_raw) };
+    let box_rel = unsafe { JDoubleArray::from_raw(box_rel_raw) };
+    let box_extent = unsafe { JDoubleArray::from_raw(box_extent_raw) };
+    let pair_viewers = unsafe { jni::objects::JIntArray::from_raw(pair_viewers_raw) };
+    let viewer_planes = unsafe { JDoubleArray::from_raw(viewer_planes_raw) };
+    let type_codes = unsafe { jni::objects::JIntArray::from_raw(type_codes_raw) };
+    let type_md = unsafe { JDoubleArray::from_raw(type_max_distance_raw) };
+    let type_st = unsafe { JDoubleArray::from_raw(type_speed_threshold_raw) };
+    let out_flags = unsafe { JBooleanArray::from_raw(out_flags_raw) };
+
+    if env.get_array_length(&distances).ok().map(|x| x as usize >= cnt) != Some(true) { let _ = env.throw_new("java/lang/IllegalArgumentException", "distances shorter than count"); return; }
+    if env.get_array_length(&speeds).ok().map(|x| x as usize >= cnt) != Some(true) { let _ = env.throw_new("java/lang/IllegalArgumentException", "speeds shorter than count"); return; }
+    if env.get_array_length(&box_rel).ok().map(|x| x as usize >= cnt * 3) != Some(true) { let _ = env.throw_new("java/lang/IllegalArgumentException", "boxRel shorter than 3 * count"); return; }
+    if env.get_array_length(&box_extent).ok().map(|x| x as usize >= cnt * 2) != Some(true) { let _ = env.throw_new("java/lang/IllegalArgumentException", "boxExtent shorter than 2 * count"); return; }
+    if env.get_array_length(&pair_viewers).ok().map(|x| x as usize >= cnt) != Some(true) { let _ = env.throw_new("java/lang/IllegalArgumentException", "pairViewers shorter than count"); return; }
+    if env.get_array_length(&type_codes).ok().map(|x| x as usize >= cnt) != Some(true) { let _ = env.throw_new("java/lang/IllegalArgumentException", "typeCodes shorter than count"); return; }
+    if env.get_array_length(&out_flags).ok().map(|x| x as usize >= cnt) != Some(true) { let _ = env.throw_new("java/lang/IllegalArgumentException", "outFlags shorter than count"); return; }
+    let planes_len = match env.get_array_length(&viewer_planes) { Ok(l) => l, Err(e) => { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("viewerPlanes length error: {}", e)); return; } } as usize;
+    let type_md_len = match env.get_array_length(&type_md) { Ok(l) => l, Err(e) => { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("type_md length error: {}", e)); return; } } as usize;
+    let type_st_len = match env.get_array_length(&type_st) { Ok(l) => l, Err(e) => { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("type_st length error: {}", e)); return; } } as usize;
+    if type_md_len == 0 || type_st_len != type_md_len { let _ = env.throw_new("java/lang/IllegalArgumentException", "type thresholds length mismatch or zero"); return; }
+
+    let mut d = vec![0f64; cnt];
+    let mut s = vec![0f64; cnt];
+    let mut rel = vec![0f64; cnt * 3];
+    let mut ext = vec![0f64; cnt * 2];
+    let mut pv = vec![0i32; cnt];
+    let mut t = vec![0i32; cnt];
+    let mut planes = vec![0f64; planes_len];
+    let mut md = vec![0f64; type_md_len];
+    let mut st = vec![0f64; type_st_len];
+    if let Err(e) = env.get_double_array_region(&distances, 0, &mut d) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("distances read error: {}", e)); return; }
+    if let Err(e) = env.get_double_array_region(&speeds, 0, &mut s) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("speeds read error: {}", e)); return; }
+    if let Err(e) = env.get_double_array_region(&box_rel, 0, &mut rel) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("boxRel read error: {}", e)); return; }
+    if let Err(e) = env.get_double_array_region(&box_extent, 0, &mut ext) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("boxExtent read error: {}", e)); return; }
+    if let Err(e) = env.get_int_array_region(&pair_viewers, 0, &mut pv) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("pairViewers read error: {}", e)); return; }
+    if let Err(e) = env.get_int_array_region(&type_codes, 0, &mut t) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("typeCodes read error: {}", e)); return; }
+    if let Err(e) = env.get_double_array_region(&viewer_planes, 0, &mut planes) { let _ = env.throw_new("java/lang/IllegalArgumentException", format!("viewerPlanes read error: {}", e)); return; }
+    if env.get_double_array_region(&type_md, 0, &mut md).is_err() { return; }
+    if env.get_double_array_region(&type_st, 0, &mut st).is_err() { return; }
+
+    let mut out: Vec<jboolean> = vec![0; cnt];
+    kernels::for_chunks(&mut out, |start, o| kernels::frustum(&d, &s, &rel, &ext, &pv, &planes, &t, &md, &st, start, o));
+    if let Err(e) = env.set_boolean_array_region(&out_flags, 0, &out) { let _ = env.throw_new("java/lang/RuntimeException", format!("write boolean[] failed: {}", e)); }
+}
+
+// C ABI exports for the FFM binding (java.lang.foreign, JDK 22+). The caller passes raw pointers to
+// memory it owns (heap arrays pinned by critical downcalls, or direct buffers) with explicit lengths,
+// so there are no JNI transitions and no copies. Flags are written as u8 0/1. Returns 0, or -1 on bad
+// arguments (nothing written). These run on the calling thread, never on the Rayon pool: a critical
+// downcall holds off safepoints and GC until it returns, so it must stay short and must not block.
+#[no_mangle]
+pub unsafe extern "C" fn gtk_cull_batch(
+    distances: *const f64,
+    speeds: *const f64,
+    cos_angles: *const f64,
+    count: i32,
+    max_distance: f64,
+    speed_threshold: f64,
+    cos_angle_threshold: f64,
+    out_flags: *mut u8,
+) -> i32 {
+    if count <= 0 || distances.is_null() || speeds.is_null() || cos_angles.is_null() || out_flags.is_null() { return -1; }
+    let cnt = count as usize;
+    let d = std::slice::from_raw_parts(distances, cnt);
+    let s = std::slice::from_raw_parts(speeds, cnt);
+    let c = std::slice::from_raw_parts(cos_angles, cnt);
+    let out = std::slice::from_raw_parts_mut(out_flags, cnt);
+    kernels::cone_global(d, s, c, max_distance, speed_threshold, cos_angle_threshold, 0, out);
+    0
+}
+
+#[no_mangle]
+pub unsafe extern "C" fn gtk_cull_by_type(
+    distances: *const f64,
+    speeds: *const f64,
+    cos_angles: *const f64,
+    type_codes: *const i32,
+    type_max_distance: *const f64,
+    type_speed_threshold: *const f64,
+    type_cos_threshold: *const f64,
+    type_count: i32,
+    count: i32,
+    out_flags: *mut u8,
+) -> i32 {
+    if count <= 0 || type_count <= 0 { return -1; }
+    if distances.is_null() || speeds.is_null() || cos_angles.is_null() || type_codes.is_null() || out_flags.is_null() { return -1; }
+    if type_max_distance.is_null() || type_speed_threshold.is_null() || type_cos_threshold.is_null() { return -1; }
+    let cnt = count as usize;
+    let types = type_count as usize;
+    let d = std::slice::from_raw_parts(distances, cnt);
+    let s = std::slice::from_raw_parts(speeds, cnt);
+    let c = std::slice::from_raw_parts(cos_angles, cnt);
+    let t = std::slice::from_raw_parts(type_codes, cnt);
+    let md = std::slice::from_raw_parts(type_max_distance, types);
+    let st = std::slice::from_raw_parts(type_speed_threshold, types);
+    let ct = std::slice::from_raw_parts(type_cos_threshold, types);
+    let out = std::slice::from_raw_parts_mut(out_flags, cnt);
+    kernels::cone_by_type(d, s, c, t, md, st, ct, 0, out);
+    0
+}
+
+#[no_mangle]
+pub unsafe extern "C" fn gtk_cull_frustum(
+    distances: *const f64,
+    speeds: *const f64,
+    box_rel: *const f64,
+    box_extent: *const f64,
+    pair_viewers: *const i32,
+    viewer_planes: *const f64,
+    planes_len: i32,
+    type_codes: *const i32,
+    type_max_distance: *const f64,
+    type_speed_threshold: *const f64,
+    type_count: i32,
+    count: i32,
+    out_flags: *mut u8,
+) -> i32 {
+    if count <= 0 || type_count <= 0 || planes_len < 0 { return -1; }
+    if distances.is_null() || speeds.is_null() || box_rel.is_null() || box_extent.is_null() || pair_viewers.is_null() { return -1; }
+    if viewer_planes.is_null() || type_codes.is_null() || type_max_distance.is_null() || type_speed_threshold.is_null() || out_flags.is_null() { return -1; }
+    let cnt = count as usize;
+    let types = type_count as usize;
+    let planes_len = planes_len as usize;
+    let d = std::slice::from_raw_parts(distances, cnt);
+    let s = std::slice::from_raw_parts(speeds, cnt);
+    let rel = std::slice::from_raw_parts(box_rel, cnt * 3);
+    let ext = std::slice::from_raw_parts(box_extent, cnt * 2);
+    let pv = std::slice::from_raw_parts(pair_viewers, cnt);
+    let planes = std::slice::from_raw_parts(viewer_planes, planes_len);
+    let t = std::slice::from_raw_parts(type_codes, cnt);
+    let md = std::slice::from_raw_parts(type_max_distance, types);
+    let st = std::slice::from_raw_parts(type_speed_threshold, types);
+    let out = std::slice::from_raw_parts_mut(out_flags, cnt);
+    kernels::frustum(d, s, rel, ext, pv, planes, t, md, st, 0, out);
+    0
+}
+
+// Fused pair kernel (mode bits). Hysteresis: `out_exit` is decided with the exit thresholds/planes,
+// otherwise it mirrors `out`. Approx: legacy cone tightening (cos < ct - 0.15).
+const FUSED_BOX: i32 = 1;
+const FUSED_HYSTERESIS: i32 = 2;
+const FUSED_APPROX: i32 = 4;
+
+fn throw_iae(env: &mut JNIEnv, msg: &str) {
+    let _ = env.throw_new("java/lang/IllegalArgumentException", msg);
+}
+
+// Length of a Java array, or None for null. Only outside a critical region.
+fn array_len(env: &JNIEnv, raw: jni::sys::jarray) -> Option<usize> {
+    if raw.is_null() { return None; }
+    let e = env.get_raw();
+    unsafe { (**e).GetArrayLength.map(|f| f(e, raw).max(0) as usize) }
+}
+
+// Throws IllegalArgumentException (and returns false) unless the array holds at least `need` elements
+fn fits(env: &mut JNIEnv, raw: jni::sys::jarray, need: usize, name: &str) -> bool {
+    if array_len(env, raw).map(|l| l >= need) == Some(true) { return true; }
+    throw_iae(env, &format!("{} shorter than required", name));
+    false
+}
+
+// A primitive array pinned with GetPrimitiveArrayCritical, so a column is read or written in place
+// instead of copied through Get/Set<Type>ArrayRegion. Released on drop: written back for outputs,
+// discarded for inputs (only matters when the VM handed out a copy). No other JNI call may be made
+// while one is alive, so lengths are checked before pinning and exceptions thrown after release.
+struct Critical<T> {
+    env: *mut jni::sys::JNIEnv,
+    array: jni::sys::jarray,
+    ptr: *mut T,
+    mode: jint,
+}
+
+impl<T> Critical<T> {
+    // None when the VM could not pin (or copy) the array
+    unsafe fn pin(env: *mut jni::sys::JNIEnv, array: jni::sys::jarray, write: bool) -> Option<Self> {
+        let ptr = ((**env).GetPrimitiveArrayCritical?)(env, array, std::ptr::null_mut()) as *mut T;
+        if ptr.is_null() { return None; }
+        Some(Critical { env, array, ptr, mode: if write { 0 } else { jni::sys::JNI_ABORT } })
+    }
+
+    // [start, start + len); the caller checked the array length with `fits`
+    unsafe fn slice(&self, start: usize, len: usize) -> &[T] {
+        std::slice::from_raw_parts(self.ptr.add(start), len)
+    }
+
+    unsafe fn slice_mut(&mut self, start: usize, len: usize) -> &mut [T] {
+        std::slice::from_raw_parts_mut(self.ptr.add(start), len)
+    }
+}
+
+impl<T> Drop for Critical<T> {
+    fn drop(&mut self) {
+        unsafe {
+            if let Some(f) = (**self.env).ReleasePrimitiveArrayCritical {
+                f(self.env, self.array, self.ptr as *mut std::ffi::c_void, self.mode);
+            }
+        }
+    }
+}
+
+// Fused shard kernel: pair generation plus the cull decision in one pass. For every entity of
+// [from, to) flagged in `evaluate`, emits one pair per viewer of the entity's world within the per-axis
+// radius (skipping the entity itself) with its distance and view cosine, and decides it against the
+// per-type thresholds: cone test, or with FUSED_BOX the bounding box against the viewer's frustum
+// planes. Writes pairStart/pairEnd for the range (empty for entities not evaluated) and returns the
+// pair count, or -(required pairs) when the pair columns are too short (nothing usable is written).
+// Every column is pinned for the duration of the pass rather than copied in and out; the pass never
+// calls back into the JVM and runs on the calling thread (no pool), so the critical region stays short.
+#[no_mangle]
+pub extern "system" fn Java_id_rnggagib_nativebridge_NativeCulling_cullPairsFused(
+    mut env: JNIEnv,
+    _class: JClass,
+    from: jint,
+    to: jint,
+    evaluate_raw: jbooleanArray,
+    ex_raw: jdoubleArray,
+    ey_raw: jdoubleArray,
+    ez_raw: jdoubleArray,
+    widths_raw: jdoubleArray,
+    heights_raw: jdoubleArray,
+    speeds_raw: jdoubleArray,
+    type_codes_raw: jintArray,
+    world_idx_raw: jintArray,
+    entity_ids_raw: jintArray,
+    vx_raw: jdoubleArray,
+    vy_raw: jdoubleArray,
+    vz_raw: jdoubleArray,
+    vdx_raw: jdoubleArray,
+    vdy_raw: jdoubleArray,
+    vdz_raw: jdoubleArray,
+    viewer_ids_raw: jintArray,
+    viewer_count: jint,
+    world_viewer_start_raw: jintArray,
+    world_viewer_end_raw: jintArray,
+    world_radius_raw: jdoubleArray,
+    world_count: jint,
+    viewer_planes_raw: jdoubleArray,
+    viewer_planes_enter_raw: jdoubleArray,
+    type_max_enter_raw: jdoubleArray,
+    type_max_exit_raw: jdoubleArray,
+    type_speed_raw: jdoubleArray,
+    type_cos_enter_raw: jdoubleArray,
+    type_cos_exit_raw: jdoubleArray,
+    mode: jint,
+    eye_height: jdouble,
+    pair_start_raw: jintArray,
+    pair_end_raw: jintArray,
+    pair_viewer_raw: jintArray,
+    distances_raw: jdoubleArray,
+    cos_angles_raw: jdoubleArray,
+    out_enter_raw: jbooleanArray,
+    out_exit_raw: jbooleanArray,
+) -> jint {
+    if from < 0 || to < from || viewer_count < 0 || world_count < 0 { throw_iae(&mut env, "bad range or counts"); return 0; }
+    let (from, n) = (from as usize, (to - from) as usize);
+    let (nv, nw) = (viewer_count as usize, world_count as usize);
+    let boxes = mode & FUSED_BOX != 0;
+    let hysteresis = mode & FUSED_HYSTERESIS != 0;
+    let approx = mode & FUSED_APPROX != 0;
+    let planes_len = if boxes { nv * 12 } else { 0 };
+    let nt = array_len(&env, type_max_enter_raw).unwrap_or(0);
+    if nt == 0 { throw_iae(&mut env, "type thresholds empty"); return 0; }
+
+    // All length checks up front: nothing but the kernel runs once the columns are pinned
+    let inputs: [(jni::sys::jarray, usize, &str); 28] = [
+        (evaluate_raw, from + n, "evaluate"),
+        (ex_raw, from + n, "ex"),
+        (ey_raw, from + n, "ey"),
+        (ez_raw, from + n, "ez"),
+        (widths_raw, from + n, "widths"),
+        (heights_raw, from + n, "heights"),
+        (speeds_raw, from + n, "speeds"),
+        (type_codes_raw, from + n, "typeCodes"),
+        (world_idx_raw, from + n, "worldIdx"),
+        (entity_ids_raw, from + n, "entityIds"),
+        (vx_raw, nv, "vx"),
+        (vy_raw, nv, "vy"),
+        (vz_raw, nv, "vz"),
+        (vdx_raw, nv, "vdx"),
+        (vdy_raw, nv, "vdy"),
+        (vdz_raw, nv, "vdz"),
+        (viewer_ids_raw, nv, "viewerIds"),
+        (world_viewer_start_raw, nw, "worldViewerStart"),
+        (world_viewer_end_raw, nw, "worldViewerEnd"),
+        (world_radius_raw, nw, "worldRadius"),
+        (viewer_planes_raw, planes_len, "viewerPlanes"),
+        (viewer_planes_enter_raw, planes_len, "viewerPlanesEnter"),
+        (type_max_exit_raw, nt, "typeMaxExit"),
+        (type_speed_raw, nt, "typeSpeed"),
+        (type_cos_enter_raw, nt, "typeCosEnter"),
+        (type_cos_exit_raw, nt, "typeCosExit"),
+        (pair_start_raw, from + n, "pairStart"),
+        (pair_end_raw, from + n, "pairEnd"),
+    ];
+    for (raw, need, name) in inputs {
+        if !fits(&mut env, raw, need, name) { return 0; }
+    }
+    let mut cap = usize::MAX;
+    for (raw, name) in [(pair_viewer_raw, "pairViewer"), (distances_raw, "distances"), (cos_angles_raw, "cosAngles"),
+            (out_enter_raw, "outEnter"), (out_exit_raw, "outExit")] {
+        let Some(len) = array_len(&env, raw) else { throw_iae(&mut env, &format!("{} is null", name)); return 0; };
+        cap = cap.min(len);
+    }
+    // Outputs are written through separate slices, so the same array must not be passed twice
+    let outs = [pair_start_raw, pair_end_raw, pair_viewer_raw, distances_raw, cos_angles_raw, out_enter_raw, out_exit_raw];
+    for a in 0..outs.len() {
+        for b in a + 1..outs.len() {
+            if env.is_same_object(unsafe { JObject::from_raw(outs[a]) }, unsafe { JObject::from_raw(outs[b]) }).unwrap_or(true) {
+                throw_iae(&mut env, "output columns must be distinct arrays");
+                return 0;
+            }
+        }
+    }
+
+    let e = env.get_raw();
+    let pinned = unsafe { (|| -> Option<jint> {
+        let eval_c = Critical::<jboolean>::pin(e, evaluate_raw, false)?;
+        let ex_c = Critical::<f64>::pin(e, ex_raw, false)?;
+        let ey_c = Critical::<f64>::pin(e, ey_raw, false)?;
+        let ez_c = Critical::<f64>::pin(e, ez_raw, false)?;
+        let widths_c = Critical::<f64>::pin(e, widths_raw, false)?;
+        let heights_c = Critical::<f64>::pin(e, heights_raw, false)?;
+        let speeds_c = Critical::<f64>::pin(e, speeds_raw, false)?;
+        let types_c = Critical::<i32>::pin(e, type_codes_raw, false)?;
+        let widx_c = Critical::<i32>::pin(e, world_idx_raw, false)?;
+        let eids_c = Critical::<i32>::pin(e, entity_ids_raw, false)?;
+        let vx_c = Critical::<f64>::pin(e, vx_raw, false)?;
+        let vy_c = Critical::<f64>::pin(e, vy_raw, false)?;
+        let vz_c = Critical::<f64>::pin(e, vz_raw, false)?;
+        let vdx_c = Critical::<f64>::pin(e, vdx_raw, false)?;
+        let vdy_c = Critical::<f64>::pin(e, vdy_raw, false)?;
+        let vdz_c = Critical::<f64>::pin(e, vdz_raw, false)?;
+        let vids_c = Critical::<i32>::pin(e, viewer_ids_raw, false)?;
+        let wvs_c = Critical::<i32>::pin(e, world_viewer_start_raw, false)?;
+        let wve_c = Critical::<i32>::pin(e, world_viewer_end_raw, false)?;
+        let wr_c = Critical::<f64>::pin(e, world_radius_raw, false)?;
+        let planes_exit_c = Critical::<f64>::pin(e, viewer_planes_raw, false)?;
+        let planes_enter_c = Critical::<f64>::pin(e, viewer_planes_enter_raw, false)?;
+        let md_enter_c = Critical::<f64>::pin(e, type_max_enter_raw, false)?;
+        let md_exit_c = Critical::<f64>::pin(e, type_max_exit_raw, false)?;
+        let sp_c = Critical::<f64>::pin(e, type_speed_raw, false)?;
+        let ct_enter_c = Critical::<f64>::pin(e, type_cos_enter_raw, false)?;
+        let ct_exit_c = Critical::<f64>::pin(e, type_cos_exit_raw, false)?;
+        let mut ps_c = Critical::<i32>::pin(e, pair_start_raw, true)?;
+        let mut pe_c = Critical::<i32>::pin(e, pair_end_raw, true)?;
+        let mut pv_c = Critical::<i32>::pin(e, pair_viewer_raw, true)?;
+        let mut pd_c = Critical::<f64>::pin(e, distances_raw, true)?;
+        let mut pc_c = Critical::<f64>::pin(e, cos_angles_raw, true)?;
+        let mut o_enter_c = Critical::<jboolean>::pin(e, out_enter_raw, true)?;
+        let mut o_exit_c = Critical::<jboolean>::pin(e, out_exit_raw, true)?;
+
+        let (eval, ex, ey, ez) = (eval_c.slice(from, n), ex_c.slice(from, n), ey_c.slice(from, n), ez_c.slice(from, n));
+        let (widths, heights, speeds) = (widths_c.slice(from, n), heights_c.slice(from, n), speeds_c.slice(from, n));
+        let (types, widx, eids) = (types_c.slice(from, n), widx_c.slice(from, n), eids_c.slice(from, n));
+        let (vx, vy, vz) = (vx_c.slice(0, nv), vy_c.slice(0, nv), vz_c.slice(0, nv));
+        let (vdx, vdy, vdz, vids) = (vdx_c.slice(0, nv), vdy_c.slice(0, nv), vdz_c.slice(0, nv), vids_c.slice(0, nv));
+        let (wvs, wve, wr) = (wvs_c.slice(0, nw), wve_c.slice(0, nw), wr_c.slice(0, nw));
+        let (planes_exit, planes_enter) = (planes_exit_c.slice(0, planes_len), planes_enter_c.slice(0, planes_len));
+        let (md_enter, md_exit, sp) = (md_enter_c.slice(0, nt), md_exit_c.slice(0, nt), sp_c.slice(0, nt));
+        let (ct_enter, ct_exit) = (ct_enter_c.slice(0, nt), ct_exit_c.slice(0, nt));
+        let (ps, pe) = (ps_c.slice_mut(from, n), pe_c.slice_mut(from, n));
+        let (pv, pd, pc) = (pv_c.slice_mut(0, cap), pd_c.slice_mut(0, cap), pc_c.slice_mut(0, cap));
+        let (o_enter, o_exit) = (o_enter_c.slice_mut(0, cap), o_exit_c.slice_mut(0, cap));
+
+        let mut k = 0usize;
+        for i in 0..n {
+            ps[i] = k as i32;
+            let w = widx[i];
+            if eval[i] == 0 || w < 0 || w as usize >= nw {
+                pe[i] = k as i32;
+                continue;
+            }
+            let w = w as usize;
+            let (vs, ve) = (wvs[w].max(0) as usize, (wve[w].max(0) as usize).min(nv));
+            let r = wr[w];
+            let (x, y, z) = (ex[i], ey[i], ez[i]);
+            let code = if types[i] < 0 || types[i] as usize >= nt { 0 } else { types[i] as usize };
+            let slow = speeds[i] < sp[code];
+            let (hw, hh) = (widths[i] * 0.5, heights[i] * 0.5);
+            for v in vs..ve {
+                let dx = x - vx[v];
+                let dy = y - vy[v];
+                let dz = z - vz[v];
+                if dx.abs() > r || dy.abs() > r || dz.abs() > r { continue; }
+                if vids[v] == eids[i] { continue; }
+                k += 1;
+                if k > cap { continue; } // only counting now
+                let d = (dx * dx + dy * dy + dz * dz).sqrt();
+                let c = (vdx[v] * dx + vdy[v] * dy + vdz[v] * dz) * (1.0 / d.max(1e-9));
+                let decide = |md: f64, ct: f64, planes: &[f64]| -> bool {
+                    if !(d > md && slow) { return false; }
+                    if boxes {
+                        box_outside_frustum(&planes[v * 12..v * 12 + 12], dx, dy + hh - eye_height, dz, hw, hh)
+                    } else if approx {
+                        c < ct && c < ct - 0.15
+                    } else {
+                        c < ct
+                    }
+                };
+                let enter = decide(md_enter[code], ct_enter[code], if hysteresis { planes_enter } else { planes_exit });
+                let exit = if hysteresis { decide(md_exit[code], ct_exit[code], planes_exit) } else { enter };
+                let p = k - 1;
+                pv[p] = v as i32;
+                pd[p] = d;
+                pc[p] = c;
+                o_enter[p] = enter as jboolean;
+                o_exit[p] = exit as jboolean;
+            }
+            pe[i] = k as i32;
+        }
+        Some(if k > cap { -(k.min(i32::MAX as usize) as i32) } else { k as jint })
+    })() };
+    match pinned {
+        Some(k) => k,
+        None => {
+            let _ = env.throw_new("java/lang/RuntimeException", "pin pair columns failed");
+            0
+        }
     }
 }
- 
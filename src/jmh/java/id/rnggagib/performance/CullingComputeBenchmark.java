@@ -0,0 +1,135 @@
+package id.rnggagib.performance;
+
+import id.rnggagib.nativebridge.NativeBridge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.File;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmark of CullingService.compute (per-viewer pair build, features and kernel)
+ * across entity and player counts. Score is ns/entity; -prof gc reports bytes/entity.
+ * Native paths need -Dgatotkacas.native=/absolute/path/to/library.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class CullingComputeBenchmark {
+    static final int OPS = NativeCullingBenchmark.OPS;
+
+    @Param({"64", "512", "4096", "65536"})
+    public int entities;
+
+    @Param({"1", "10", "100", "500"})
+    public int players;
+
+    /**
+     * java = scalar fallback, vector = Vector API fallback, direct = DirectByteBuffer JNI path,
+     * heap = boolean[] JNI path, fused = one native call per shard for pairs and decisions.
+     */
+    @Param({"java", "vector", "direct", "heap", "fused"})
+    public String path;
+
+    /** Culling pool size; shards of one compute run in parallel on it. */
+    @Param({"1", "4", "16"})
+    public int workers;
+
+    /** true = bounding boxes against the view frustum, false = view-direction cone. */
+    @Param({"false", "true"})
+    public boolean frustum;
+
+    /**
+     * Cone tightened by 0.15 (frustum-approx). Only changes the cone path, so it is left out of the
+     * default matrix; measure it with {@code -p approx=true -p frustum=false}.
+     */
+    @Param({"false"})
+    public boolean approx;
+
+    CullingService service;
+    CullingSnapshot snapshot;
+    ForkJoinPool pool;
+    ForkJoinTask<CullingSnapshot> task;
+    int reps;
+
+    @Setup
+    public void setup() {
+        var bridge = new NativeBridge(NOPLogger.NOP_LOGGER, new File("target"));
+        if (!path.equals("java") && !path.equals("vector")) {
+            String lib = System.getProperty("gatotkacas.native", "");
+            bridge.tryLoad(true, lib, false, "", "");
+            if (!bridge.isLoaded()) {
+                throw new IllegalStateException("Native path '" + path + "' needs -Dgatotkacas.native=/absolute/path/to/culling_rs library");
+            }
+        }
+        service = new CullingService(null, NOPLogger.NOP_LOGGER, bridge);
+        service.setThresholds(48.0, 0.05, 0.25, path.equals("direct"));
+        service.setSharding(workers, 1024);
+        service.setFrustum(frustum, 70.0, 16.0 / 9.0, 10.0);
+        service.setFrustumApprox(approx);
+        service.setFusedKernel(path.equals("fused"));
+        if (!service.setVectorKernel(path.equals("vector"))) {
+            throw new IllegalStateException("Path 'vector' needs the jdk.incubator.vector module");
+        }
+        pool = new ForkJoinPool(workers);
+
+        var rnd = new SplittableRandom(7L);
+        snapshot = new CullingSnapshot();
+        snapshot.reset(service.usesDirectBuffers());
+        int world = snapshot.beginWorld(52.0);
+        for (int i = 0; i < players; i++) {
+            snapshot.addViewer(world, null, i, rnd.nextDouble(-128.0, 128.0), 64.0, rnd.nextDouble(-128.0, 128.0),
+                (float) rnd.nextDouble(-180.0, 180.0), (float) rnd.nextDouble(-30.0, 30.0));
+        }
+        for (int i = 0; i < entities; i++) {
+            snapshot.addEntity(world, null, players + i, rnd.nextDouble(-160.0, 160.0), rnd.nextDouble(40.0, 90.0), rnd.nextDouble(-160.0, 160.0),
+                0.6, 1.95, rnd.nextDouble(0.0, 0.2), 0);
+        }
+        reps = Math.max(1, OPS / entities);
+        task = ForkJoinTask.adapt(() -> service.compute(snapshot));
+
+        // Shadow check: one cycle re-decided in Java must agree with the native path under this config
+        if (bridge.isLoaded()) {
+            snapshot.shadow = true;
+            pool.invoke(task);
+            snapshot.shadow = false;
+            var health = bridge.health();
+            if (health.health() == NativeBridge.Health.FAILED) {
+                throw new IllegalStateException("Native path '" + path + "' disagrees with Java: " + health.reason());
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void compute(Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            task.reinitialize();
+            bh.consume(pool.invoke(task));
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package id.rnggagib.performance;
+
+import id.rnggagib.nativebridge.NativeBridge;
+import id.rnggagib.nativebridge.NativeCulling;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.helpers.NOPLogger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kernel-level benchmarks for every NativeCulling entry point, the Java scalar predicate and the
+ * Vector API kernel.
+ * Each invocation processes {@link #OPS} entities (the kernel is repeated OPS / entities times),
+ * so the reported score is ns/entity and gc.alloc.rate.norm (-prof gc) is bytes/entity.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class NativeCullingBenchmark {
+    static final int OPS = 65536;
+    static final int TYPES = 8;
+    static final int VIEWERS = 8;
+
+    @Param({"64", "512", "4096", "65536"})
+    public int entities;
+
+    double[] distances;
+    double[] speeds;
+    double[] cosAngles;
+    int[] typeCodes;
+    boolean[] out;
+    double[] typeMax = new double[TYPES];
+    double[] typeSpd = new double[TYPES];
+    double[] typeCos = new double[TYPES];
+    ByteBuffer dDistances;
+    ByteBuffer dSpeeds;
+    ByteBuffer dCos;
+    ByteBuffer dOut;
+    double[] boxRel;
+    double[] boxExtent;
+    int[] pairViewers;
+    double[] planes;
+    int reps;
+    CullingService service;
+
+    @Setup
+    public void setup() {
+        var rnd = new SplittableRandom(42L);
+        distances = new double[entities];
+        speeds = new double[entities];
+        cosAngles = new double[entities];
+        typeCodes = new int[entities];
+        out = new boolean[entities];
+        for (int i = 0; i < entities; i++) {
+            distances[i] = rnd.nextDouble(0.0, 96.0);
+            speeds[i] = rnd.nextDouble(0.0, 0.2);
+            cosAngles[i] = rnd.nextDouble(-1.0, 1.0);
+            typeCodes[i] = rnd.nextInt(TYPES);
+        }
+        for (int t = 0; t < TYPES; t++) {
+            typeMax[t] = 32.0 + t * 4.0; typeSpd[t] = 0.05; typeCos[t] = 0.25;
+        }
+        dDistances = direct(distances);
+        dSpeeds = direct(speeds);
+        dCos = direct(cosAngles);
+        dOut = ByteBuffer.allocateDirect(entities).order(ByteOrder.nativeOrder());
+        boxRel = new double[entities * 3];
+        boxExtent = new double[entities * 2];
+        pairViewers = new int[entities];
+        for (int i = 0; i < entities; i++) {
+            boxRel[3 * i] = rnd.nextDouble(-96.0, 96.0); boxRel[3 * i + 1] = rnd.nextDouble(-16.0, 16.0); boxRel[3 * i + 2] = rnd.nextDouble(-96.0, 96.0);
+            boxExtent[2 * i] = 0.3; boxExtent[2 * i + 1] = 0.975;
+            pairViewers[i] = rnd.nextInt(VIEWERS);
+        }
+        var viewers = new CullingSnapshot();
+        int world = viewers.beginWorld(52.0);
+        for (int v = 0; v < VIEWERS; v++) {
+            viewers.addViewer(world, null, v, 0.0, 64.0, 0.0, (float) rnd.nextDouble(-180.0, 180.0), (float) rnd.nextDouble(-30.0, 30.0));
+        }
+        double[] half = ViewFrustum.halfAngles(70.0, 16.0 / 9.0, 10.0);
+        ViewFrustum.buildPlanes(viewers, viewers.vplanes, half[0], half[1]);
+        planes = viewers.vplanes;
+        reps = Math.max(1, OPS / entities);
+        service = new CullingService(null, NOPLogger.NOP_LOGGER, new NativeBridge(NOPLogger.NOP_LOGGER, new java.io.File("target")));
+        service.setThresholds(48.0, 0.05, 0.25, false);
+    }
+
+    private static ByteBuffer direct(double[] src) {
+        ByteBuffer bb = ByteBuffer.allocateDirect(src.length * Double.BYTES).order(ByteOrder.nativeOrder());
+        bb.asDoubleBuffer().put(src);
+        return bb;
+    }
+
+    /** Vector API kernel; the fork is started with the incubator module. */
+    @State(Scope.Benchmark)
+    public static class VectorKernel {
+        CullKernel kernel;
+
+        @Setup
+        public void load() {
+            kernel = CullKernel.loadVector(null);
+            if (kernel == null) throw new IllegalStateException("jdk.incubator.vector is not available in this JVM");
+        }
+    }
+
+    /** Loads culling-rs from -Dgatotkacas.native; only the native benchmarks depend on it. */
+    @State(Scope.Benchmark)
+    public static class NativeLib {
+        /** Native kernel pool size (0 = calling thread); batches of 4096+ pairs are split. */
+        @Param({"0", "4"})
+        public int nativeThreads;
+
+        @Setup
+        public void load() {
+            String path = System.getProperty("gatotkacas.native", "");
+            if (path == null || path.isBlank()) {
+                throw new IllegalStateException("Set -Dgatotkacas.native=/absolute/path/to/culling_rs library to run native benchmarks");
+            }
+            System.load(path);
+            NativeCulling.configureThreads(nativeThreads, 4096);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void javaQuickShouldCull(Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            for (int i = 0; i < entities; i++) out[i] = service.quickShouldCull(distances[i], speeds[i], cosAngles[i]);
+        }
+        bh.consume(out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void nativeShouldCull(NativeLib lib, Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            for (int i = 0; i < entities; i++) out[i] = NativeCulling.shouldCull(distances[i], speeds[i], cosAngles[i], 48.0, 0.05, 0.25);
+        }
+        bh.consume(out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void nativeShouldCullBatch(NativeLib lib, Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            bh.consume(NativeCulling.shouldCullBatch(distances, speeds, cosAngles, 48.0, 0.05, 0.25));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void nativeShouldCullBatchInto(NativeLib lib, Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            NativeCulling.shouldCullBatchInto(distances, speeds, cosAngles, out, 48.0, 0.05, 0.25);
+        }
+        bh.consume(out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void nativeShouldCullBatchIntoByType(NativeLib lib, Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            NativeCulling.shouldCullBatchIntoByType(distances, speeds, cosAngles, typeCodes, typeMax, typeSpd, typeCos, out);
+        }
+        bh.consume(out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void nativeShouldCullBatchIntoDirect(NativeLib lib, Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            NativeCulling.shouldCullBatchIntoDirect(dDistances, dSpeeds, dCos, dOut, entities, 48.0, 0.05, 0.25);
+        }
+        bh.consume(dOut);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void javaFrustum(Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            for (int i = 0; i < entities; i++) {
+                out[i] = distances[i] > typeMax[typeCodes[i]] && speeds[i] < typeSpd[typeCodes[i]]
+                    && ViewFrustum.outside(planes, pairViewers[i] * ViewFrustum.STRIDE, boxRel[3 * i], boxRel[3 * i + 1], boxRel[3 * i + 2], boxExtent[2 * i], boxExtent[2 * i + 1]);
+            }
+        }
+        bh.consume(out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void nativeShouldCullBatchFrustum(NativeLib lib, Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            NativeCulling.shouldCullBatchFrustum(distances, speeds, boxRel, boxExtent, pairViewers, planes, typeCodes, typeMax, typeSpd, entities, out);
+        }
+        bh.consume(out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void vectorConeByType(VectorKernel vk, Blackhole bh) {
+        for (int r = 0; r < reps; r++) {
+            vk.kernel.cone(distances, speeds, cosAngles, typeCodes, typeMax, typeSpd, typeCos, false, entities, out);
+        }
+        bh.consume(out);
+    }
+}
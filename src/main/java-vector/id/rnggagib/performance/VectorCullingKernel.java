@@ -0,0 +1,83 @@
+package id.rnggagib.performance;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of {@link CullKernel} at the platform's preferred width. Compiled in a
+ * separate source root with {@code --add-modules jdk.incubator.vector} and only instantiated
+ * reflectively, so the rest of the plugin never links against the incubator module.
+ */
+final class VectorCullingKernel implements CullKernel {
+    private static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void features(double ex, double ey, double ez, double r,
+                         double[] vx, double[] vy, double[] vz, double[] vdx, double[] vdy, double[] vdz,
+                         int from, int to, double[] dist, double[] cos) {
+        int n = to - from;
+        int upper = S.loopBound(n);
+        int k = 0;
+        for (; k < upper; k += S.length()) {
+            int v = from + k;
+            var dx = DoubleVector.broadcast(S, ex).sub(DoubleVector.fromArray(S, vx, v));
+            var dy = DoubleVector.broadcast(S, ey).sub(DoubleVector.fromArray(S, vy, v));
+            var dz = DoubleVector.broadcast(S, ez).sub(DoubleVector.fromArray(S, vz, v));
+            VectorMask<Double> out = dx.abs().compare(VectorOperators.GT, r)
+                .or(dy.abs().compare(VectorOperators.GT, r))
+                .or(dz.abs().compare(VectorOperators.GT, r));
+            var d = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).sqrt();
+            var dot = DoubleVector.fromArray(S, vdx, v).mul(dx)
+                .add(DoubleVector.fromArray(S, vdy, v).mul(dy))
+                .add(DoubleVector.fromArray(S, vdz, v).mul(dz));
+            dot.div(d.max(1e-9)).intoArray(cos, k);
+            d.blend(-1.0, out).intoArray(dist, k);
+        }
+        for (; k < n; k++) {
+            int v = from + k;
+            double dx = ex - vx[v], dy = ey - vy[v], dz = ez - vz[v];
+            double d = Math.sqrt(dx*dx + dy*dy + dz*dz);
+            cos[k] = (vdx[v] * dx + vdy[v] * dy + vdz[v] * dz) / Math.max(1e-9, d);
+            dist[k] = Math.abs(dx) > r || Math.abs(dy) > r || Math.abs(dz) > r ? -1.0 : d;
+        }
+    }
+
+    @Override
+    public void cone(double[] distances, double[] speeds, double[] cosAngles, int[] types,
+                     double[] md, double[] sp, double[] ct, boolean approx, int count, boolean[] out) {
+        boolean global = md.length == 1;
+        int upper = S.loopBound(count);
+        int k = 0;
+        for (; k < upper; k += S.length()) {
+            DoubleVector tm, ts, tc;
+            if (global) {
+                tm = DoubleVector.broadcast(S, md[0]);
+                ts = DoubleVector.broadcast(S, sp[0]);
+                tc = DoubleVector.broadcast(S, ct[0]);
+            } else {
+                tm = DoubleVector.fromArray(S, md, 0, types, k);
+                ts = DoubleVector.fromArray(S, sp, 0, types, k);
+                tc = DoubleVector.fromArray(S, ct, 0, types, k);
+            }
+            var c = DoubleVector.fromArray(S, cosAngles, k);
+            var m = DoubleVector.fromArray(S, distances, k).compare(VectorOperators.GT, tm)
+                .and(DoubleVector.fromArray(S, speeds, k).compare(VectorOperators.LT, ts))
+                .and(c.compare(VectorOperators.LT, tc));
+            if (approx) m = m.and(c.compare(VectorOperators.LT, tc.sub(0.15)));
+            m.intoArray(out, k);
+        }
+        for (; k < count; k++) {
+            int code = global ? 0 : types[k];
+            double c = cosAngles[k];
+            boolean base = distances[k] > md[code] && speeds[k] < sp[code] && c < ct[code];
+            out[k] = approx ? (base && c < ct[code] - 0.15) : base;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "Vector API, " + S.length() + " x f64";
+    }
+}
@@ -128,7 +128,11 @@ public class Plugin extends JavaPlugin implements GatotkacasCommand.Reloadable {
     if (kUrl != null && !kUrl.isBlank()) dlUrl = kUrl;
     if (kSha != null && !kSha.isBlank()) dlSha = kSha;
   }
+  nativeBridge.setFfmEnabled(getConfig().getBoolean("features.native.ffm", true));
+  configureNativeHealth();
   nativeBridge.tryLoad(nativeEnabled, libPath, dlEnabled, dlUrl, dlSha);
+  nativeBridge.configureThreads(getConfig().getInt("features.native.threads", 0),
+    getConfig().getInt("features.native.parallel-min-batch", 16384));
 
   // Culling module
   cullingService = new CullingService(this, getSLF4JLogger(), nativeBridge);
@@ -137,6 +141,7 @@ public class Plugin extends JavaPlugin implements GatotkacasCommand.Reloadable {
 
   // Tick monitor for MSPT/TPS snapshots and reports
   tickMonitor = new TickMonitor(this, getSLF4JLogger(), cullingService);
+  tickMonitor.setNativeBridge(nativeBridge);
   tickMonitor.loadFromConfig();
   tickMonitor.start();
 
@@ -211,7 +216,8 @@ public class Plugin extends JavaPlugin implements GatotkacasCommand.Reloadable {
   redstoneGuardService.start();
   tickMonitor.setRedstoneGuardService(redstoneGuardService);
 
-  // Optional packet-level culling via ProtocolLib (reflection)
+  // Optional packet-level culling: backend auto uses a Netty pipeline handler, falling back to
+  // ProtocolLib (via reflection) when the handler cannot be installed; netty/protocollib force one
   packetCullingService = new PacketCullingReflectService(this, getSLF4JLogger(), cullingService);
   packetCullingService.setTickMonitor(tickMonitor);
   packetCullingService.loadFromConfig();
@@ -237,12 +243,23 @@ public class Plugin extends JavaPlugin implements GatotkacasCommand.Reloadable {
     getSLF4JLogger().info("gatotkacas disabled");
   }
 
+  private void configureNativeHealth() {
+    nativeBridge.configureHealth(getConfig().getBoolean("features.native.health.self-test", true),
+      getConfig().getInt("features.native.health.probation-probes", 5),
+      getConfig().getInt("features.native.health.probe-interval-seconds", 30));
+  }
+
   // Reloadable
   @Override
   public void reload() {
     reloadConfig();
-    // Attempt native (only if not already loaded)
-    if (nativeBridge != null && !nativeBridge.isLoaded()) {
+    if (nativeBridge != null) {
+      nativeBridge.setFfmEnabled(getConfig().getBoolean("features.native.ffm", true));
+      configureNativeHealth();
+    }
+    // Attempt native only if the library was never loaded: a disabled (probation) or failed bridge keeps
+    // its health across reloads
+    if (nativeBridge != null && !nativeBridge.isLibraryLoaded()) {
       boolean nativeEnabled = getConfig().getBoolean("features.native.enabled", false);
       String libPath = getConfig().getString("features.native.library", "");
       boolean dlEnabled = getConfig().getBoolean("features.native.auto-download.enabled", false);
@@ -259,6 +276,10 @@ public class Plugin extends JavaPlugin implements GatotkacasCommand.Reloadable {
       }
       nativeBridge.tryLoad(nativeEnabled, libPath, dlEnabled, dlUrl, dlSha);
     }
+    if (nativeBridge != null) {
+      nativeBridge.configureThreads(getConfig().getInt("features.native.threads", 0),
+        getConfig().getInt("features.native.parallel-min-batch", 16384));
+    }
     if (cullingService != null) {
       cullingService.loadFromConfig();
       cullingService.start();
@@ -333,6 +354,7 @@ public class Plugin extends JavaPlugin implements GatotkacasCommand.Reloadable {
   public int windowCulled() { return cullingService != null ? cullingService.getWindowCulled() : 0; }
   public int windowProcessed() { return cullingService != null ? cullingService.getWindowProcessed() : 0; }
   public double windowRatio() { return cullingService != null ? cullingService.getWindowRatio() : 0.0; }
+  public double churnPerSecond() { return cullingService != null ? cullingService.getChurnPerSecond() : 0.0; }
   public boolean ratioPercent() { return cullingService != null && cullingService.isRatioPercent(); }
 
   // Exposed for reflection packet layer (particle downsample)
@@ -356,6 +378,63 @@ public class Plugin extends JavaPlugin implements GatotkacasCommand.Reloadable {
     }
     sb.append("\n");
 
+    sb.append("<yellow><bold>Culling</bold></yellow>\n");
+    if (cullingService != null) {
+      sb.append("  <gray>native:</gray> <yellow>").append(nativeBridge != null ? nativeBridge.binding() : "off").append("</yellow>");
+      if (nativeBridge != null) {
+        var h = nativeBridge.health();
+        sb.append(" <gray>health:</gray> <yellow>").append(h.health().name().toLowerCase(java.util.Locale.ROOT)).append("</yellow>");
+        if (h.health() == NativeBridge.Health.PROBATION) {
+          sb.append(" <gray>(").append(h.cleanProbes()).append("/").append(h.probesNeeded()).append(" clean probes)</gray>");
+        }
+        if (!h.reason().isEmpty()) sb.append(" <gray>reason:</gray> <red>").append(net.kyori.adventure.text.minimessage.MiniMessage.miniMessage().escapeTags(h.reason())).append("</red>");
+        if (h.disables() > 0) sb.append(" <gray>disables:</gray> <yellow>").append(h.disables()).append("</yellow>");
+        if (h.shadowPairs() > 0) {
+          sb.append(" <gray>shadow:</gray> <yellow>").append(h.shadowMismatches()).append("/").append(h.shadowPairs()).append("</yellow>");
+        }
+      }
+      sb.append("\n");
+      sb.append("  <gray>pairs:</gray> <yellow>").append(cullingService.getLastProcessedCount())
+        .append("</yellow> <gray>hidden:</gray> <yellow>").append(cullingService.getLastCulledCount()).append("</yellow>");
+      int occluded = cullingService.getLastOccludedCount();
+      if (occluded >= 0) {
+        int[] chunks = cullingService.getOcclusionChunkStats();
+        sb.append(" <gray>occluded:</gray> <yellow>").append(occluded)
+          .append("</yellow> <gray>chunk-snapshots:</gray> <yellow>").append(chunks[0])
+          .append("</yellow> <gray>(+").append(chunks[1]).append(")</gray>");
+      }
+      sb.append("\n");
+      long[] apply = cullingService.getApplyStats();
+      sb.append("  <gray>apply-queue:</gray> <yellow>").append(apply[0])
+        .append("</yellow> <gray>apply:</gray> <yellow>").append(apply[1]).append("us</yellow> <gray>(peak ")
+        .append(apply[2]).append("us)</gray>\n");
+      long[] stages = cullingService.getStageLatencyMicros();
+      sb.append("  <gray>stages (us):</gray> capture=<yellow>").append(stages[0])
+        .append("</yellow> wait=<yellow>").append(stages[1])
+        .append("</yellow> compute=<yellow>").append(stages[2])
+        .append("</yellow> apply=<yellow>").append(stages[3])
+        .append("</yellow> total=<yellow>").append(stages[4]).append("</yellow>");
+      if (stages[5] > 0) sb.append(" <gray>skipped:</gray> <red>").append(stages[5]).append("</red>");
+      sb.append("\n");
+      sb.append("  <gray>p50/p95/p99/max (us):</gray>\n");
+      for (var e : cullingService.getLatencyHistograms().entrySet()) {
+        var h = e.getValue();
+        if (h.count() == 0) continue;
+        sb.append("    <gray>").append(e.getKey()).append(":</gray> <yellow>").append(h.percentile(50) / 1_000L)
+          .append("/").append(h.percentile(95) / 1_000L).append("/").append(h.percentile(99) / 1_000L)
+          .append("/").append(h.max() / 1_000L).append("</yellow> <gray>(n=").append(h.count()).append(")</gray>\n");
+      }
+      sb.append("  <gray>per cycle p50/p95/max:</gray>");
+      for (var e : cullingService.getSizeHistograms().entrySet()) {
+        var h = e.getValue();
+        sb.append(" ").append(e.getKey()).append("=<yellow>").append(h.percentile(50)).append("/")
+          .append(h.percentile(95)).append("/").append(h.max()).append("</yellow>");
+      }
+      sb.append("\n");
+    } else {
+      sb.append("  <red>disabled</red>\n");
+    }
+
     // Redstone suppressed info (approx)
     sb.append("<yellow><bold>Redstone</bold></yellow>\n");
     if (redstoneGuardService != null) {
@@ -381,6 +460,20 @@ public class Plugin extends JavaPlugin implements GatotkacasCommand.Reloadable {
     }
 
     sb.append("<yellow><bold>Packets</bold></yellow>\n");
+    String packetBackend = packetCullingService != null ? packetCullingService.backendName() : null;
+    sb.append("  <gray>backend:</gray> ").append(packetBackend != null ? "<green>" + packetBackend + "</green>" : "<red>off</red>").append("\n");
+    long[] lodStats = packetCullingService != null ? packetCullingService.movementLodStats() : null;
+    if (lodStats != null) {
+      sb.append("  <gray>movement LOD dropped:</gray> <yellow>").append(lodStats[0])
+        .append("</yellow> <gray>merged:</gray> <yellow>").append(lodStats[1])
+        .append("</yellow> <gray>flushed:</gray> <yellow>").append(lodStats[2]).append("</yellow>\n");
+    }
+    long[] deferStats = packetCullingService != null ? packetCullingService.deferredSpawnStats() : null;
+    if (deferStats != null) {
+      sb.append("  <gray>deferred spawns:</gray> <yellow>").append(deferStats[0])
+        .append("</yellow> <gray>replayed:</gray> <yellow>").append(deferStats[1])
+        .append("</yellow> <gray>held:</gray> <yellow>").append(deferStats[2]).append("</yellow>\n");
+    }
     if (packetCullingService != null && packetCullingService.isBudgetEnabled()) {
       sb.append("  <green>budget</green> limit=<yellow>")
         .append(packetCullingService.currentBudgetLimit())
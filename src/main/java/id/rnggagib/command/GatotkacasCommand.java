@@ -24,6 +24,7 @@ public class GatotkacasCommand implements TabExecutor {
     int windowCulled();
     int windowProcessed();
     double windowRatio();
+    double churnPerSecond();
     boolean ratioPercent();
     String diag();
     }
@@ -55,7 +56,7 @@ public class GatotkacasCommand implements TabExecutor {
             }
         case "info" -> {
         String msg = reloadable.mm("messages.info",
-            "<gray>Running <green>gatotkacas</green> v<version></gray> | <gray>tick:<green><culled></green>/<green><processed></green> (<green><ratio></green>)</gray> | <gray>window:<green><wculled></green>/<green><wprocessed></green> (<green><wratio></green>)</gray>");
+            "<gray>Running <green>gatotkacas</green> v<version></gray> | <gray>tick:<green><culled></green>/<green><processed></green> (<green><ratio></green>)</gray> | <gray>window:<green><wculled></green>/<green><wprocessed></green> (<green><wratio></green>)</gray> | <gray>churn:<green><churn></green>/s</gray>");
         String ratioTick = reloadable.ratioPercent()
             ? String.format("%.1f%%", reloadable.ratioLastTick() * 100.0)
             : String.format("%.3f", reloadable.ratioLastTick());
@@ -68,7 +69,8 @@ public class GatotkacasCommand implements TabExecutor {
              .replace("<ratio>", ratioTick)
              .replace("<wculled>", Integer.toString(reloadable.windowCulled()))
              .replace("<wprocessed>", Integer.toString(reloadable.windowProcessed()))
-             .replace("<wratio>", ratioWin);
+             .replace("<wratio>", ratioWin)
+             .replace("<churn>", String.format("%.1f", reloadable.churnPerSecond()));
         send(sender, msg);
                 return true;
             }
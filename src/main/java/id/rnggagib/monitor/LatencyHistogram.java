@@ -0,0 +1,80 @@
+package id.rnggagib.monitor;
+
+/**
+ * Log-bucketed histogram of non-negative longs (latencies in nanos, or sizes): each power of two is
+ * split into 8 linear sub-buckets, so percentiles are within 12.5% of the recorded value at any scale
+ * with a fixed 4 KiB table and no allocation per record. Not thread-safe; one writer (the main thread
+ * for the culling pipeline), read from the same thread.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public long mean() {
+        return count == 0 ? 0L : sum / count;
+    }
+
+    /** Upper bound of the bucket holding the p-th percentile (0..100), capped at the max; 0 when empty. */
+    public long percentile(double p) {
+        if (count == 0) return 0L;
+        long rank = (long) Math.ceil(Math.max(0.0, Math.min(100.0, p)) / 100.0 * count);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upper(i), max);
+        }
+        return max;
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(counts, 0L);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public void copyFrom(LatencyHistogram other) {
+        System.arraycopy(other.counts, 0, counts, 0, BUCKETS);
+        count = other.count;
+        sum = other.sum;
+        max = other.max;
+    }
+
+    private static int index(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v); // >= SUB_BITS
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    private static long upper(int idx) {
+        if (idx < SUB) return idx;
+        int exp = idx / SUB + SUB_BITS - 1;
+        int sub = idx % SUB;
+        long next = (long) (SUB + sub + 1) << (exp - SUB_BITS);
+        return next - 1 < 0 ? Long.MAX_VALUE : next - 1;
+    }
+}
@@ -16,6 +16,7 @@ public final class TickMonitor {
     private final @Nullable CullingService cullingService;
     private @Nullable id.rnggagib.performance.SpawnThrottleService spawnThrottleService;
     private @Nullable id.rnggagib.tweaks.RedstoneGuardService redstoneGuardService;
+    private @Nullable id.rnggagib.nativebridge.NativeBridge nativeBridge;
     private int tickTask = -1;
     private int reportTask = -1;
 
@@ -44,6 +45,10 @@ public final class TickMonitor {
         this.redstoneGuardService = svc;
     }
 
+    public void setNativeBridge(@Nullable id.rnggagib.nativebridge.NativeBridge bridge) {
+        this.nativeBridge = bridge;
+    }
+
     public void loadFromConfig() {
         var cfg = plugin.getConfig();
         this.windowTicks = Math.max(20, cfg.getInt("monitor.window-ticks", 1200));
@@ -116,8 +121,19 @@ public final class TickMonitor {
                     fw.write(",\"culling\":{");
                     fw.write("\"tick\":{\"culled\":" + cullingService.getLastCulledCount() + ",\"processed\":" + cullingService.getLastProcessedCount() + ",\"ratio\":" + String.format("%.4f", cullingService.getLastCullRatio()) + "},");
                     fw.write("\"window\":{\"culled\":" + cullingService.getWindowCulled() + ",\"processed\":" + cullingService.getWindowProcessed() + ",\"ratio\":" + String.format("%.4f", cullingService.getWindowRatio()) + "}");
+                    fw.write(",\"latencyUs\":");
+                    writeHistograms(fw, cullingService.getLatencyHistograms(), 1_000L);
+                    fw.write(",\"perCycle\":");
+                    writeHistograms(fw, cullingService.getSizeHistograms(), 1L);
                     fw.write("}");
                 }
+                if (nativeBridge != null) {
+                    var h = nativeBridge.health();
+                    fw.write(",\"native\":{\"binding\":\"" + h.binding() + "\",\"health\":\"" + h.health().name().toLowerCase(java.util.Locale.ROOT)
+                        + "\",\"reason\":\"" + jsonEscape(h.reason()) + "\",\"disables\":" + h.disables()
+                        + ",\"cleanProbes\":" + h.cleanProbes() + ",\"probesNeeded\":" + h.probesNeeded()
+                        + ",\"shadowPairs\":" + h.shadowPairs() + ",\"shadowMismatches\":" + h.shadowMismatches() + "}");
+                }
                 if (spawnThrottleService != null) {
                     var st = spawnThrottleService.getStats();
                     fw.write(",\"spawnThrottle\":{\"cancelled\":" + st.cancelled() + ",\"allowed\":" + st.allowed() + ",\"aiSkipped\":" + st.aiSkipped() + "}");
@@ -132,6 +148,31 @@ public final class TickMonitor {
         }
     }
 
+    // {"stage":{"n":..,"p50":..,"p95":..,"p99":..,"max":..},...} with values divided by unit
+    private static void writeHistograms(FileWriter fw, java.util.Map<String, LatencyHistogram> histograms, long unit) throws IOException {
+        fw.write("{");
+        boolean first = true;
+        for (var e : histograms.entrySet()) {
+            var h = e.getValue();
+            if (!first) fw.write(",");
+            first = false;
+            fw.write("\"" + e.getKey() + "\":{\"n\":" + h.count() + ",\"p50\":" + h.percentile(50) / unit + ",\"p95\":" + h.percentile(95) / unit
+                + ",\"p99\":" + h.percentile(99) / unit + ",\"max\":" + h.max() / unit + "}");
+        }
+        fw.write("}");
+    }
+
+    private static String jsonEscape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+
     private File resolveReportFile() {
         File f = new File(reportPath);
         if (f.isAbsolute()) return f;
@@ -15,15 +15,53 @@ import java.security.NoSuchAlgorithmException;
 public final class NativeBridge {
     private final Logger logger;
     private final File baseDir;
-    private boolean loaded;
+    // Kernels in use; cleared while on probation or failed (the library itself stays loaded)
+    private volatile boolean loaded;
+    private boolean libraryLoaded;
+    // Optional FFM binding over the same library (JDK 22+); JNI stays the fallback
+    private boolean ffmEnabled = true;
+    private boolean ffmLoaded;
+    private volatile boolean nativePool; // kernels may block on the Rayon pool: JNI only (see isFfmLoaded)
+    private volatile boolean frustumKernel; // libraries before the box kernel still serve the cone kernels
+    private File loadedFrom;
+
+    /** Native kernel health: OFF (never loaded), HEALTHY, PROBATION (disabled, being re-tested) or FAILED. */
+    public enum Health { OFF, HEALTHY, PROBATION, FAILED }
+
+    /** Health snapshot for diagnostics and the JSON report. */
+    public record HealthReport(Health health, String binding, String reason, int disables,
+                               int cleanProbes, int probesNeeded, long shadowPairs, long shadowMismatches) {}
+
+    private volatile Health health = Health.OFF;
+    private volatile String reason = "";
+    private boolean selfTestEnabled = true;
+    private int probationProbes = 5;
+    private long probeIntervalNanos = 30_000_000_000L;
+    private long nextProbeNanos;
+    private int disables;
+    private int cleanProbes;
+    private long shadowPairs, shadowMismatches;
 
     public NativeBridge(Logger logger, File baseDir) {
         this.logger = logger;
         this.baseDir = baseDir;
     }
 
+    /**
+     * Health policy: golden-vector self-test at load, and after a disable one probe every
+     * {@code probeIntervalSeconds} until {@code probationProbes} consecutive clean runs re-enable the kernels.
+     */
+    public void configureHealth(boolean selfTest, int probationProbes, int probeIntervalSeconds) {
+        this.selfTestEnabled = selfTest;
+        this.probationProbes = Math.max(1, probationProbes);
+        this.probeIntervalNanos = Math.max(1, probeIntervalSeconds) * 1_000_000_000L;
+    }
+
     public void tryLoad(boolean enabled, String libraryPath,
                         boolean downloadEnabled, String downloadUrl, String sha256) {
+        // Once loaded, health belongs to probation and failure: a reload must not re-run the load
+        // self-test and clear PROBATION or FAILED
+        if (libraryLoaded) return;
         if (!enabled) {
             logger.info("Native bridge disabled in config");
             return;
@@ -61,8 +99,25 @@ public final class NativeBridge {
             }
             logger.info("Attempting to load native from {}", libFile.getAbsolutePath());
             System.load(libFile.getAbsolutePath());
-            loaded = true;
+            libraryLoaded = true;
+            loadedFrom = libFile;
             logger.info("Native bridge loaded from {}", libFile.getAbsolutePath());
+            if (ffmEnabled) tryLoadFfm();
+            frustumKernel = NativeSelfTest.hasFrustumKernel();
+            if (!frustumKernel) logger.info("Native library has no frustum kernel; frustum (box) culling runs in Java");
+            String err;
+            try {
+                err = selfTestEnabled ? selfTest() : null;
+            } catch (Throwable t) {
+                err = t.toString(); // e.g. a library older than the kernels under test
+            }
+            if (err != null) {
+                fail("self-test: " + err);
+                return;
+            }
+            health = Health.HEALTHY;
+            reason = "";
+            loaded = true;
         } catch (Throwable t) {
             loaded = false;
             logger.warn("Failed to load native bridge: {}", t.toString());
@@ -73,11 +128,149 @@ public final class NativeBridge {
         return loaded;
     }
 
-    public void disable() {
-        if (loaded) {
-            logger.warn("Disabling native bridge; Java fallback will be used");
+    /** True once the library is in the process, whatever its health (unloading needs a restart). */
+    public boolean isLibraryLoaded() {
+        return libraryLoaded;
+    }
+
+    /**
+     * Sizes the native kernels' thread pool (0 = single-threaded); batches shorter than
+     * {@code minParallel} stay on the calling culling worker. No-op when the library is not loaded.
+     */
+    public void configureThreads(int threads, int minParallel) {
+        if (!libraryLoaded) return;
+        try {
+            if (!NativeCulling.configureThreads(threads, minParallel)) {
+                logger.warn("Native culling thread pool could not be created; kernels stay single-threaded");
+            } else {
+                nativePool = threads > 0;
+                if (nativePool) {
+                    logger.info("Native culling kernels use {} thread(s) for batches of {}+ pairs{}", threads, minParallel,
+                        ffmLoaded ? " (over JNI: FFM critical calls must not wait on the pool)" : "");
+                }
+            }
+        } catch (UnsatisfiedLinkError e) {
+            logger.info("Native library has no thread pool support; kernels stay single-threaded");
+        }
+    }
+
+    /** True when the loaded library has the frustum (box) kernel; without it box mode runs in Java. */
+    public boolean hasFrustumKernel() {
+        return loaded && frustumKernel;
+    }
+
+    /**
+     * True when culling kernels should go through the FFM binding instead of JNI. Not with the native
+     * thread pool: critical downcalls hold off safepoints and GC for their whole duration, so they must
+     * not wait on pool workers; the C ABI exports never use the pool either.
+     */
+    public boolean isFfmLoaded() {
+        return loaded && ffmEnabled && ffmLoaded && !nativePool;
+    }
+
+    /** "ffm", "jni" or "off", for diagnostics. */
+    public String binding() {
+        return !loaded ? "off" : isFfmLoaded() ? "ffm" : "jni";
+    }
+
+    /** Toggles the FFM binding; binds it now when the library is already loaded over JNI. */
+    public void setFfmEnabled(boolean enabled) {
+        this.ffmEnabled = enabled;
+        if (enabled && libraryLoaded && !ffmLoaded) tryLoadFfm();
+    }
+
+    private void tryLoadFfm() {
+        if (!NativeCullingFfm.isSupported()) {
+            logger.info("FFM native binding needs JDK 22+ (running {}); using JNI", Runtime.version().feature());
+            return;
         }
+        try {
+            ffmLoaded = NativeCullingFfm.load(loadedFrom.toPath());
+            if (ffmLoaded) logger.info("Native culling bound via FFM; JNI kept as fallback");
+            else logger.warn("Native library has no FFM exports (gtk_cull_*); using JNI");
+        } catch (Throwable t) {
+            ffmLoaded = false;
+            logger.warn("Failed to bind native via FFM; using JNI: {}", t.toString());
+        }
+    }
+
+    public void disable() {
+        disable("unspecified");
+    }
+
+    /**
+     * Stops using the native kernels after a recoverable fault (timeout, kernel error) and puts them on
+     * probation: {@link #probeIfDue()} re-enables them after enough clean self-test runs.
+     */
+    public synchronized void disable(String why) {
+        if (!loaded) return;
+        loaded = false;
+        disables++;
+        cleanProbes = 0;
+        health = Health.PROBATION;
+        reason = why != null ? why : "";
+        nextProbeNanos = System.nanoTime() + probeIntervalNanos;
+        logger.warn("Disabling native bridge ({}); Java fallback will be used, re-enabled after {} clean probe(s)", reason, probationProbes);
+    }
+
+    /** Stops using the native kernels for good: they returned wrong answers. */
+    public synchronized void fail(String why) {
         loaded = false;
+        health = Health.FAILED;
+        reason = why != null ? why : "";
+        logger.warn("Native culling kernels failed ({}); Java fallback will be used until restart", reason);
+    }
+
+    /**
+     * Main thread, once per culling interval: while on probation, runs the self-test when a probe is due.
+     * A clean run counts towards re-enabling; a wrong answer fails the bridge, an error restarts the count.
+     */
+    public synchronized void probeIfDue() {
+        if (health != Health.PROBATION || !libraryLoaded) return;
+        long now = System.nanoTime();
+        if (now - nextProbeNanos < 0) return;
+        nextProbeNanos = now + probeIntervalNanos;
+        String err;
+        try {
+            err = selfTest();
+        } catch (Throwable t) {
+            cleanProbes = 0;
+            logger.warn("Native probe failed ({}/{} clean): {}", cleanProbes, probationProbes, t.toString());
+            return;
+        }
+        if (err != null) {
+            fail("probe: " + err);
+            return;
+        }
+        if (++cleanProbes >= probationProbes) {
+            health = Health.HEALTHY;
+            loaded = true;
+            logger.info("Native bridge re-enabled after {} clean probe(s) (was disabled: {})", cleanProbes, reason);
+            reason = "";
+        }
+    }
+
+    /** Records one shadow comparison of native decisions against the Java kernel; any mismatch fails the bridge. */
+    public synchronized void recordShadow(int pairs, int mismatches) {
+        shadowPairs += pairs;
+        shadowMismatches += mismatches;
+        if (mismatches > 0 && loaded) fail("shadow compare: " + mismatches + " of " + pairs + " pairs differ");
+    }
+
+    public synchronized HealthReport health() {
+        return new HealthReport(health, binding(), reason, disables, cleanProbes, probationProbes, shadowPairs, shadowMismatches);
+    }
+
+    // Golden vectors over JNI and, when bound, FFM; an FFM-only mismatch drops back to JNI
+    private String selfTest() {
+        String err = NativeSelfTest.run(false);
+        if (err != null || !ffmLoaded) return err;
+        String ffmErr = NativeSelfTest.run(true);
+        if (ffmErr != null) {
+            ffmLoaded = false;
+            logger.warn("FFM native binding failed its self-test ({}); using JNI", ffmErr);
+        }
+        return null;
     }
 
     private boolean attemptDownload(File target, String url, String sha256) {
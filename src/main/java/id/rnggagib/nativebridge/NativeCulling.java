@@ -1,6 +1,10 @@
 package id.rnggagib.nativebridge;
 
 public final class NativeCulling {
+    // Sizes the library's Rayon pool for the batch kernels; threads <= 0 keeps them single-threaded and
+    // batches shorter than minParallel always run on the calling thread. False when the pool could not be built.
+    public static native boolean configureThreads(int threads, int minParallel);
+
     // Static native method bound to Rust cdylib symbol
     public static native boolean shouldCull(
             double distance,
@@ -56,4 +60,75 @@ public final class NativeCulling {
         double speedThreshold,
         double cosAngleThreshold
     );
+
+    // View-frustum variant: culls far, slow pairs whose bounding box is fully outside the viewer's frustum.
+    // boxRel holds 3 doubles per pair (box centre relative to the eye), boxExtent 2 (half width, half height);
+    // viewerPlanes holds 12 per viewer (4 inward plane normals through the eye), indexed via pairViewers.
+    // Only the first count pairs are read and written.
+    public static native void shouldCullBatchFrustum(
+        double[] distances,
+        double[] speeds,
+        double[] boxRel,
+        double[] boxExtent,
+        int[] pairViewers,
+        double[] viewerPlanes,
+        int[] typeCodes,
+        double[] typeMaxDistance,
+        double[] typeSpeedThreshold,
+        int count,
+        boolean[] outFlags
+    );
+
+    // Fused shard kernel: pair generation and decision in one call. For every entity in [from, to) flagged
+    // in evaluate, emits one pair per viewer of its world within the per-axis radius (skipping the entity
+    // itself) into pairViewer/distances/cosAngles and decides it (cone, or bounding box vs frustum planes
+    // with FUSED_BOX) into outEnter and, with FUSED_HYSTERESIS, outExit under the exit thresholds/planes.
+    // Writes pairStart/pairEnd for the range. Returns the pair count, or -(required) when the pair columns
+    // are too short.
+    public static final int FUSED_BOX = 1;
+    public static final int FUSED_HYSTERESIS = 2;
+    public static final int FUSED_APPROX = 4;
+
+    public static native int cullPairsFused(
+        int from,
+        int to,
+        boolean[] evaluate,
+        double[] ex,
+        double[] ey,
+        double[] ez,
+        double[] widths,
+        double[] heights,
+        double[] speeds,
+        int[] typeCodes,
+        int[] worldIdx,
+        int[] entityIds,
+        double[] vx,
+        double[] vy,
+        double[] vz,
+        double[] vdx,
+        double[] vdy,
+        double[] vdz,
+        int[] viewerIds,
+        int viewerCount,
+        int[] worldViewerStart,
+        int[] worldViewerEnd,
+        double[] worldRadius,
+        int worldCount,
+        double[] viewerPlanes,
+        double[] viewerPlanesEnter,
+        double[] typeMaxEnter,
+        double[] typeMaxExit,
+        double[] typeSpeedThreshold,
+        double[] typeCosEnter,
+        double[] typeCosExit,
+        int mode,
+        double eyeHeight,
+        int[] pairStart,
+        int[] pairEnd,
+        int[] pairViewer,
+        double[] distances,
+        double[] cosAngles,
+        boolean[] outEnter,
+        boolean[] outExit
+    );
 }
@@ -0,0 +1,50 @@
+package id.rnggagib.nativebridge;
+
+/**
+ * FFM (java.lang.foreign) binding to the culling-rs C ABI exports ({@code gtk_cull_*}): arrays and
+ * direct buffers are handed to the library as memory segments, with no JNI transitions or copies.
+ * This is the base class of a multi-release jar; on JDK 21 it is inert ({@link #isSupported()} is
+ * false) and the JDK 22+ version under {@code META-INF/versions/22} does the downcalls. Callers check
+ * {@link NativeBridge#isFfmLoaded()}; JNI ({@link NativeCulling}) stays the fallback.
+ *
+ * Flags are written as bytes (0/1). Only the first {@code count} pairs are read and written.
+ */
+public final class NativeCullingFfm {
+    private NativeCullingFfm() {}
+
+    /** True when this runtime has the FFM implementation (JDK 22+ with the multi-release jar). */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /** Binds the C exports of an already present library; false when they are missing. */
+    public static boolean load(java.nio.file.Path library) {
+        return false;
+    }
+
+    // Global thresholds over direct buffers (same layout as NativeCulling.shouldCullBatchIntoDirect)
+    public static void shouldCullBatchDirect(java.nio.ByteBuffer distancesDoubles, java.nio.ByteBuffer speedsDoubles,
+                                             java.nio.ByteBuffer cosAnglesDoubles, java.nio.ByteBuffer outFlagsBytes,
+                                             int count, double maxDistance, double speedThreshold, double cosAngleThreshold) {
+        throw unsupported();
+    }
+
+    // Per-type thresholds over heap columns
+    public static void shouldCullBatchByType(double[] distances, double[] speeds, double[] cosAngles, int[] typeCodes,
+                                             double[] typeMaxDistance, double[] typeSpeedThreshold, double[] typeCosAngleThreshold,
+                                             int count, byte[] outFlags) {
+        throw unsupported();
+    }
+
+    // View-frustum variant (same layout as NativeCulling.shouldCullBatchFrustum)
+    public static void shouldCullBatchFrustum(double[] distances, double[] speeds, double[] boxRel, double[] boxExtent,
+                                              int[] pairViewers, double[] viewerPlanes, int[] typeCodes,
+                                              double[] typeMaxDistance, double[] typeSpeedThreshold,
+                                              int count, byte[] outFlags) {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("FFM culling binding needs JDK 22+");
+    }
+}
@@ -0,0 +1,154 @@
+package id.rnggagib.nativebridge;
+
+/**
+ * Golden-vector self-test for the native kernels: small fixed inputs with hand-checked expected flags,
+ * covering both sides of every threshold, SIMD lanes plus a scalar tail, and the frustum planes. Used
+ * at load time and as the probe while the bridge is on probation. Returns null when every kernel
+ * agrees, otherwise a short description of the first mismatch.
+ */
+final class NativeSelfTest {
+    private NativeSelfTest() {}
+
+    // Cone inputs: distance, speed, cos
+    private static final double[] D = {60, 40, 60, 60, 48, 100, 49, 1000, 200};
+    private static final double[] S = {0.01, 0.01, 0.10, 0.01, 0.01, 0.0, 0.049, 0.05, 0.02};
+    private static final double[] C = {0.0, 0.0, 0.0, 0.5, 0.0, -1.0, 0.249, 0.0, 0.1};
+    // Global thresholds 48 / 0.05 / 0.25
+    private static final boolean[] GLOBAL = {true, false, false, false, false, true, true, false, true};
+    // Per-type thresholds; codes cycle 0, 1, 2
+    private static final int[] TYPES = {0, 1, 2, 0, 1, 2, 0, 1, 2};
+    private static final double[] TYPE_MD = {48, 20, 100};
+    private static final double[] TYPE_SP = {0.05, 0.5, 0.05};
+    private static final double[] TYPE_CT = {0.25, 0.9, -0.5};
+    private static final boolean[] BY_TYPE = {true, true, false, false, true, false, true, true, false};
+
+    // Frustum: one viewer at the origin facing +Z with 45 degree half-angles (right, left, top, bottom)
+    private static final double H = Math.sqrt(0.5);
+    private static final double[] PLANES = {H, 0, H, -H, 0, H, 0, -H, H, 0, H, H};
+    private static final double[] F_D = {50, 50, 5, 50, 54, 54, 50, 50, 50};
+    private static final double[] F_S = {0.01, 0.01, 0.01, 0.2, 0.01, 0.01, 0.01, 0.01, 0.01};
+    private static final double[] F_REL = {0, 0, 50, 0, 0, -50, 0, 0, -5, 0, 0, -50, 50, 0, 20, 20, 0, 50, 0, 0, -0.2, 0, 60, 10, -30, 0, -1};
+    private static final double[] F_EXT = {0.3, 0.9, 0.3, 0.9, 0.3, 0.9, 0.3, 0.9, 0.3, 0.9, 0.3, 0.9, 0.3, 0.9, 0.3, 0.9, 0.3, 0.9};
+    private static final int[] F_VIEWERS = new int[9];
+    private static final int[] F_TYPES = new int[9];
+    private static final double[] F_MD = {10};
+    private static final double[] F_SP = {0.05};
+    private static final boolean[] FRUSTUM = {false, true, false, false, true, false, false, true, true};
+
+    static String run(boolean ffm) {
+        int n = D.length;
+        for (int i = 0; i < n; i++) {
+            if (NativeCulling.shouldCull(D[i], S[i], C[i], 48, 0.05, 0.25) != GLOBAL[i]) return "shouldCull[" + i + "]";
+        }
+        String err = check("shouldCullBatch", NativeCulling.shouldCullBatch(D, S, C, 48, 0.05, 0.25), GLOBAL);
+        if (err != null) return err;
+
+        boolean[] out = new boolean[n];
+        NativeCulling.shouldCullBatchInto(D, S, C, out, 48, 0.05, 0.25);
+        if ((err = check("shouldCullBatchInto", out, GLOBAL)) != null) return err;
+
+        out = new boolean[n];
+        NativeCulling.shouldCullBatchIntoByType(D, S, C, TYPES, TYPE_MD, TYPE_SP, TYPE_CT, out);
+        if ((err = check("shouldCullBatchIntoByType", out, BY_TYPE)) != null) return err;
+
+        var dOut = java.nio.ByteBuffer.allocateDirect(n).order(java.nio.ByteOrder.nativeOrder());
+        NativeCulling.shouldCullBatchIntoDirect(direct(D), direct(S), direct(C), dOut, n, 48, 0.05, 0.25);
+        if ((err = check("shouldCullBatchIntoDirect", dOut, GLOBAL)) != null) return err;
+
+        // Optional symbol: a library that predates the frustum kernel is still right about the cone
+        if ((err = frustum()) != null) return err;
+
+        if ((err = fused()) != null) return err;
+        return ffm ? runFfm() : null;
+    }
+
+    // Frustum kernel (optional symbol); null when it agrees or is absent (see hasFrustumKernel)
+    private static String frustum() {
+        boolean[] out = new boolean[F_D.length];
+        try {
+            NativeCulling.shouldCullBatchFrustum(F_D, F_S, F_REL, F_EXT, F_VIEWERS, PLANES, F_TYPES, F_MD, F_SP, F_D.length, out);
+        } catch (UnsatisfiedLinkError e) {
+            return null;
+        }
+        return check("shouldCullBatchFrustum", out, FRUSTUM);
+    }
+
+    /** False when the loaded library has no JNI frustum kernel; box mode then stays in Java. */
+    static boolean hasFrustumKernel() {
+        try {
+            NativeCulling.shouldCullBatchFrustum(F_D, F_S, F_REL, F_EXT, F_VIEWERS, PLANES, F_TYPES, F_MD, F_SP, F_D.length, new boolean[F_D.length]);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    // Fused kernel (optional symbol): two viewers back to back at the origin, entities ahead, behind and near
+    private static String fused() {
+        double[] vx = {0, 0}, vy = {64, 64}, vz = {0, 0}, vdx = {0, 0}, vdy = {0, 0}, vdz = {1, -1};
+        double[] ex = {0, 0, 0}, ey = {64, 64, 64}, ez = {60, -60, 5};
+        double[] size = {0.6, 0.6, 0.6}, speeds = {0.01, 0.01, 0.01};
+        int[] none = new int[3];
+        int[] pairStart = new int[3], pairEnd = new int[3], pairViewer = new int[8];
+        double[] dist = new double[8], cos = new double[8];
+        boolean[] enter = new boolean[8], exit = new boolean[8];
+        double[] md = {48}, sp = {0.05}, ct = {0.25};
+        int count;
+        try {
+            count = NativeCulling.cullPairsFused(0, 3, new boolean[]{true, true, true}, ex, ey, ez, size, size, speeds, none, none,
+                new int[]{1, 2, 3}, vx, vy, vz, vdx, vdy, vdz, new int[]{100, 101}, 2, new int[]{0}, new int[]{2}, new double[]{100}, 1,
+                new double[24], new double[24], md, md, sp, ct, ct, 0, 1.62, pairStart, pairEnd, pairViewer, dist, cos, enter, exit);
+        } catch (UnsatisfiedLinkError e) {
+            return null; // library predates the fused kernel
+        }
+        if (count != 6 || pairStart[1] != 2 || pairEnd[2] != 6) return "cullPairsFused: pair layout";
+        boolean[] expected = {false, true, true, false, false, false};
+        for (int k = 0; k < 6; k++) {
+            if (pairViewer[k] != (k & 1)) return "cullPairsFused: pairViewer[" + k + "]";
+            if (enter[k] != expected[k] || exit[k] != expected[k]) return "cullPairsFused[" + k + "]";
+        }
+        return null;
+    }
+
+    private static String runFfm() {
+        int n = D.length;
+        byte[] flags = new byte[n];
+        NativeCullingFfm.shouldCullBatchByType(D, S, C, TYPES, TYPE_MD, TYPE_SP, TYPE_CT, n, flags);
+        String err = check("ffm.shouldCullBatchByType", flags, BY_TYPE);
+        if (err != null) return err;
+        flags = new byte[n];
+        NativeCullingFfm.shouldCullBatchFrustum(F_D, F_S, F_REL, F_EXT, F_VIEWERS, PLANES, F_TYPES, F_MD, F_SP, n, flags);
+        if ((err = check("ffm.shouldCullBatchFrustum", flags, FRUSTUM)) != null) return err;
+        var dOut = java.nio.ByteBuffer.allocateDirect(n).order(java.nio.ByteOrder.nativeOrder());
+        NativeCullingFfm.shouldCullBatchDirect(direct(D), direct(S), direct(C), dOut, n, 48, 0.05, 0.25);
+        return check("ffm.shouldCullBatchDirect", dOut, GLOBAL);
+    }
+
+    private static java.nio.ByteBuffer direct(double[] src) {
+        var bb = java.nio.ByteBuffer.allocateDirect(src.length * Double.BYTES).order(java.nio.ByteOrder.nativeOrder());
+        bb.asDoubleBuffer().put(src);
+        return bb;
+    }
+
+    private static String check(String kernel, boolean[] actual, boolean[] expected) {
+        if (actual == null || actual.length < expected.length) return kernel + ": short result";
+        for (int i = 0; i < expected.length; i++) {
+            if (actual[i] != expected[i]) return kernel + "[" + i + "]: expected " + expected[i];
+        }
+        return null;
+    }
+
+    private static String check(String kernel, byte[] actual, boolean[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if ((actual[i] != 0) != expected[i]) return kernel + "[" + i + "]: expected " + expected[i];
+        }
+        return null;
+    }
+
+    private static String check(String kernel, java.nio.ByteBuffer actual, boolean[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if ((actual.get(i) != 0) != expected[i]) return kernel + "[" + i + "]: expected " + expected[i];
+        }
+        return null;
+    }
+}
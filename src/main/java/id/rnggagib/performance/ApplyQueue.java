@@ -0,0 +1,129 @@
+package id.rnggagib.performance;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Main-thread apply of computed snapshots' (viewer, entity) transitions, amortized across ticks.
+ * Snapshots are applied strictly in cycle order (FIFO), so transitions of one pair are never
+ * reordered across cycles; within a snapshot they are ordered once (shows before hides, then nearest
+ * pair first) and drained under a per-tick time budget. A snapshot is held, and not refilled, until
+ * it is fully applied, so its refs stay valid; it is then handed to the retire callback.
+ */
+final class ApplyQueue {
+    private static final int CHECK_EVERY = 16; // transitions between clock reads
+
+    private final java.util.function.Consumer<CullingSnapshot> onApplied;
+    private final java.util.ArrayDeque<CullingSnapshot> waiting = new java.util.ArrayDeque<>();
+    private int waitingTransitions;
+    private CullingSnapshot snap; // being applied
+    private long[] order = new long[256]; // priority << 32 | entry
+    private int[] entryShard = new int[256];
+    private int[] entryTrans = new int[256];
+    private int size;
+    private int next;
+
+    ApplyQueue(java.util.function.Consumer<CullingSnapshot> onApplied) {
+        this.onApplied = onApplied;
+    }
+
+    boolean isEmpty() { return snap == null; }
+    int remaining() { return size - next + waitingTransitions; }
+
+    /** Queues every transition of {@code snap} behind the snapshots already queued. */
+    void add(CullingSnapshot snap) {
+        if (this.snap != null) {
+            waiting.addLast(snap);
+            waitingTransitions += transitions(snap);
+        } else {
+            activate(snap);
+        }
+    }
+
+    private void activate(CullingSnapshot snap) {
+        this.snap = snap;
+        size = 0;
+        next = 0;
+        for (int s = 0; s < snap.shardCount; s++) {
+            var shard = snap.shards[s];
+            for (int t = 0; t < shard.transCount; t++) {
+                if (size == order.length) grow();
+                int i = shard.transIdx[t], v = shard.transViewer[t];
+                double dx = snap.ex[i] - snap.vx[v], dy = snap.ey[i] - snap.vy[v], dz = snap.ez[i] - snap.vz[v];
+                // 1/16 block resolution; hides sort after every show
+                long prio = Math.min((1L << 30) - 1, (long) (Math.sqrt(dx*dx + dy*dy + dz*dz) * 16.0));
+                if (shard.transKind[t] == CullingSnapshot.T_HIDE) prio |= 1L << 30;
+                order[size] = (prio << 32) | size;
+                entryShard[size] = s;
+                entryTrans[size] = t;
+                size++;
+            }
+        }
+        java.util.Arrays.sort(order, 0, size);
+        if (size == 0) retire();
+    }
+
+    // The active snapshot is fully applied: hand it back and move on to the next one
+    private void retire() {
+        var done = snap;
+        snap = null;
+        size = 0;
+        next = 0;
+        onApplied.accept(done);
+        var n = waiting.pollFirst();
+        if (n != null) {
+            waitingTransitions -= transitions(n);
+            activate(n);
+        }
+    }
+
+    private static int transitions(CullingSnapshot snap) {
+        int n = 0;
+        for (int s = 0; s < snap.shardCount; s++) n += snap.shards[s].transCount;
+        return n;
+    }
+
+    /**
+     * Applies queued transitions in priority order until {@code budgetNanos} has elapsed (checked every
+     * few transitions) or {@code maxCount} were taken. Returns the number of hide/show calls made.
+     */
+    int drain(Plugin plugin, long budgetNanos, int maxCount) {
+        long start = System.nanoTime();
+        int taken = 0, calls = 0;
+        while (snap != null && taken < maxCount) {
+            if (next >= size) { retire(); continue; }
+            if (taken % CHECK_EVERY == CHECK_EVERY - 1 && System.nanoTime() - start >= budgetNanos) break;
+            int e = (int) order[next++];
+            taken++;
+            var shard = snap.shards[entryShard[e]];
+            int t = entryTrans[e];
+            Entity ent = snap.entities[shard.transIdx[t]];
+            if (ent == null || !ent.isValid()) continue;
+            Player p = snap.viewers[shard.transViewer[t]];
+            if (p == null || !p.isOnline()) continue;
+            if (shard.transKind[t] == CullingSnapshot.T_HIDE) p.hideEntity(plugin, ent); else p.showEntity(plugin, ent);
+            calls++;
+        }
+        if (snap != null && next >= size) retire();
+        return calls;
+    }
+
+    /** Drops everything queued without applying it; the snapshots go straight back to the free pool. */
+    void clear() {
+        if (snap != null) snap.stage = CullingSnapshot.S_FREE;
+        for (var s : waiting) s.stage = CullingSnapshot.S_FREE;
+        waiting.clear();
+        waitingTransitions = 0;
+        snap = null;
+        size = 0;
+        next = 0;
+    }
+
+    private void grow() {
+        int cap = order.length << 1;
+        order = java.util.Arrays.copyOf(order, cap);
+        entryShard = java.util.Arrays.copyOf(entryShard, cap);
+        entryTrans = java.util.Arrays.copyOf(entryTrans, cap);
+    }
+}
@@ -0,0 +1,106 @@
+package id.rnggagib.performance;
+
+import org.bukkit.ChunkSnapshot;
+
+/**
+ * Per-world cache of {@link ChunkSnapshot}s keyed by chunk coordinates (open addressing, long keys).
+ * Written on the main thread only while no culling compute is in flight; read concurrently by the
+ * culling pool during compute.
+ */
+final class ChunkSnapshotCache {
+    final int minY, maxY;
+    private long[] keys = new long[256];
+    private ChunkSnapshot[] chunks = new ChunkSnapshot[256];
+    private int[] captured = new int[256];
+    private int[] wanted = new int[256];
+    private int size;
+
+    ChunkSnapshotCache(int minY, int maxY) {
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    int size() { return size; }
+
+    ChunkSnapshot get(int cx, int cz) {
+        int i = find(key(cx, cz));
+        return i >= 0 ? chunks[i] : null;
+    }
+
+    /** Cycle at which (cx, cz) was captured, or -1 if absent; also records that it is still wanted. */
+    int touch(int cx, int cz, int cycle) {
+        int i = find(key(cx, cz));
+        if (i < 0) return -1;
+        wanted[i] = cycle;
+        return captured[i];
+    }
+
+    void put(int cx, int cz, ChunkSnapshot snapshot, int cycle) {
+        long k = key(cx, cz);
+        int i = find(k);
+        if (i < 0) {
+            if ((size + 1) * 2 > keys.length) rehash(keys.length << 1);
+            i = slot(k, keys.length - 1);
+            while (chunks[i] != null) i = (i + 1) & (keys.length - 1);
+            keys[i] = k;
+            size++;
+        }
+        chunks[i] = snapshot;
+        captured[i] = cycle;
+        wanted[i] = cycle;
+    }
+
+    /** Drops chunks no viewer wanted since {@code horizon}; rebuilds the table only if something went. */
+    void evictUnwanted(int horizon) {
+        int stale = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (chunks[i] != null && wanted[i] < horizon) stale++;
+        }
+        if (stale == 0) return;
+        long[] ok = keys; ChunkSnapshot[] oc = chunks; int[] ocap = captured, ow = wanted;
+        int cap = keys.length;
+        while (cap > 256 && (size - stale) * 4 < cap) cap >>= 1;
+        keys = new long[cap]; chunks = new ChunkSnapshot[cap]; captured = new int[cap]; wanted = new int[cap];
+        size = 0;
+        for (int i = 0; i < ok.length; i++) {
+            if (oc[i] == null || ow[i] < horizon) continue;
+            insertFresh(ok[i], oc[i], ocap[i], ow[i]);
+        }
+    }
+
+    private int find(long k) {
+        int mask = keys.length - 1;
+        int i = slot(k, mask);
+        while (chunks[i] != null) {
+            if (keys[i] == k) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int cap) {
+        long[] ok = keys; ChunkSnapshot[] oc = chunks; int[] ocap = captured, ow = wanted;
+        keys = new long[cap]; chunks = new ChunkSnapshot[cap]; captured = new int[cap]; wanted = new int[cap];
+        size = 0;
+        for (int i = 0; i < ok.length; i++) {
+            if (oc[i] != null) insertFresh(ok[i], oc[i], ocap[i], ow[i]);
+        }
+    }
+
+    private void insertFresh(long k, ChunkSnapshot c, int cap, int want) {
+        int mask = keys.length - 1;
+        int i = slot(k, mask);
+        while (chunks[i] != null) i = (i + 1) & mask;
+        keys[i] = k; chunks[i] = c; captured[i] = cap; wanted[i] = want;
+        size++;
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    private static int slot(long k, int mask) {
+        long h = k * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,47 @@
+package id.rnggagib.performance;
+
+import org.slf4j.Logger;
+
+/**
+ * Data-parallel Java culling kernels used when the native library is not loaded. The implementation
+ * ({@code VectorCullingKernel}, Vector API) lives in its own source root and is only loaded when the
+ * JVM was started with {@code --add-modules jdk.incubator.vector}; otherwise the scalar loops in
+ * {@link CullingService} run.
+ */
+interface CullKernel {
+    String IMPLEMENTATION = "id.rnggagib.performance.VectorCullingKernel";
+    String MODULE = "jdk.incubator.vector";
+
+    /**
+     * Pair features of one entity at (ex, ey, ez) against viewers [from, to): writes the distance to
+     * {@code dist[v - from]} (negative when the viewer is outside the per-axis radius {@code r}) and
+     * the cosine between the view direction and the entity to {@code cos[v - from]}.
+     */
+    void features(double ex, double ey, double ez, double r,
+                  double[] vx, double[] vy, double[] vz, double[] vdx, double[] vdy, double[] vdz,
+                  int from, int to, double[] dist, double[] cos);
+
+    /**
+     * Cone cull decision for pairs [0, count) with per-type thresholds indexed by {@code types}
+     * (tables of length 1 are global); {@code approx} applies the legacy frustum-approx tightening.
+     */
+    void cone(double[] distances, double[] speeds, double[] cosAngles, int[] types,
+              double[] md, double[] sp, double[] ct, boolean approx, int count, boolean[] out);
+
+    /** Short description for logs, e.g. lane count. */
+    String describe();
+
+    /** Loads the Vector API kernel, or returns null (logged) when the module or class is unavailable. */
+    static CullKernel loadVector(Logger logger) {
+        try {
+            if (ModuleLayer.boot().findModule(MODULE).isEmpty()) {
+                if (logger != null) logger.info("Vector culling kernel unavailable (start the JVM with --add-modules {}); using scalar Java fallback", MODULE);
+                return null;
+            }
+            return (CullKernel) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (Throwable t) {
+            if (logger != null) logger.warn("Failed to load vector culling kernel; using scalar Java fallback: {}", t.toString());
+            return null;
+        }
+    }
+}
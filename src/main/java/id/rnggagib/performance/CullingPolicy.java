@@ -0,0 +1,160 @@
+package id.rnggagib.performance;
+
+import org.bukkit.entity.EntityType;
+import org.slf4j.Logger;
+
+import java.util.Locale;
+
+/**
+ * Culling filters and thresholds compiled once from config into EntityType-ordinal tables, so capture
+ * resolves an entity with array lookups instead of upper-casing and hashing its type name.
+ *
+ * <p>Threshold rows are laid out per world profile (0 = global defaults, then one per entry of
+ * {@code world-overrides}) times type row (0 = the profile's defaults, then one per configured type).
+ * The code stored in the snapshot is {@code profile * rows + typeRow}, which indexes the tables handed
+ * to the Java and native by-type kernels directly. Immutable; a reload compiles a new one.
+ */
+final class CullingPolicy {
+    static final byte EXCLUDED = 1;  // never captured: protected, blacklisted or not whitelisted
+    static final byte PROTECTED = 2; // never culled (packet culling honours this too)
+
+    private final byte[] flags;      // by EntityType ordinal
+    private final int[] typeRow;     // by EntityType ordinal; 0 = profile defaults
+    private final int rows;          // type rows per profile
+    private final java.util.Map<String, Integer> profileByWorld;
+    private final java.util.Set<String> worldsInclude;
+    private final java.util.Set<String> worldsExclude;
+    // By code
+    final double[] maxDistance;
+    final double[] speedThreshold;
+    final double[] cosAngleThreshold;
+
+    private CullingPolicy(byte[] flags, int[] typeRow, int rows, java.util.Map<String, Integer> profileByWorld,
+                          java.util.Set<String> worldsInclude, java.util.Set<String> worldsExclude,
+                          double[] maxDistance, double[] speedThreshold, double[] cosAngleThreshold) {
+        this.flags = flags;
+        this.typeRow = typeRow;
+        this.rows = rows;
+        this.profileByWorld = profileByWorld;
+        this.worldsInclude = worldsInclude;
+        this.worldsExclude = worldsExclude;
+        this.maxDistance = maxDistance;
+        this.speedThreshold = speedThreshold;
+        this.cosAngleThreshold = cosAngleThreshold;
+    }
+
+    /**
+     * Compiles a policy. Threshold triples are {max-distance, speed-threshold, cos-angle-threshold} with
+     * NaN for fields left unset: world overrides fall back to the global values, type entries to the
+     * defaults of the world profile they are laid out in. Unknown type names are logged and ignored.
+     */
+    static CullingPolicy compile(double md, double st, double ct,
+                                 java.util.Map<String, double[]> typeThresholds,
+                                 java.util.Map<String, double[]> worldOverrides,
+                                 java.util.Collection<String> whitelist, java.util.Collection<String> blacklist,
+                                 java.util.Collection<String> protectedTypes,
+                                 java.util.Collection<String> worldsInclude, java.util.Collection<String> worldsExclude,
+                                 Logger logger) {
+        EntityType[] types = EntityType.values();
+        byte[] flags = new byte[types.length];
+        int[] typeRow = new int[types.length];
+
+        for (var name : protectedTypes) {
+            var t = resolve(name, "protected-types", logger);
+            if (t != null) flags[t.ordinal()] |= PROTECTED | EXCLUDED;
+        }
+        for (var name : blacklist) {
+            var t = resolve(name, "blacklist", logger);
+            if (t != null) flags[t.ordinal()] |= EXCLUDED;
+        }
+        boolean[] allowed = null;
+        for (var name : whitelist) {
+            var t = resolve(name, "whitelist", logger);
+            if (allowed == null) allowed = new boolean[types.length];
+            if (t != null) allowed[t.ordinal()] = true;
+        }
+        if (allowed != null) {
+            for (int o = 0; o < types.length; o++) if (!allowed[o]) flags[o] |= EXCLUDED;
+        }
+
+        // Type rows in name order so codes are stable across reloads of the same config
+        var typed = new java.util.ArrayList<double[]>();
+        for (var e : new java.util.TreeMap<>(typeThresholds).entrySet()) {
+            var t = resolve(e.getKey(), "type-thresholds", logger);
+            if (t == null || typeRow[t.ordinal()] != 0) continue;
+            typed.add(e.getValue());
+            typeRow[t.ordinal()] = typed.size();
+        }
+        int rows = typed.size() + 1;
+
+        var profiles = new java.util.ArrayList<double[]>();
+        profiles.add(new double[]{md, st, ct});
+        var profileByWorld = new java.util.HashMap<String, Integer>();
+        for (var e : new java.util.TreeMap<>(worldOverrides).entrySet()) {
+            double[] o = e.getValue();
+            profileByWorld.put(e.getKey(), profiles.size());
+            profiles.add(new double[]{or(o[0], md), or(o[1], st), or(o[2], ct)});
+        }
+
+        int codes = profiles.size() * rows;
+        double[] cMd = new double[codes], cSt = new double[codes], cCt = new double[codes];
+        for (int p = 0; p < profiles.size(); p++) {
+            double[] base = profiles.get(p);
+            for (int r = 0; r < rows; r++) {
+                double[] row = r == 0 ? base : typed.get(r - 1);
+                int code = p * rows + r;
+                cMd[code] = or(row[0], base[0]);
+                cSt[code] = or(row[1], base[1]);
+                cCt[code] = or(row[2], base[2]);
+            }
+        }
+        return new CullingPolicy(flags, typeRow, rows, profileByWorld,
+            new java.util.HashSet<>(worldsInclude), new java.util.HashSet<>(worldsExclude), cMd, cSt, cCt);
+    }
+
+    /** Global thresholds only: no filters, no type or world overrides. */
+    static CullingPolicy global(double md, double st, double ct) {
+        var none = java.util.List.<String>of();
+        return compile(md, st, ct, java.util.Map.of(), java.util.Map.of(), none, none, none, none, none, null);
+    }
+
+    /** World profile for capture, or -1 when the world is not culled (worlds-include/-exclude). */
+    int profile(String world) {
+        if (!worldsInclude.isEmpty() && !worldsInclude.contains(world)) return -1;
+        if (worldsExclude.contains(world)) return -1;
+        Integer p = profileByWorld.get(world);
+        return p == null ? 0 : p;
+    }
+
+    /** Default max distance of a world profile (sizes the capture radius). */
+    double maxDistance(int profile) {
+        return maxDistance[profile * rows];
+    }
+
+    /** Threshold code of an entity type in a world profile. */
+    int code(int profile, EntityType type) {
+        return profile * rows + typeRow[type.ordinal()];
+    }
+
+    boolean isExcluded(EntityType type) {
+        return (flags[type.ordinal()] & EXCLUDED) != 0;
+    }
+
+    boolean isProtected(EntityType type) {
+        return (flags[type.ordinal()] & PROTECTED) != 0;
+    }
+
+    private static double or(double v, double fallback) {
+        return Double.isNaN(v) ? fallback : v;
+    }
+
+    private static EntityType resolve(String name, String list, Logger logger) {
+        if (name == null || name.isEmpty()) return null;
+        try {
+            return EntityType.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            if (logger != null) logger.warn("Unknown entity type '{}' in features.culling.{}; ignored", name, list);
+            return null;
+        }
+    }
+}
@@ -1,21 +1,22 @@
 package id.rnggagib.performance;
 
+import id.rnggagib.monitor.LatencyHistogram;
 import id.rnggagib.nativebridge.NativeBridge;
 import id.rnggagib.nativebridge.NativeCulling;
+import id.rnggagib.nativebridge.NativeCullingFfm;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.metadata.MetadataValue;
 import org.bukkit.plugin.Plugin;
 import org.slf4j.Logger;
 
 import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
-import java.util.Locale;
 
 /**
  * Toggleable entity culling module, safe on main thread.
@@ -25,9 +26,29 @@ public final class CullingService {
     private final Logger logger;
     private final NativeBridge nativeBridge;
     private int taskId = -1;
-    private ExecutorService worker; // single-threaded async precompute
-    private Future<ComputationResult> inFlight;
+    private ForkJoinPool worker; // async precompute; shards of one cycle run in parallel
+    private Future<CullingSnapshot> inFlight;
     private long inFlightSubmitNano = 0L;
+    // Pipeline: cycle N+1 is captured while N computes and N-1 is applied. Every arena is in exactly
+    // one stage: at most one captured and waiting, one computing, the others queued for apply.
+    private final CullingSnapshot[] arenas = {new CullingSnapshot(), new CullingSnapshot(), new CullingSnapshot()};
+    private CullingSnapshot captured;  // waiting for the compute stage
+    private CullingSnapshot computing; // owned by the worker until harvested
+    private final ApplyQueue applyQueue = new ApplyQueue(this::retire);
+    private int ticksSinceCycle;
+    private int skippedCaptures; // intervals skipped because every arena was busy
+    // Entity id -> captured position for packet-thread consumers (movement LOD); off until requested
+    private volatile EntityIdIndex idIndex;
+    private volatile boolean idIndexEnabled;
+    // Smoothed stage latencies (ns): capture, wait, compute, apply, capture-to-applied
+    private final double[] stageNanos = new double[5];
+    // Stage distributions (main thread): live fills during a window, last is the previous full window.
+    // Latencies in ns; apply-tick is the main-thread apply slice per tick, the rest are per cycle.
+    static final String[] LATENCY_STAGES = {"capture", "wait", "compute-native", "compute-java", "apply", "apply-tick", "total"};
+    static final String[] SIZE_STAGES = {"entities", "pairs", "transitions"};
+    private final LatencyHistogram[] latencyLive = histograms(LATENCY_STAGES.length), latencyLast = histograms(LATENCY_STAGES.length);
+    private final LatencyHistogram[] sizeLive = histograms(SIZE_STAGES.length), sizeLast = histograms(SIZE_STAGES.length);
+    private int histogramWindowStart = -1;
 
     // Configurable params
     private boolean enabled;
@@ -37,49 +58,87 @@ public final class CullingService {
     private int intervalTicks;
     private int maxEntitiesPerTick;
     private long computeTimeoutMs;
+    private long applyBudgetNanos;
+    private int workers;
+    private int shardSize;
     private boolean metrics;
     private boolean frustumApprox;
+    // Real view frustum (replaces the cone test when enabled): half-angles in radians
+    private boolean frustum;
+    private double frustumHalfV;
+    private double frustumHalfH;
+    // Hysteresis: hiding uses stricter enter thresholds than showing, plus per-entity dwell
+    private boolean hysteresis;
+    private double distanceBand;
+    private double cosBand;
+    private double angleBandDegrees;
+    private int minVisibleCycles;
+    private int minHiddenCycles;
+    private double frustumEnterHalfV;
+    private double frustumEnterHalfH;
     private boolean ratioPercent;
     private boolean alarmEnabled;
     private double alarmThreshold;
     private int alarmCooldownSec;
     private int windowSeconds;
-    private java.util.Set<String> worldsInclude = java.util.Set.of();
-    private java.util.Set<String> worldsExclude = java.util.Set.of();
     private int chunkRadius;
+    private boolean incremental;
+    private double positionQuantum;
+    private double angleQuantumDegrees;
+    private int evictAfterCycles;
     private java.util.Map<String, Integer> trackingRangePerWorld = new java.util.HashMap<>();
-    private java.util.Map<String, TypeThreshold> typeThresholds = new java.util.HashMap<>();
-    // Small pre-sized buffer pool to avoid allocations
-    private double[] bufDistances;
-    private double[] bufSpeeds;
-    private double[] bufCos;
-    private boolean[] bufOut;
-    private int[] bufTypeCodes;
-    // Direct buffers (optional fast path w/ JNI)
+    // Filters and per-type/per-world thresholds compiled at load into EntityType-ordinal tables; the
+    // threshold tables below are the policy's (by code), plus the hysteresis enter variants
+    private volatile CullingPolicy policy = CullingPolicy.global(48.0, 0.05, 0.25);
+    private double[] typeMax = new double[1];
+    private double[] typeSpd = new double[1];
+    private double[] typeCos = new double[1];
+    private double[] typeMaxEnter = new double[1];
+    private double[] typeCosEnter = new double[1];
+    // Cone thresholds as the non-fused native kernels take them: frustum-approx tightens the cone by 0.15
+    private double[] typeCosApprox = new double[1];
+    private double[] typeCosEnterApprox = new double[1];
+    // Fused native shard kernel (pair generation + decision); cleared when the library lacks it
+    private volatile boolean fusedKernel = true;
+    // Native health: every Nth native cycle is re-decided in Java (0 = off)
+    private int shadowEveryCycles = 100;
+    private int nativeCycles;
+    // Vector API kernels for the Java path (null when disabled or the incubator module is absent)
+    private boolean vectorKernelEnabled;
+    private CullKernel vectorKernel;
+    // Direct buffers (optional fast path w/ JNI), owned by the snapshot arena
     private boolean useDirectBuffers = true;
-    private java.nio.ByteBuffer dbufDistances;
-    private java.nio.ByteBuffer dbufSpeeds;
-    private java.nio.ByteBuffer dbufCos;
-    private java.nio.ByteBuffer dbufOut;
+    // Main-thread spatial index reused every capture
+    private final EntityGrid grid = new EntityGrid();
+    private final org.bukkit.Location scratchLoc = new org.bukkit.Location(null, 0, 0, 0);
+    // Per-(viewer, entity) decisions carried across cycles; incremental mode also skips unchanged entities
+    private CullingState state;
+    // Optional voxel occlusion stage (null when disabled)
+    private OcclusionCuller occlusion;
 
     // Metrics
     private int lastCulledCount = 0;
     private int lastProcessedCount = 0;
+    private int lastOccludedCount = 0;
     private double lastCullRatio = 0.0; // 0..1
-    private final java.util.ArrayDeque<int[]> window = new java.util.ArrayDeque<>(); // [culled, processed, timestampSec]
+    private int lastTransitions = 0;
+    private long lastApplyNanos = 0L;
+    private long lastPeakApplyNanos = 0L;
+    // Accumulated between interval boundaries
+    private int cycleCulled, cycleProcessed, cycleOccluded, cycleTransitions;
+    private long cyclePeakApplyNanos;
+    private final java.util.ArrayDeque<int[]> window = new java.util.ArrayDeque<>(); // [culled, processed, timestampSec, transitions]
     private int windowCulled = 0;
     private int windowProcessed = 0;
+    private int windowTransitions = 0;
 
     // Filters
-    private java.util.Set<String> whitelist = java.util.Set.of();
-    private java.util.Set<String> blacklist = java.util.Set.of();
     private static final java.util.Set<String> DEFAULT_PROTECTED_TYPES = java.util.Set.of(
         "VILLAGER", "ZOMBIE_VILLAGER", "WANDERING_TRADER",
         "BOAT", "CHEST_BOAT",
         "MINECART", "CHEST_MINECART", "HOPPER_MINECART", "FURNACE_MINECART",
         "TNT_MINECART", "COMMAND_BLOCK_MINECART", "SPAWNER_MINECART"
     );
-    private java.util.Set<String> protectedTypes = new java.util.HashSet<>(DEFAULT_PROTECTED_TYPES);
 
     public CullingService(Plugin plugin, Logger logger, NativeBridge nativeBridge) {
         this.plugin = plugin;
@@ -96,26 +155,43 @@ public final class CullingService {
     intervalTicks = cfg.getInt("features.culling.interval-ticks", 20);
         maxEntitiesPerTick = cfg.getInt("features.culling.max-entities-per-tick", 512);
     computeTimeoutMs = Math.max(10L, cfg.getLong("features.culling.compute-timeout-ms", 75L));
+    applyBudgetNanos = Math.max(10L, cfg.getLong("features.culling.apply-budget-us", 500L)) * 1_000L;
+    int cfgWorkers = cfg.getInt("features.culling.workers", 0);
+    workers = cfgWorkers > 0 ? cfgWorkers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    shardSize = Math.max(64, cfg.getInt("features.culling.shard-size", 1024));
     metrics = cfg.getBoolean("features.culling.metrics", true);
     useDirectBuffers = cfg.getBoolean("features.culling.use-direct-buffers", true);
+    vectorKernelEnabled = cfg.getBoolean("features.culling.vector-kernel", true);
+    fusedKernel = cfg.getBoolean("features.culling.fused-kernel", true);
+    shadowEveryCycles = Math.max(0, cfg.getInt("features.native.health.shadow-every-cycles", 100));
     frustumApprox = cfg.getBoolean("features.culling.frustum-approx", false);
+    hysteresis = cfg.getBoolean("features.culling.hysteresis.enabled", false);
+    distanceBand = hysteresis ? Math.max(0.0, cfg.getDouble("features.culling.hysteresis.distance-band", 4.0)) : 0.0;
+    cosBand = hysteresis ? Math.max(0.0, cfg.getDouble("features.culling.hysteresis.cos-band", 0.10)) : 0.0;
+    angleBandDegrees = hysteresis ? Math.max(0.0, cfg.getDouble("features.culling.hysteresis.angle-band-degrees", 5.0)) : 0.0;
+    minVisibleCycles = hysteresis ? Math.max(0, cfg.getInt("features.culling.hysteresis.min-visible-cycles", 3)) : 0;
+    minHiddenCycles = hysteresis ? Math.max(0, cfg.getInt("features.culling.hysteresis.min-hidden-cycles", 0)) : 0;
+    frustum = cfg.getBoolean("features.culling.frustum.enabled", false);
+    setFrustumAngles(cfg.getDouble("features.culling.frustum.fov-degrees", 70.0),
+        cfg.getDouble("features.culling.frustum.aspect", 16.0 / 9.0),
+        cfg.getDouble("features.culling.frustum.margin-degrees", 10.0));
     ratioPercent = cfg.getBoolean("features.culling.ratio-percent", true);
     alarmEnabled = cfg.getBoolean("features.culling.alarm-enabled", false);
     alarmThreshold = cfg.getDouble("features.culling.alarm-threshold", 0.50);
     alarmCooldownSec = cfg.getInt("features.culling.alarm-cooldown-seconds", 30);
     windowSeconds = cfg.getInt("features.culling.window-seconds", 60);
     chunkRadius = cfg.getInt("features.culling.chunk-radius", 0);
+    incremental = cfg.getBoolean("features.culling.incremental.enabled", true);
+    positionQuantum = Math.max(0.05, cfg.getDouble("features.culling.incremental.position-quantum", 0.5));
+    angleQuantumDegrees = Math.max(1.0, cfg.getDouble("features.culling.incremental.angle-quantum-degrees", 10.0));
+    evictAfterCycles = Math.max(1, cfg.getInt("features.culling.incremental.evict-after-cycles", 10));
+    if (cfg.getBoolean("features.culling.occlusion.enabled", false)) {
+        if (occlusion == null) occlusion = new OcclusionCuller();
+        occlusion.loadFromConfig(cfg);
+    } else {
+        occlusion = null;
+    }
 
-    var wl = cfg.getStringList("features.culling.whitelist");
-    var bl = cfg.getStringList("features.culling.blacklist");
-    var winc = cfg.getStringList("features.culling.worlds-include");
-    var wexc = cfg.getStringList("features.culling.worlds-exclude");
-    whitelist = new java.util.HashSet<>();
-    for (var s : wl) whitelist.add(s.toUpperCase(Locale.ROOT));
-    blacklist = new java.util.HashSet<>();
-    for (var s : bl) blacklist.add(s.toUpperCase(Locale.ROOT));
-    worldsInclude = new java.util.HashSet<>(winc);
-    worldsExclude = new java.util.HashSet<>(wexc);
 
     trackingRangePerWorld.clear();
     var tr = cfg.getConfigurationSection("tweaks.tracking-range-per-world");
@@ -125,24 +201,26 @@ public final class CullingService {
         }
     }
 
-    typeThresholds.clear();
-    var tt = cfg.getConfigurationSection("features.culling.type-thresholds");
-    if (tt != null) {
-        for (String type : tt.getKeys(false)) {
-            double md = tt.getDouble(type + ".max-distance", maxDistance);
-            double st = tt.getDouble(type + ".speed-threshold", speedThreshold);
-            double ct = tt.getDouble(type + ".cos-angle-threshold", cosAngleThreshold);
-            typeThresholds.put(type.toUpperCase(Locale.ROOT), new TypeThreshold(md, st, ct));
-        }
+    // Unset threshold fields stay NaN: the policy fills them from the world profile or the globals
+    var protectedTypes = new java.util.ArrayList<>(DEFAULT_PROTECTED_TYPES);
+    protectedTypes.addAll(cfg.getStringList("features.culling.protected-types"));
+    applyPolicy(CullingPolicy.compile(maxDistance, speedThreshold, cosAngleThreshold,
+        readThresholds(cfg.getConfigurationSection("features.culling.type-thresholds")),
+        readThresholds(cfg.getConfigurationSection("features.culling.world-overrides")),
+        cfg.getStringList("features.culling.whitelist"), cfg.getStringList("features.culling.blacklist"), protectedTypes,
+        cfg.getStringList("features.culling.worlds-include"), cfg.getStringList("features.culling.worlds-exclude"), logger));
     }
 
-    protectedTypes = new java.util.HashSet<>(DEFAULT_PROTECTED_TYPES);
-    var pt = cfg.getStringList("features.culling.protected-types");
-    for (var s : pt) {
-        if (s != null && !s.isEmpty()) {
-            protectedTypes.add(s.toUpperCase(Locale.ROOT));
+    private static java.util.Map<String, double[]> readThresholds(org.bukkit.configuration.ConfigurationSection section) {
+        var out = new java.util.HashMap<String, double[]>();
+        if (section == null) return out;
+        for (String key : section.getKeys(false)) {
+            out.put(key, new double[]{
+                section.getDouble(key + ".max-distance", Double.NaN),
+                section.getDouble(key + ".speed-threshold", Double.NaN),
+                section.getDouble(key + ".cos-angle-threshold", Double.NaN)});
         }
-    }
+        return out;
     }
 
     public void start() {
@@ -151,18 +229,30 @@ public final class CullingService {
             logger.info("Culling disabled");
             return;
         }
+        if (!vectorKernelEnabled) {
+            vectorKernel = null;
+        } else if (vectorKernel == null) {
+            vectorKernel = CullKernel.loadVector(logger);
+        }
         if (!nativeBridge.isLoaded()) {
-            logger.info("Culling enabled; native bridge not loaded — using Java fallback");
+            logger.info("Culling enabled; native bridge not loaded — using Java fallback{}",
+                vectorKernel != null ? " (" + vectorKernel.describe() + ")" : "");
         }
         if (worker == null || worker.isShutdown()) {
-            worker = Executors.newSingleThreadExecutor(r -> {
-                Thread t = new Thread(r, "gatotkacas-culling-worker");
+            worker = new ForkJoinPool(workers, pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("gatotkacas-culling-worker-" + t.getPoolIndex());
                 t.setDaemon(true);
                 return t;
-            });
+            }, null, false);
         }
-        taskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this::tick, intervalTicks, intervalTicks);
-        logger.info("Culling scheduled every {} ticks", intervalTicks);
+        // Fresh state: every pair is re-emitted once, which also heals visibility left over from a reload
+        state = newState();
+        ticksSinceCycle = 0;
+        // Every tick: results are harvested and applied in budgeted slices; cycles are captured every interval
+        taskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this::tick, intervalTicks, 1L);
+        logger.info("Culling scheduled every {} ticks on {} worker(s){}{}", intervalTicks, workers,
+            incremental ? " (incremental)" : "", occlusion != null ? " with occlusion" : "");
     }
 
     public void stop() {
@@ -175,152 +265,353 @@ public final class CullingService {
             worker = null;
         }
         inFlight = null;
+        applyQueue.clear();
+        if (captured != null) captured.stage = CullingSnapshot.S_FREE;
+        if (computing != null) abandon(computing);
+        captured = null;
+        computing = null;
+    }
+
+    private CullingState newState() {
+        // Under occlusion a decision can go stale without anything moving (blocks placed/broken)
+        int reevaluate = occlusion != null ? occlusion.refreshCycles() : Integer.MAX_VALUE;
+        return new CullingState(incremental, positionQuantum, angleQuantumDegrees, evictAfterCycles, reevaluate,
+            minVisibleCycles, minHiddenCycles);
+    }
+
+    private void applyPolicy(CullingPolicy p) {
+        double[] md = p.maxDistance, ct = p.cosAngleThreshold;
+        int n = md.length;
+        typeMax = md; typeSpd = p.speedThreshold; typeCos = ct;
+        // Enter (hide) thresholds are stricter by the hysteresis bands; exit (show) uses the configured ones
+        double[] mde = new double[n], cte = new double[n];
+        for (int c = 0; c < n; c++) { mde[c] = md[c] + distanceBand; cte[c] = ct[c] - cosBand; }
+        typeMaxEnter = mde; typeCosEnter = cte;
+        double[] cta = new double[n], ctea = new double[n];
+        for (int c = 0; c < n; c++) { cta[c] = ct[c] - 0.15; ctea[c] = cte[c] - 0.15; }
+        typeCosApprox = cta; typeCosEnterApprox = ctea;
+        policy = p;
+    }
+
+    private void setFrustumAngles(double fovDegrees, double aspect, double marginDegrees) {
+        double[] half = ViewFrustum.halfAngles(fovDegrees, aspect, marginDegrees);
+        frustumHalfV = half[0];
+        frustumHalfH = half[1];
+        double[] enter = ViewFrustum.halfAngles(fovDegrees, aspect, marginDegrees + angleBandDegrees);
+        frustumEnterHalfV = enter[0];
+        frustumEnterHalfH = enter[1];
+    }
+
+    // Direct buffers only pay off for the global-threshold cone kernel
+    boolean usesDirectBuffers() {
+        return useDirectBuffers && typeMax.length == 1 && !frustum && nativeBridge.isLoaded();
     }
 
     private void tick() {
-        // 1) Apply last completed computation, if any
-        int culledThisTick = 0;
-        int processedThisTick = 0;
+        // Runs every server tick. Three overlapping stages: capture (main thread, every interval),
+        // compute (culling pool, one cycle at a time since it owns the state) and apply (main thread,
+        // a budgeted slice per tick, strictly in cycle order)
         int nowSec = (int) (System.currentTimeMillis() / 1000L);
-    if (inFlight != null && inFlight.isDone()) {
+
+        // 1) Harvest the finished compute into the apply queue
+        if (inFlight != null && inFlight.isDone()) {
+            var snap = computing;
+            computing = null;
             try {
-                var res = inFlight.get();
-                // Apply results (main thread)
-                for (var r : res.results) {
-                    if (processedThisTick >= maxEntitiesPerTick) break; // safety cap on application as well
-                    processedThisTick++;
-                    var ent = Bukkit.getServer().getEntity(r.entityId);
-                    if (ent == null) continue;
-                    World w = ent.getWorld();
-                    List<Player> players = w.getPlayers();
-                    Player nearest = r.nearestPlayerId != null ? Bukkit.getPlayer(r.nearestPlayerId) : null;
-                    if (r.cull) {
-                        for (Player p : players) {
-                            if (nearest != null && p.equals(nearest)) continue;
-                            p.hideEntity(plugin, ent);
-                        }
-                        culledThisTick++;
-                    } else {
-                        for (Player p : players) {
-                            p.showEntity(plugin, ent);
-                        }
-                    }
+                var result = inFlight.get();
+                if (result != null && result.computed) {
+                    cycleProcessed = result.validCount;
+                    cycleCulled = result.culledCount;
+                    cycleOccluded = result.occludedCount;
+                    result.harvestedAt = System.nanoTime();
+                    result.stage = CullingSnapshot.S_APPLYING;
+                    applyQueue.add(result);
+                    snap = null;
                 }
             } catch (Exception ignored) {
                 // On any error, drop this result
             } finally {
                 inFlight = null; // clear slot
+                if (snap != null) snap.stage = CullingSnapshot.S_FREE;
             }
         } else if (inFlight != null && computeTimeoutMs > 0) {
             long elapsedMs = (System.nanoTime() - inFlightSubmitNano) / 1_000_000L;
             if (elapsedMs > computeTimeoutMs) {
                 try { inFlight.cancel(true); } catch (Throwable ignored) {}
                 inFlight = null;
+                // The worker may still be touching that arena and the state; never reuse them. Queued
+                // results were diffed against the old state, which the fresh one re-emits anyway.
+                abandon(computing);
+                computing = null;
+                applyQueue.clear();
+                if (state != null) state = newState();
+                if (occlusion != null) occlusion.invalidate();
                 if (nativeBridge.isLoaded()) {
                     logger.warn("Culling worker timeout ({} ms > {} ms); disabling native path and falling back to Java", elapsedMs, computeTimeoutMs);
-                    try { nativeBridge.disable(); } catch (Throwable ignored) {}
+                    try { nativeBridge.disable("worker timeout " + elapsedMs + " ms"); } catch (Throwable ignored) {}
                 } else {
                     logger.warn("Culling worker timeout ({} ms > {} ms)", elapsedMs, computeTimeoutMs);
                 }
             }
         }
 
-        // 2) If no computation running, build snapshot and dispatch one
-        if (inFlight == null && worker != null) {
-            var snapshot = buildSnapshot(maxEntitiesPerTick);
-            if (snapshot != null && !snapshot.entities.isEmpty() && !snapshot.players.isEmpty()) {
-                inFlightSubmitNano = System.nanoTime();
-                inFlight = worker.submit(() -> compute(snapshot));
-            }
+        // 2) Apply queued (viewer, entity) transitions within this tick's budget, nearest shows first;
+        //    refs come straight from the held arenas, no UUID lookups
+        if (!applyQueue.isEmpty()) {
+            long t0 = System.nanoTime();
+            cycleTransitions += applyQueue.drain(plugin, applyBudgetNanos, Math.max(1, maxEntitiesPerTick));
+            lastApplyNanos = System.nanoTime() - t0;
+            latencyLive[5].record(lastApplyNanos);
+            cyclePeakApplyNanos = Math.max(cyclePeakApplyNanos, lastApplyNanos);
+        } else {
+            lastApplyNanos = 0L;
         }
 
-        // 3) Metrics update and alarms
-        if (metrics) {
-            lastCulledCount = culledThisTick;
-            lastProcessedCount = processedThisTick;
-            lastCullRatio = processedThisTick > 0 ? (double) culledThisTick / (double) processedThisTick : 0.0;
-
-            if (windowSeconds > 0) {
-                window.addLast(new int[]{culledThisTick, processedThisTick, nowSec});
-                windowCulled += culledThisTick;
-                windowProcessed += processedThisTick;
-                while (!window.isEmpty() && nowSec - window.peekFirst()[2] >= windowSeconds) {
-                    int[] old = window.removeFirst();
-                    windowCulled -= old[0];
-                    windowProcessed -= old[1];
+        // 3) Every interval, capture the next cycle into a free arena (a capture still waiting is refreshed)
+        if (++ticksSinceCycle >= intervalTicks) {
+            ticksSinceCycle = 0;
+            recordMetrics(nowSec);
+            // A native path on probation is re-tested here, off the compute stage
+            try { nativeBridge.probeIfDue(); } catch (Throwable ignored) {}
+            if (worker != null) capture();
+        }
+
+        // 4) Dispatch the captured cycle as soon as the compute stage is free
+        if (inFlight == null && captured != null && worker != null) dispatch();
+    }
+
+    private void capture() {
+        var snap = captured != null ? captured : freeArena();
+        if (snap == null) {
+            // Apply is behind by a whole pipeline: skip this interval rather than grow the backlog
+            skippedCaptures++;
+            return;
+        }
+        long t0 = System.nanoTime();
+        buildSnapshot(snap, maxEntitiesPerTick);
+        snap.capturedAt = t0;
+        if (idIndexEnabled) publishIdIndex(snap);
+        snap.captureNanos = System.nanoTime() - t0;
+        if (snap.count > 0 && snap.viewerCount > 0) {
+            snap.stage = CullingSnapshot.S_CAPTURED;
+            captured = snap;
+        } else {
+            snap.stage = CullingSnapshot.S_FREE;
+            captured = null;
+        }
+    }
+
+    // Fills a new index and publishes it (a reused one could be read mid-refill with an id next to a
+    // stale position); viewers are indexed too (players are usually blacklisted as entities). Entities
+    // past max-entities-per-tick are simply unknown.
+    private void publishIdIndex(CullingSnapshot snap) {
+        var next = new EntityIdIndex(snap.count + snap.viewerCount);
+        for (int v = 0; v < snap.viewerCount; v++) next.put(snap.viewerIds[v], snap.vx[v], snap.vy[v], snap.vz[v]);
+        for (int i = 0; i < snap.count; i++) next.put(snap.entityIds[i], snap.ex[i], snap.ey[i], snap.ez[i]);
+        idIndex = next;
+    }
+
+    /** Starts or stops publishing the entity position index with every capture. */
+    void setEntityIndexEnabled(boolean enabled) {
+        idIndexEnabled = enabled;
+        if (!enabled) idIndex = null;
+    }
+
+    /** Index from the last capture (positions up to one interval old), or null when off or not captured yet. */
+    EntityIdIndex entityIndex() {
+        return idIndex;
+    }
+
+    // Main thread, no compute in flight: attach the current state and occlusion terrain, then submit
+    private void dispatch() {
+        var snap = captured;
+        captured = null;
+        snap.state = state;
+        snap.hysteresis = hysteresis && state != null;
+        snap.shadow = nativeBridge.isLoaded() && shadowEveryCycles > 0 && ++nativeCycles % shadowEveryCycles == 0;
+        snap.occlusion = occlusion;
+        if (occlusion != null) {
+            // Chunk caches are only written here, while the culling pool cannot be reading them
+            occlusion.beginCycle();
+            for (int w = 0; w < snap.worldCount; w++) {
+                try {
+                    snap.worldChunks[w] = occlusion.capture(snap.worlds[w], snap, snap.worldViewerStart[w], snap.worldViewerEnd[w]);
+                } catch (Throwable t) {
+                    snap.worldChunks[w] = null; // world unloaded since capture: no terrain, no occlusion
                 }
             }
+        }
+        snap.stage = CullingSnapshot.S_COMPUTING;
+        snap.dispatchedAt = System.nanoTime();
+        computing = snap;
+        inFlightSubmitNano = snap.dispatchedAt;
+        inFlight = worker.submit(() -> compute(snap));
+    }
 
-            if (alarmEnabled && lastCullRatio >= alarmThreshold) {
-                int lastAlarmSec = -1;
-                for (int[] item : window) {
-                    if (item[1] == -1) lastAlarmSec = item[2];
-                }
-                if (lastAlarmSec == -1 || nowSec - lastAlarmSec >= alarmCooldownSec) {
-                    logger.warn("Culling ratio high: {}/{} ({})", lastCulledCount, lastProcessedCount,
-                        ratioPercent ? String.format("%.1f%%", lastCullRatio * 100.0) : String.format("%.3f", lastCullRatio));
-                    window.addLast(new int[]{0, -1, nowSec});
-                }
+    // ApplyQueue callback: a cycle is fully applied; record its stage latencies and free its arena
+    private void retire(CullingSnapshot snap) {
+        long now = System.nanoTime();
+        smooth(0, snap.captureNanos);
+        smooth(1, snap.dispatchedAt - (snap.capturedAt + snap.captureNanos));
+        smooth(2, snap.computeNanos);
+        smooth(3, now - snap.harvestedAt);
+        smooth(4, now - snap.capturedAt);
+        latencyLive[0].record(snap.captureNanos);
+        latencyLive[1].record(snap.dispatchedAt - (snap.capturedAt + snap.captureNanos));
+        latencyLive[snap.nativeCompute ? 2 : 3].record(snap.computeNanos);
+        latencyLive[4].record(now - snap.harvestedAt);
+        latencyLive[6].record(now - snap.capturedAt);
+        int transitions = 0;
+        for (int s = 0; s < snap.shardCount; s++) transitions += snap.shards[s].transCount;
+        sizeLive[0].record(snap.count);
+        sizeLive[1].record(snap.validCount);
+        sizeLive[2].record(transitions);
+        snap.stage = CullingSnapshot.S_FREE;
+    }
+
+    private void smooth(int stage, long nanos) {
+        double prev = stageNanos[stage];
+        stageNanos[stage] = prev == 0.0 ? nanos : prev + (nanos - prev) * 0.2;
+    }
+
+    private static LatencyHistogram[] histograms(int n) {
+        var out = new LatencyHistogram[n];
+        for (int i = 0; i < n; i++) out[i] = new LatencyHistogram();
+        return out;
+    }
+
+    // Closes the histogram window every window-seconds (60 when the rolling window is off)
+    private void rotateHistograms(int nowSec) {
+        if (histogramWindowStart < 0) histogramWindowStart = nowSec;
+        if (nowSec - histogramWindowStart < (windowSeconds > 0 ? windowSeconds : 60)) return;
+        histogramWindowStart = nowSec;
+        for (int i = 0; i < latencyLive.length; i++) { latencyLast[i].copyFrom(latencyLive[i]); latencyLive[i].reset(); }
+        for (int i = 0; i < sizeLive.length; i++) { sizeLast[i].copyFrom(sizeLive[i]); sizeLive[i].reset(); }
+    }
+
+    private CullingSnapshot freeArena() {
+        for (var a : arenas) {
+            if (a.stage == CullingSnapshot.S_FREE) return a;
+        }
+        return null;
+    }
+
+    // Replaces an arena a timed-out (or cancelled) worker may still be using
+    private void abandon(CullingSnapshot snap) {
+        if (snap == null) return;
+        for (int i = 0; i < arenas.length; i++) {
+            if (arenas[i] == snap) arenas[i] = new CullingSnapshot();
+        }
+    }
+
+    // Metrics update and alarms, once per interval with what was harvested and applied during it
+    private void recordMetrics(int nowSec) {
+        int culledThisTick = cycleCulled, processedThisTick = cycleProcessed;
+        int occludedThisTick = cycleOccluded, transitionsThisTick = cycleTransitions;
+        lastPeakApplyNanos = cyclePeakApplyNanos;
+        cycleCulled = 0; cycleProcessed = 0; cycleOccluded = 0; cycleTransitions = 0; cyclePeakApplyNanos = 0L;
+        rotateHistograms(nowSec);
+        if (!metrics) return;
+        lastOccludedCount = occludedThisTick;
+        lastCulledCount = culledThisTick;
+        lastProcessedCount = processedThisTick;
+        lastTransitions = transitionsThisTick;
+        lastCullRatio = processedThisTick > 0 ? (double) culledThisTick / (double) processedThisTick : 0.0;
+
+        if (windowSeconds > 0) {
+            window.addLast(new int[]{culledThisTick, processedThisTick, nowSec, transitionsThisTick});
+            windowCulled += culledThisTick;
+            windowProcessed += processedThisTick;
+            windowTransitions += transitionsThisTick;
+            while (!window.isEmpty() && nowSec - window.peekFirst()[2] >= windowSeconds) {
+                int[] old = window.removeFirst();
+                if (old[1] == -1) continue; // alarm marker
+                windowCulled -= old[0];
+                windowProcessed -= old[1];
+                windowTransitions -= old[3];
+            }
+        }
+
+        if (alarmEnabled && lastCullRatio >= alarmThreshold) {
+            int lastAlarmSec = -1;
+            for (int[] item : window) {
+                if (item[1] == -1) lastAlarmSec = item[2];
+            }
+            if (lastAlarmSec == -1 || nowSec - lastAlarmSec >= alarmCooldownSec) {
+                logger.warn("Culling ratio high: {}/{} ({})", lastCulledCount, lastProcessedCount,
+                    ratioPercent ? String.format("%.1f%%", lastCullRatio * 100.0) : String.format("%.3f", lastCullRatio));
+                window.addLast(new int[]{0, -1, nowSec, 0});
             }
         }
     }
 
-    private Snapshot buildSnapshot(int cap) {
-        // Build a lightweight snapshot on main thread using spatial queries around players
-        var playersByWorld = new java.util.HashMap<String, java.util.List<PlayerSnap>>();
-        var entities = new java.util.ArrayList<EntitySnap>(cap);
-        var seen = new java.util.HashSet<UUID>(cap * 2);
+    private void buildSnapshot(CullingSnapshot snap, int cap) {
+        // Fill a pooled SoA arena on main thread: one entity pass per world into a chunk grid,
+        // then per-player radius queries against the grid (no per-player Bukkit spatial queries).
+        // State and occlusion terrain are attached at dispatch.
+        snap.reset(usesDirectBuffers());
+        var pol = policy;
 
         for (World world : Bukkit.getWorlds()) {
+            if (snap.count >= cap) break;
             String wname = world.getName();
-            if (!worldsInclude.isEmpty() && !worldsInclude.contains(wname)) continue;
-            if (worldsExclude.contains(wname)) continue;
+            int profile = pol.profile(wname);
+            if (profile < 0) continue;
             List<Player> players = world.getPlayers();
             if (players.isEmpty()) continue;
 
-            // Snapshot players (pos + view dir)
-            var psnaps = new java.util.ArrayList<PlayerSnap>(players.size());
+            // Snapshot players (pos + view dir from yaw/pitch) and mark the grid cells their radius covers
+            int trRange = trackingRangePerWorld.getOrDefault(wname, 0);
+            double r = Math.max(8.0, Math.min(pol.maxDistance(profile) + 4.0, trRange > 0 ? (trRange + 4.0) : Double.MAX_VALUE));
+            grid.clear();
+            int widx = snap.beginWorld(r);
+            snap.worlds[widx] = world;
+            int firstViewer = snap.viewerCount;
             for (Player p : players) {
-                var loc = p.getLocation();
-                var dir = loc.getDirection();
-                psnaps.add(new PlayerSnap(p.getUniqueId(), wname, loc.getX(), loc.getY(), loc.getZ(), dir.getX(), dir.getY(), dir.getZ()));
+                var loc = p.getLocation(scratchLoc);
+                snap.addViewer(widx, p, p.getEntityId(), loc.getX(), loc.getY(), loc.getZ(), loc.getYaw(), loc.getPitch());
+                grid.cover(loc.getX(), loc.getZ(), r);
             }
-            playersByWorld.put(wname, psnaps);
 
-            // Spatial gather: per-player nearby entities within maxDistance (expand a bit for safety)
-            int trRange = trackingRangePerWorld.getOrDefault(wname, 0);
-            double r = Math.max(8.0, Math.min(maxDistance + 4.0, trRange > 0 ? (trRange + 4.0) : Double.MAX_VALUE));
-            for (Player p : players) {
-                for (Entity e : p.getNearbyEntities(r, r, r)) {
-                    if (entities.size() >= cap) break;
-                    if (!e.isValid()) continue;
-                    if (!e.getWorld().getName().equals(wname)) continue;
-                    UUID id = e.getUniqueId();
-                    if (seen.contains(id)) continue; // de-dup across players
-                    if (isNpc(e)) continue; // skip Citizens NPCs entirely
-                    var typeName = e.getType().name();
-                    if (shouldSkipEntity(e, typeName)) continue;
-                    if (!whitelist.isEmpty() && !whitelist.contains(typeName)) continue;
-                    if (blacklist.contains(typeName)) continue;
-                    // Optional chunk radius filter relative to this player
-                    if (chunkRadius > 0) {
-                        var ch = e.getLocation().getChunk();
-                        var pch = p.getLocation().getChunk();
-                        int dx = Math.abs(pch.getX() - ch.getX());
-                        int dz = Math.abs(pch.getZ() - ch.getZ());
-                        if (dx > chunkRadius || dz > chunkRadius) continue;
-                    }
+            // Single entity pass: bucket filtered entities that fall into covered cells
+            for (Entity e : world.getEntities()) {
+                var loc = e.getLocation(scratchLoc);
+                if (!grid.isCovered(loc.getBlockX() >> 4, loc.getBlockZ() >> 4)) continue;
+                if (!e.isValid()) continue;
+                if (pol.isExcluded(e.getType())) continue; // protected, blacklisted or not whitelisted
+                if (isNpc(e)) continue; // skip Citizens NPCs entirely
+                if (e.getVehicle() != null || !e.getPassengers().isEmpty()) continue;
+                grid.add(e, loc.getX(), loc.getY(), loc.getZ());
+            }
+            if (grid.size() == 0) continue;
 
-                    var loc = e.getLocation();
-                    double speed = e.getVelocity().length();
-                    entities.add(new EntitySnap(id, wname, typeName, loc.getX(), loc.getY(), loc.getZ(), speed));
-                    seen.add(id);
+            // Per-player box query (same extent as getNearbyEntities(r, r, r)), de-duplicated via grid marks
+            int cellR = (int) Math.ceil(r / 16.0);
+            for (int v = firstViewer; v < snap.viewerCount && snap.count < cap; v++) {
+                Player p = snap.viewers[v];
+                double px = snap.vx[v], py = snap.vy[v], pz = snap.vz[v];
+                int pcx = (int) Math.floor(px) >> 4;
+                int pcz = (int) Math.floor(pz) >> 4;
+                for (int cx = pcx - cellR; cx <= pcx + cellR && snap.count < cap; cx++) {
+                    for (int cz = pcz - cellR; cz <= pcz + cellR && snap.count < cap; cz++) {
+                        // Optional chunk radius filter relative to this player
+                        if (chunkRadius > 0 && (Math.abs(cx - pcx) > chunkRadius || Math.abs(cz - pcz) > chunkRadius)) continue;
+                        for (int i = grid.head(cx, cz); i >= 0; i = grid.next(i)) {
+                            if (grid.isEmitted(i)) continue;
+                            double ex = grid.x(i), ey = grid.y(i), ez = grid.z(i);
+                            if (Math.abs(ex - px) > r || Math.abs(ey - py) > r || Math.abs(ez - pz) > r) continue;
+                            Entity e = grid.entity(i);
+                            if (e == p) continue;
+                            grid.markEmitted(i);
+                            snap.addEntity(widx, e, e.getEntityId(), ex, ey, ez, e.getWidth(), e.getHeight(), e.getVelocity().length(),
+                                pol.code(profile, e.getType()));
+                            if (snap.count >= cap) break;
+                        }
+                    }
                 }
-                if (entities.size() >= cap) break;
             }
         }
-        if (entities.isEmpty() || playersByWorld.isEmpty()) return new Snapshot(java.util.Map.of(), java.util.List.of());
-        return new Snapshot(playersByWorld, entities);
+        grid.clear();
     }
 
     private boolean isNpc(Entity e) {
@@ -335,149 +626,362 @@ public final class CullingService {
         return false;
     }
 
-    private ComputationResult compute(Snapshot snap) {
-        var results = new java.util.ArrayList<Result>(snap.entities.size());
-
-        // Precompute nearest player and scalar features per entity
-        int n = snap.entities.size();
-        double[] distances = new double[n];
-        double[] speeds = new double[n];
-        double[] cosAngles = new double[n];
-        java.util.UUID[] nearestIds = new java.util.UUID[n];
-        boolean[] valid = new boolean[n];
-
-        for (int i = 0; i < n; i++) {
-            var e = snap.entities.get(i);
-            var ps = snap.players.get(e.worldName);
-            if (ps == null || ps.isEmpty()) { valid[i] = false; continue; }
-            PlayerSnap nearest = null; double nearestSq = Double.MAX_VALUE;
-            for (var p : ps) {
-                double dx = e.x - p.x; double dy = e.y - p.y; double dz = e.z - p.z;
-                double d2 = dx*dx + dy*dy + dz*dz;
-                if (d2 < nearestSq) { nearestSq = d2; nearest = p; }
+    // Package-private so the JMH harness (src/jmh/java) can drive it without a running server
+    CullingSnapshot compute(CullingSnapshot snap) {
+        long t0 = System.nanoTime();
+        boolean nativeAtStart = nativeBridge.isLoaded();
+        // Serial prelude: viewer columns and entity slots (hash inserts) for this cycle
+        int n = snap.count;
+        var st = snap.state;
+        if (st != null) {
+            st.beginCycle(snap);
+            double[] sp = typeSpd; // the per-type / per-world thresholds the decisions use
+            for (int i = 0; i < n; i++) st.claim(snap, i, sp);
+        }
+        if (frustum) {
+            ViewFrustum.buildPlanes(snap, snap.vplanes, frustumHalfV, frustumHalfH);
+            if (snap.hysteresis) ViewFrustum.buildPlanes(snap, snap.vplanesEnter, frustumEnterHalfV, frustumEnterHalfH);
+        }
+
+        // Cut shards: contiguous entity ranges that never cross a world. The arena is filled by walking
+        // the chunk grid, so each range is a compact region; aim for ~2 shards per worker for stealing.
+        int target = Math.max(shardSize, (n + workers * 2 - 1) / (workers * 2));
+        int rowWords = st != null ? st.rowWords() : 1;
+        snap.shardCount = 0;
+        for (int from = 0; from < n; ) {
+            int w = snap.worldIdx[from];
+            int to = Math.min(n, from + target);
+            for (int i = from + 1; i < to; i++) {
+                if (snap.worldIdx[i] != w) { to = i; break; }
             }
-            if (nearest == null) { valid[i] = false; continue; }
-            double distance = Math.sqrt(nearestSq);
-            double dirX = e.x - nearest.x; double dirY = e.y - nearest.y; double dirZ = e.z - nearest.z;
-            double invLen = 1.0 / Math.max(1e-9, Math.sqrt(dirX*dirX + dirY*dirY + dirZ*dirZ));
-            dirX *= invLen; dirY *= invLen; dirZ *= invLen;
-            double viewLen = Math.max(1e-9, Math.sqrt(nearest.dirX*nearest.dirX + nearest.dirY*nearest.dirY + nearest.dirZ*nearest.dirZ));
-            double vx = nearest.dirX / viewLen, vy = nearest.dirY / viewLen, vz = nearest.dirZ / viewLen;
-            double cos = vx*dirX + vy*dirY + vz*dirZ;
-            distances[i] = distance; speeds[i] = e.speed; cosAngles[i] = cos; nearestIds[i] = nearest.playerId; valid[i] = true;
-        }
-
-        boolean[] culls;
-    if (nativeBridge.isLoaded()) {
-            try {
-                // Direct path (only when no per-type thresholds)
-                if (useDirectBuffers && typeThresholds.isEmpty()) {
-                    ensureDirectBuffers(n);
-                    var dd = dbufDistances.asDoubleBuffer();
-                    dd.put(distances, 0, n);
-                    var ds = dbufSpeeds.asDoubleBuffer();
-                    ds.put(speeds, 0, n);
-                    var dc = dbufCos.asDoubleBuffer();
-                    dc.put(cosAngles, 0, n);
-                    NativeCulling.shouldCullBatchIntoDirect(dbufDistances, dbufSpeeds, dbufCos, dbufOut, n, maxDistance, speedThreshold, cosAngleThreshold);
-                    culls = new boolean[n];
-                    for (int i = 0; i < n; i++) culls[i] = dbufOut.get(i) != 0;
-                } else if (!typeThresholds.isEmpty()) {
-                    // Ensure heap buffers are large enough
-                    if (bufDistances == null || bufDistances.length < n) {
-                        int cap = Math.max(1024, Integer.highestOneBit(n - 1) << 1);
-                        bufDistances = new double[cap];
-                        bufSpeeds = new double[cap];
-                        bufCos = new double[cap];
-                        bufOut = new boolean[cap];
-                        bufTypeCodes = new int[cap];
-                    }
-                    System.arraycopy(distances, 0, bufDistances, 0, n);
-                    System.arraycopy(speeds, 0, bufSpeeds, 0, n);
-                    System.arraycopy(cosAngles, 0, bufCos, 0, n);
-                    // Map type names to compact codes
-                    var keys = new java.util.ArrayList<>(typeThresholds.keySet());
-                    java.util.Collections.sort(keys);
-                    var codeByType = new java.util.HashMap<String, Integer>(keys.size());
-                    for (int i = 0; i < keys.size(); i++) codeByType.put(keys.get(i), i);
-                    for (int i = 0; i < n; i++) {
-                        if (!valid[i]) { bufTypeCodes[i] = 0; continue; }
-                        String tname = snap.entities.get(i).typeName.toUpperCase();
-                        Integer code = codeByType.get(tname);
-                        bufTypeCodes[i] = code == null ? 0 : code;
-                    }
-                    double[] tMax = new double[keys.size() > 0 ? keys.size() : 1];
-                    double[] tSpd = new double[tMax.length];
-                    double[] tCos = new double[tMax.length];
-                    for (int i = 0; i < keys.size(); i++) {
-                        var th = typeThresholds.get(keys.get(i));
-                        tMax[i] = th.maxDistance; tSpd[i] = th.speedThreshold; tCos[i] = th.cosAngleThreshold;
+            snap.nextShard().reset(this, snap, from, to, rowWords);
+            from = to;
+        }
+
+        // Parallel: pair build, kernel and matrix commit per shard
+        int shards = snap.shardCount;
+        if (shards == 1) {
+            snap.shards[0].invoke();
+        } else if (shards > 1) {
+            for (int s = 1; s < shards; s++) snap.shards[s].fork();
+            snap.shards[0].invoke();
+            for (int s = 1; s < shards; s++) snap.shards[s].join();
+        }
+
+        // Merge shard results
+        int valid = 0, culled = 0, reevaluated = 0, occluded = 0, shadowPairs = 0, shadowMismatches = 0;
+        Throwable nativeError = null;
+        for (int s = 0; s < shards; s++) {
+            var shard = snap.shards[s];
+            valid += shard.validCount;
+            culled += shard.culledCount;
+            reevaluated += shard.reevaluatedCount;
+            occluded += shard.occludedCount;
+            shadowPairs += shard.shadowPairs;
+            shadowMismatches += shard.shadowMismatches;
+            if (shard.nativeError != null) nativeError = shard.nativeError;
+        }
+        if (nativeError != null && nativeBridge.isLoaded()) {
+            logger.warn("Native culling failed; disabling native path and falling back to Java: {}", nativeError.toString());
+            try { nativeBridge.disable("kernel error: " + nativeError); } catch (Throwable ignored) {}
+        } else if (snap.shadow && shadowPairs > 0) {
+            // Wrong answers are worse than slow ones: a disagreeing kernel is failed, not put on probation
+            try { nativeBridge.recordShadow(shadowPairs, shadowMismatches); } catch (Throwable ignored) {}
+        }
+        if (st != null) st.finishCycle(snap);
+        snap.validCount = valid;
+        snap.culledCount = culled;
+        snap.reevaluatedCount = reevaluated;
+        snap.occludedCount = occluded;
+        snap.computed = true;
+        snap.computeNanos = System.nanoTime() - t0;
+        snap.nativeCompute = nativeAtStart && nativeError == null;
+        return snap;
+    }
+
+    // One shard of compute(): runs on the culling pool, touching only its own entity range and pairs
+    void computeShard(CullingSnapshot snap, CullingShard shard) {
+        // One (viewer, entity) pair per viewer within the world's query radius, features written straight
+        // into the kernel's buffers. In incremental mode entities that did not move (and that no moving
+        // viewer is near) keep their row and get no pairs. With the native library on heap columns the
+        // fused kernel does pair generation and decision in one call.
+        var st = snap.state;
+        boolean box = frustum;
+        boolean shadow = snap.shadow && shard.nativeError == null && nativeBridge.isLoaded();
+        boolean fused = fusedKernel && !shard.direct && shard.nativeError == null && nativeBridge.isLoaded()
+            && computeFused(snap, shard);
+        if (!fused) {
+            var vk = nativeBridge.isLoaded() ? null : vectorKernel;
+            int reevaluated = 0;
+            for (int i = shard.from; i < shard.to; i++) {
+                snap.pairStart[i] = shard.pairCount;
+                if (st != null && !st.needsEval(snap, i)) {
+                    snap.dirty[i] = false;
+                    snap.pairEnd[i] = shard.pairCount;
+                    continue;
+                }
+                snap.dirty[i] = true;
+                reevaluated++;
+                int w = snap.worldIdx[i];
+                double r = snap.worldRadius[w];
+                double ex = snap.ex[i], ey = snap.ey[i], ez = snap.ez[i];
+                int vs = snap.worldViewerStart[w], ve = snap.worldViewerEnd[w];
+                if (vk != null) {
+                    // Features of every viewer in the world at once; the loop below only filters and appends
+                    shard.ensureFeatures(ve - vs);
+                    vk.features(ex, ey, ez, r, snap.vx, snap.vy, snap.vz, snap.vdx, snap.vdy, snap.vdz, vs, ve, shard.featDist, shard.featCos);
+                }
+                for (int v = vs; v < ve; v++) {
+                    double dx = ex - snap.vx[v], dy = ey - snap.vy[v], dz = ez - snap.vz[v];
+                    double distance, cos;
+                    if (vk != null) {
+                        distance = shard.featDist[v - vs];
+                        if (distance < 0) continue;
+                        cos = shard.featCos[v - vs];
+                    } else {
+                        if (Math.abs(dx) > r || Math.abs(dy) > r || Math.abs(dz) > r) continue;
+                        distance = Math.sqrt(dx*dx + dy*dy + dz*dz);
+                        double inv = 1.0 / Math.max(1e-9, distance);
+                        cos = (snap.vdx[v] * dx + snap.vdy[v] * dy + snap.vdz[v] * dz) * inv;
                     }
-                    if (tMax.length == 1 && keys.isEmpty()) { // default bucket if none
-                        tMax[0] = maxDistance; tSpd[0] = speedThreshold; tCos[0] = cosAngleThreshold;
+                    if (snap.viewerIds[v] == snap.entityIds[i]) continue;
+                    shard.addPair(i, v, distance, cos);
+                    if (box) {
+                        // Box centre relative to the eye; entity positions are feet-anchored
+                        double hh = snap.heights[i] * 0.5;
+                        shard.setPairBox(dx, dy + hh - OcclusionCuller.EYE_HEIGHT, dz, snap.widths[i] * 0.5, hh);
                     }
-                    NativeCulling.shouldCullBatchIntoByType(bufDistances, bufSpeeds, bufCos, bufTypeCodes, tMax, tSpd, tCos, bufOut);
-                    culls = java.util.Arrays.copyOf(bufOut, n);
-                } else {
-                    // Ensure heap buffers are large enough
-                    if (bufDistances == null || bufDistances.length < n) {
-                        int cap = Math.max(1024, Integer.highestOneBit(n - 1) << 1);
-                        bufDistances = new double[cap];
-                        bufSpeeds = new double[cap];
-                        bufCos = new double[cap];
-                        bufOut = new boolean[cap];
-                        bufTypeCodes = new int[cap];
+                }
+                snap.pairEnd[i] = shard.pairCount;
+            }
+            shard.reevaluatedCount = reevaluated;
+
+            // Batch kernel over the shard's flattened pair columns: the enter (hide) decision, plus the
+            // exit (show) decision under hysteresis
+            runKernel(shard, box, snap.hysteresis ? snap.vplanesEnter : snap.vplanes,
+                typeMaxEnter, typeCosEnter, typeCosEnterApprox, shard.out);
+            if (snap.hysteresis) runKernel(shard, box, snap.vplanes, typeMax, typeCos, typeCosApprox, shard.outExit);
+        }
+        int pairs = shard.pairCount;
+        if (shadow && shard.nativeError == null) {
+            shard.shadowPairs = pairs;
+            shard.shadowMismatches = shadowCompare(snap, shard, snap.hysteresis ? snap.vplanesEnter : snap.vplanes,
+                typeMaxEnter, typeCosEnter, shard.out);
+            if (snap.hysteresis) shard.shadowMismatches += shadowCompare(snap, shard, snap.vplanes, typeMax, typeCos, shard.outExit);
+        }
+
+        // Occlusion: pairs the heuristic keeps visible are hidden when terrain blocks the line of sight
+        var occ = snap.occlusion;
+        if (occ != null) {
+            double minDist = occ.minDistance();
+            int occluded = 0;
+            for (int i = shard.from; i < shard.to; i++) {
+                var chunks = snap.worldChunks[snap.worldIdx[i]];
+                if (chunks == null) continue;
+                for (int k = snap.pairStart[i]; k < snap.pairEnd[i]; k++) {
+                    if (shard.out[k] || shard.distance(k) < minDist) continue;
+                    int v = shard.pairViewer[k];
+                    if (occ.occluded(chunks, snap.vx[v], snap.vy[v] + OcclusionCuller.EYE_HEIGHT, snap.vz[v],
+                            snap.ex[i], snap.ey[i], snap.ez[i], snap.heights[i])) {
+                        shard.out[k] = true;
+                        shard.outExit[k] = true;
+                        occluded++;
                     }
-                    System.arraycopy(distances, 0, bufDistances, 0, n);
-                    System.arraycopy(speeds, 0, bufSpeeds, 0, n);
-                    System.arraycopy(cosAngles, 0, bufCos, 0, n);
-                    NativeCulling.shouldCullBatchInto(bufDistances, bufSpeeds, bufCos, bufOut, maxDistance, speedThreshold, cosAngleThreshold);
-                    culls = java.util.Arrays.copyOf(bufOut, n);
                 }
-            } catch (Throwable t) {
-                logger.warn("Native culling failed; disabling native path and falling back to Java: {}", t.toString());
-                try { nativeBridge.disable(); } catch (Throwable ignored) {}
-                culls = null;
             }
+            shard.occludedCount = occluded;
+        }
+
+        if (st != null) {
+            st.commitShard(snap, shard);
         } else {
-            culls = new boolean[n];
-            for (int i = 0; i < n; i++) {
-                if (!valid[i]) { culls[i] = false; continue; }
-                var th = typeThresholds.getOrDefault(snap.entities.get(i).typeName.toUpperCase(), new TypeThreshold(maxDistance, speedThreshold, cosAngleThreshold));
-                boolean base = distances[i] > th.maxDistance && speeds[i] < th.speedThreshold && cosAngles[i] < th.cosAngleThreshold;
-                culls[i] = frustumApprox ? (base && cosAngles[i] < (th.cosAngleThreshold - 0.15)) : base;
+            // No state to diff against: every pair decision is a transition
+            int culled = 0;
+            for (int i = shard.from; i < shard.to; i++) {
+                for (int k = snap.pairStart[i]; k < snap.pairEnd[i]; k++) {
+                    shard.pushTransition(i, shard.pairViewer[k], shard.out[k] ? CullingSnapshot.T_HIDE : CullingSnapshot.T_SHOW);
+                    if (shard.out[k]) culled++;
+                }
+            }
+            shard.validCount = pairs;
+            shard.culledCount = culled;
+        }
+    }
+
+    // Fused native path: pair generation and both decisions in one JNI call over the snapshot columns.
+    // False when nothing usable was written (library without the kernel, or a native error, which
+    // compute() reports); the caller then builds pairs in Java.
+    private boolean computeFused(CullingSnapshot snap, CullingShard shard) {
+        var st = snap.state;
+        int reevaluated = 0;
+        for (int i = shard.from; i < shard.to; i++) {
+            boolean eval = st == null || st.needsEval(snap, i);
+            snap.dirty[i] = eval;
+            if (eval) reevaluated++;
+        }
+        int mode = (frustum ? NativeCulling.FUSED_BOX : 0) | (snap.hysteresis ? NativeCulling.FUSED_HYSTERESIS : 0)
+            | (frustumApprox ? NativeCulling.FUSED_APPROX : 0);
+        try {
+            int n;
+            // A negative result is the pair count the columns must hold; grow once and retry
+            while ((n = NativeCulling.cullPairsFused(shard.from, shard.to, snap.dirty,
+                    snap.ex, snap.ey, snap.ez, snap.widths, snap.heights, snap.speeds, snap.typeCodes, snap.worldIdx, snap.entityIds,
+                    snap.vx, snap.vy, snap.vz, snap.vdx, snap.vdy, snap.vdz, snap.viewerIds, snap.viewerCount,
+                    snap.worldViewerStart, snap.worldViewerEnd, snap.worldRadius, snap.worldCount,
+                    snap.vplanes, snap.vplanesEnter, typeMaxEnter, typeMax, typeSpd, typeCosEnter, typeCos,
+                    mode, OcclusionCuller.EYE_HEIGHT, snap.pairStart, snap.pairEnd,
+                    shard.pairViewer, shard.distances, shard.cosAngles, shard.out, shard.outExit)) < 0) {
+                shard.ensurePairs(-n);
             }
+            shard.pairCount = n;
+        } catch (UnsatisfiedLinkError e) {
+            fusedKernel = false;
+            logger.info("Native library has no fused culling kernel; building pairs in Java");
+            return false;
+        } catch (Throwable t) {
+            shard.nativeError = t;
+            return false;
         }
+        shard.reevaluatedCount = reevaluated;
+        return true;
+    }
 
-        if (culls != null) {
-            for (int i = 0; i < n; i++) {
-                if (!valid[i]) continue;
-                results.add(new Result(snap.entities.get(i).id, culls[i], nearestIds[i]));
+    // Shadow compare: re-decides the shard's pairs in scalar Java straight from the snapshot columns (so
+    // native pair generation is checked too) and counts disagreements with the native flags. Pairs within
+    // rounding of a distance or cos threshold may legitimately differ and are skipped.
+    private int shadowCompare(CullingSnapshot snap, CullingShard shard, double[] planes, double[] md, double[] ct, boolean[] flags) {
+        final double eps = 1e-9;
+        double[] sp = typeSpd;
+        int mismatches = 0;
+        for (int i = shard.from; i < shard.to; i++) {
+            int code = snap.typeCodes[i];
+            if (code < 0 || code >= md.length) code = 0;
+            double hw = snap.widths[i] * 0.5, hh = snap.heights[i] * 0.5;
+            for (int k = snap.pairStart[i]; k < snap.pairEnd[i]; k++) {
+                int v = shard.pairViewer[k];
+                double dx = snap.ex[i] - snap.vx[v], dy = snap.ey[i] - snap.vy[v], dz = snap.ez[i] - snap.vz[v];
+                double distance = Math.sqrt(dx*dx + dy*dy + dz*dz);
+                double cos = (snap.vdx[v] * dx + snap.vdy[v] * dy + snap.vdz[v] * dz) / Math.max(1e-9, distance);
+                double coneCt = frustumApprox ? ct[code] - 0.15 : ct[code];
+                if (Math.abs(distance - md[code]) < eps || (!frustum && Math.abs(cos - coneCt) < eps)) continue;
+                boolean cull = distance > md[code] && snap.speeds[i] < sp[code];
+                if (frustum) {
+                    cull = cull && ViewFrustum.outside(planes, v * ViewFrustum.STRIDE, dx, dy + hh - OcclusionCuller.EYE_HEIGHT, dz, hw, hh);
+                } else {
+                    cull = cull && cos < coneCt;
+                }
+                if (cull != flags[k]) mismatches++;
             }
         }
-        return new ComputationResult(results);
+        return mismatches;
     }
 
-    private static final class TypeThreshold {
-        final double maxDistance;
-        final double speedThreshold;
-        final double cosAngleThreshold;
-        TypeThreshold(double maxDistance, double speedThreshold, double cosAngleThreshold) {
-            this.maxDistance = maxDistance;
-            this.speedThreshold = speedThreshold;
-            this.cosAngleThreshold = cosAngleThreshold;
+    // Cull kernel over the shard's pairs into dst: native (FFM, else JNI) when loaded and not failed, Java otherwise.
+    // The native cone kernels know nothing of frustum-approx: they get ctApprox (ct - 0.15) instead, which
+    // is the same decision since cos < ct - 0.15 implies cos < ct
+    private void runKernel(CullingShard shard, boolean box, double[] planes, double[] md, double[] ct, double[] ctApprox, boolean[] dst) {
+        int pairs = shard.pairCount;
+        double[] sp = typeSpd;
+        // Box mode needs the frustum kernel, which older libraries lack: those decide boxes in Java
+        if (pairs > 0 && shard.nativeError == null && nativeBridge.isLoaded() && (!box || nativeBridge.hasFrustumKernel())) {
+            double[] nct = frustumApprox ? ctApprox : ct;
+            try {
+                if (nativeBridge.isFfmLoaded()) {
+                    // Same kernels over the C ABI: columns are passed in place, flags come back as bytes
+                    if (box) {
+                        NativeCullingFfm.shouldCullBatchFrustum(shard.distances, shard.pairSpeeds, shard.boxRel, shard.boxExtent, shard.pairViewer,
+                            planes, shard.pairTypes, md, sp, pairs, shard.flags);
+                        shard.pullFlags(dst);
+                    } else if (shard.direct) {
+                        NativeCullingFfm.shouldCullBatchDirect(shard.dDistances, shard.dSpeeds, shard.dCos, shard.dOut, pairs, md[0], sp[0], nct[0]);
+                        shard.pullDirectFlags(dst);
+                    } else {
+                        NativeCullingFfm.shouldCullBatchByType(shard.distances, shard.pairSpeeds, shard.cosAngles, shard.pairTypes, md, sp, nct, pairs, shard.flags);
+                        shard.pullFlags(dst);
+                    }
+                } else if (box) {
+                    NativeCulling.shouldCullBatchFrustum(shard.distances, shard.pairSpeeds, shard.boxRel, shard.boxExtent, shard.pairViewer,
+                        planes, shard.pairTypes, md, sp, pairs, dst);
+                } else if (shard.direct) {
+                    NativeCulling.shouldCullBatchIntoDirect(shard.dDistances, shard.dSpeeds, shard.dCos, shard.dOut, pairs, md[0], sp[0], nct[0]);
+                    shard.pullDirectFlags(dst);
+                } else if (md.length > 1) {
+                    // Heap kernels run over the shard's full (equal-length) pair columns; the tail is ignored
+                    NativeCulling.shouldCullBatchIntoByType(shard.distances, shard.pairSpeeds, shard.cosAngles, shard.pairTypes, md, sp, nct, dst);
+                } else {
+                    NativeCulling.shouldCullBatchInto(shard.distances, shard.pairSpeeds, shard.cosAngles, dst, md[0], sp[0], nct[0]);
+                }
+                return;
+            } catch (Throwable t) {
+                // Reported (and the native path disabled) once by compute() after all shards joined
+                shard.nativeError = t;
+            }
         }
+        if (box) {
+            double[] rel = shard.boxRel, ext = shard.boxExtent;
+            for (int k = 0; k < pairs; k++) {
+                int code = shard.pairTypes[k];
+                if (code >= md.length) code = 0;
+                dst[k] = shard.distances[k] > md[code] && shard.pairSpeeds[k] < sp[code]
+                    && ViewFrustum.outside(planes, shard.pairViewer[k] * ViewFrustum.STRIDE,
+                        rel[3 * k], rel[3 * k + 1], rel[3 * k + 2], ext[2 * k], ext[2 * k + 1]);
+            }
+        } else if (vectorKernel != null && !shard.direct) {
+            vectorKernel.cone(shard.distances, shard.pairSpeeds, shard.cosAngles, shard.pairTypes, md, sp, ct, frustumApprox, pairs, dst);
+        } else {
+            for (int k = 0; k < pairs; k++) {
+                int code = shard.pairTypes[k];
+                if (code >= md.length) code = 0;
+                double cos = shard.cos(k);
+                boolean base = shard.distance(k) > md[code] && shard.pairSpeed(k) < sp[code] && cos < ct[code];
+                dst[k] = frustumApprox ? (base && cos < (ct[code] - 0.15)) : base;
+            }
+        }
+    }
+
+    // Benchmark hook: set global thresholds without a plugin config
+    void setThresholds(double maxDistance, double speedThreshold, double cosAngleThreshold, boolean useDirectBuffers) {
+        this.maxDistance = maxDistance;
+        this.speedThreshold = speedThreshold;
+        this.cosAngleThreshold = cosAngleThreshold;
+        this.useDirectBuffers = useDirectBuffers;
+        if (workers < 1) { workers = 1; shardSize = 1024; }
+        applyPolicy(CullingPolicy.global(maxDistance, speedThreshold, cosAngleThreshold));
+    }
+
+    // Benchmark hook: frustum test instead of the cone (call before filling the snapshot)
+    void setFrustum(boolean enabled, double fovDegrees, double aspect, double marginDegrees) {
+        this.frustum = enabled;
+        setFrustumAngles(fovDegrees, aspect, marginDegrees);
+    }
+
+    // Benchmark hook: frustum-approx (cone tightened by 0.15) on or off
+    void setFrustumApprox(boolean enabled) {
+        this.frustumApprox = enabled;
     }
 
-    // Snapshot + result types (no Bukkit refs off-thread)
-    private record PlayerSnap(UUID playerId, String worldName, double x, double y, double z,
-                              double dirX, double dirY, double dirZ) {}
-    private record EntitySnap(UUID id, String worldName, String typeName, double x, double y, double z,
-                              double speed) {}
-    private record Snapshot(java.util.Map<String, java.util.List<PlayerSnap>> players,
-                            java.util.List<EntitySnap> entities) {}
-    private record Result(UUID entityId, boolean cull, UUID nearestPlayerId) {}
-    private record ComputationResult(java.util.List<Result> results) {}
+    // Benchmark hook: Vector API kernel for the Java path; returns false when it cannot be loaded
+    boolean setVectorKernel(boolean enabled) {
+        this.vectorKernelEnabled = enabled;
+        this.vectorKernel = enabled ? CullKernel.loadVector(null) : null;
+        return vectorKernel != null || !enabled;
+    }
+
+    // Benchmark hook: fused native shard kernel on or off (heap columns only)
+    void setFusedKernel(boolean enabled) {
+        this.fusedKernel = enabled;
+    }
+
+    // Benchmark hook: shadow-compare every Nth native cycle (0 = off)
+    void setShadowEveryCycles(int cycles) {
+        this.shadowEveryCycles = Math.max(0, cycles);
+    }
+
+    // Benchmark hook: shard sizing (compute() forks onto the pool it is invoked from)
+    void setSharding(int workers, int shardSize) {
+        this.workers = Math.max(1, workers);
+        this.shardSize = Math.max(64, shardSize);
+    }
 
     // Quick scalar check used by packet culling
     public boolean quickShouldCull(double distance, double speed, double cos) {
@@ -488,17 +992,15 @@ public final class CullingService {
         return base;
     }
 
-    public boolean isProtectedEntity(Entity entity) {
-        if (entity == null) return false;
-        return shouldSkipEntity(entity, entity.getType().name());
+    /** Protected by type alone (protected-types); for callers that only know the type, e.g. from a packet. */
+    public boolean isProtectedType(EntityType type) {
+        return type != null && policy.isProtected(type);
     }
 
-    private boolean shouldSkipEntity(Entity e, String typeName) {
-        String type = typeName != null ? typeName.toUpperCase(Locale.ROOT) : "";
-        if (protectedTypes.contains(type)) return true;
-        if (e.getVehicle() != null) return true;
-        if (!e.getPassengers().isEmpty()) return true;
-        return false;
+    public boolean isProtectedEntity(Entity entity) {
+        if (entity == null) return false;
+        if (policy.isProtected(entity.getType())) return true;
+        return entity.getVehicle() != null || !entity.getPassengers().isEmpty();
     }
 
     public int getLastCulledCount() {
@@ -509,6 +1011,56 @@ public final class CullingService {
         return lastProcessedCount;
     }
 
+    /** Pairs hidden by the occlusion stage in the last applied cycle (-1 when occlusion is off). */
+    public int getLastOccludedCount() {
+        return occlusion != null ? lastOccludedCount : -1;
+    }
+
+    /** Occlusion terrain cache: chunk snapshots held and captured last cycle ({0, 0} when off). */
+    public int[] getOcclusionChunkStats() {
+        var occ = occlusion;
+        return occ != null ? new int[]{occ.cachedChunks(), occ.capturedLastCycle()} : new int[]{0, 0};
+    }
+
+    /** Apply phase: {queued transitions, last tick's apply micros, peak per-tick micros last interval}. */
+    public long[] getApplyStats() {
+        return new long[]{applyQueue.remaining(), lastApplyNanos / 1_000L, lastPeakApplyNanos / 1_000L};
+    }
+
+    /**
+     * Pipeline stage latencies in micros, smoothed over recent cycles: capture (main thread), wait for
+     * the compute stage, compute, apply (harvest to fully applied) and capture-to-applied; plus the
+     * number of intervals skipped because every arena was busy.
+     */
+    public long[] getStageLatencyMicros() {
+        long[] out = new long[6];
+        for (int i = 0; i < 5; i++) out[i] = (long) (stageNanos[i] / 1_000.0);
+        out[5] = skippedCaptures;
+        return out;
+    }
+
+    /**
+     * Per-stage latency distributions in ns (capture, wait, compute-native, compute-java, apply,
+     * apply-tick, total), keyed in pipeline order: the last full window, or the current one before the
+     * first window closes. Main thread only; the histograms are live and must not be modified.
+     */
+    public java.util.Map<String, LatencyHistogram> getLatencyHistograms() {
+        return reported(LATENCY_STAGES, latencyLive, latencyLast);
+    }
+
+    /** Per-cycle sizes: entities captured, pairs decided and transitions applied. Same windowing. */
+    public java.util.Map<String, LatencyHistogram> getSizeHistograms() {
+        return reported(SIZE_STAGES, sizeLive, sizeLast);
+    }
+
+    private static java.util.Map<String, LatencyHistogram> reported(String[] names, LatencyHistogram[] live, LatencyHistogram[] last) {
+        boolean closed = false;
+        for (var h : last) closed |= h.count() > 0;
+        var out = new java.util.LinkedHashMap<String, LatencyHistogram>();
+        for (int i = 0; i < names.length; i++) out.put(names[i], closed ? last[i] : live[i]);
+        return out;
+    }
+
     public double getLastCullRatio() {
         return lastCullRatio;
     }
@@ -516,24 +1068,18 @@ public final class CullingService {
     public int getWindowCulled() { return windowCulled; }
     public int getWindowProcessed() { return windowProcessed; }
     public double getWindowRatio() { return windowProcessed > 0 ? (double) windowCulled / (double) windowProcessed : 0.0; }
-    public boolean isRatioPercent() { return ratioPercent; }
-
-    private void ensureDirectBuffers(int n) {
-        int needDoublesBytes = n * Double.BYTES;
-        int needOutBytes = n; // 1 byte per flag
-        if (dbufDistances == null || dbufDistances.capacity() < needDoublesBytes) {
-            int cap = Math.max(8192, Integer.highestOneBit(needDoublesBytes - 1) << 1);
-            dbufDistances = java.nio.ByteBuffer.allocateDirect(cap).order(java.nio.ByteOrder.nativeOrder());
-            dbufSpeeds = java.nio.ByteBuffer.allocateDirect(cap).order(java.nio.ByteOrder.nativeOrder());
-            dbufCos = java.nio.ByteBuffer.allocateDirect(cap).order(java.nio.ByteOrder.nativeOrder());
-        } else {
-            dbufDistances.clear(); dbufSpeeds.clear(); dbufCos.clear();
-        }
-        if (dbufOut == null || dbufOut.capacity() < needOutBytes) {
-            int cap = Math.max(8192, Integer.highestOneBit(needOutBytes - 1) << 1);
-            dbufOut = java.nio.ByteBuffer.allocateDirect(cap).order(java.nio.ByteOrder.nativeOrder());
-        } else {
-            dbufOut.clear();
+    /**
+     * Hide/show calls per second: over the rolling window when enabled, else from the last cycle.
+     * Boundary flicker shows up here; hysteresis is meant to keep it low.
+     */
+    public double getChurnPerSecond() {
+        double cycleSec = Math.max(1, intervalTicks) / 20.0;
+        if (windowSeconds > 0 && !window.isEmpty()) {
+            double span = window.peekLast()[2] - window.peekFirst()[2] + cycleSec;
+            return windowTransitions / span;
         }
+        return lastTransitions / cycleSec;
     }
+
+    public boolean isRatioPercent() { return ratioPercent; }
 }
@@ -0,0 +1,183 @@
+package id.rnggagib.performance;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * One contiguous entity range of a {@link CullingSnapshot}, always within a single world. Since the
+ * arena is filled by walking the chunk grid, a range covers a compact region. Owns its flattened
+ * (viewer, entity) pair columns, kernel output and transitions, so shards run fully in parallel on
+ * the culling pool. Pooled with the snapshot and reused via {@link #reinitialize()}.
+ *
+ * All pair columns share one capacity so the heap JNI kernels (which require equal array lengths)
+ * can consume them directly; entries past {@link #pairCount} are stale and ignored by callers.
+ */
+final class CullingShard extends RecursiveAction {
+    private static final int MIN_CAPACITY = 1024;
+
+    CullingService owner;
+    CullingSnapshot snap;
+    int from, to; // entity range [from, to)
+
+    // Pairs: kernel features and outputs
+    int pairCount;
+    int pairCapacity;
+    int[] pairViewer;
+    int[] pairTypes;
+    double[] pairSpeeds;
+    double[] distances;
+    double[] cosAngles;
+    double[] boxRel;    // frustum mode: box centre relative to the eye, 3 per pair
+    double[] boxExtent; // frustum mode: half width, half height, 2 per pair
+    boolean[] out;      // decision under the enter (hide) thresholds
+    boolean[] outExit;  // hysteresis: decision under the looser exit (show) thresholds
+    byte[] flags;       // FFM kernels write 0/1 bytes here; widened into out/outExit
+    Throwable nativeError;
+    // Vector kernel: per-viewer distance/cos of the entity being paired (negative distance = out of range)
+    double[] featDist = new double[0], featCos = new double[0];
+
+    // Per-shard results, merged by the service
+    int validCount;
+    int culledCount;
+    int reevaluatedCount;
+    int occludedCount;
+    int shadowPairs, shadowMismatches; // shadow cycles: native decisions re-checked in Java
+    int transCount;
+    int[] transIdx = new int[256];
+    int[] transViewer = new int[256];
+    byte[] transKind = new byte[256];
+
+    // Matrix row scratch for commit
+    long[] rowMask = new long[1], rowBits = new long[1], rowEmit = new long[1];
+
+    // Direct buffer mode: pair speeds/distances/cos/out live in native-order direct buffers instead
+    boolean direct;
+    ByteBuffer dDistances, dSpeeds, dCos, dOut;
+    private DoubleBuffer ddDistances, ddSpeeds, ddCos;
+
+    CullingShard() {
+        allocatePairs(MIN_CAPACITY);
+    }
+
+    void reset(CullingService owner, CullingSnapshot snap, int from, int to, int rowWords) {
+        reinitialize();
+        this.owner = owner;
+        this.snap = snap;
+        this.from = from;
+        this.to = to;
+        this.pairCount = 0;
+        this.transCount = 0;
+        this.validCount = 0;
+        this.culledCount = 0;
+        this.reevaluatedCount = 0;
+        this.occludedCount = 0;
+        this.shadowPairs = 0;
+        this.shadowMismatches = 0;
+        this.nativeError = null;
+        this.direct = snap.direct;
+        if (direct && dDistances == null) allocateDirect(pairCapacity);
+        if (rowMask.length < rowWords) {
+            rowMask = new long[rowWords]; rowBits = new long[rowWords]; rowEmit = new long[rowWords];
+        }
+    }
+
+    @Override
+    protected void compute() {
+        owner.computeShard(snap, this);
+    }
+
+    /** Appends one (viewer, entity i) pair with its kernel features; pairs of an entity must be contiguous. */
+    void addPair(int i, int viewer, double distance, double cos) {
+        if (pairCount == pairCapacity) allocatePairs(pairCapacity << 1);
+        int k = pairCount++;
+        pairViewer[k] = viewer;
+        pairTypes[k] = snap.typeCodes[i];
+        if (direct) { ddDistances.put(k, distance); ddSpeeds.put(k, snap.speeds[i]); ddCos.put(k, cos); }
+        else { distances[k] = distance; pairSpeeds[k] = snap.speeds[i]; cosAngles[k] = cos; }
+    }
+
+    /** Frustum mode: bounding box of the pair just added, centred relative to the viewer's eye. */
+    void setPairBox(double x, double y, double z, double halfWidth, double halfHeight) {
+        int k = pairCount - 1;
+        boxRel[3 * k] = x; boxRel[3 * k + 1] = y; boxRel[3 * k + 2] = z;
+        boxExtent[2 * k] = halfWidth; boxExtent[2 * k + 1] = halfHeight;
+    }
+
+    /** Grows the pair columns to hold at least {@code n} pairs (kernels that write pairs themselves). */
+    void ensurePairs(int n) {
+        int cap = pairCapacity;
+        while (cap < n) cap <<= 1;
+        if (cap != pairCapacity) allocatePairs(cap);
+    }
+
+    void ensureFeatures(int n) {
+        if (featDist.length < n) { featDist = new double[n]; featCos = new double[n]; }
+    }
+
+    double distance(int k) { return direct ? ddDistances.get(k) : distances[k]; }
+    double pairSpeed(int k) { return direct ? ddSpeeds.get(k) : pairSpeeds[k]; }
+    double cos(int k) { return direct ? ddCos.get(k) : cosAngles[k]; }
+
+    void pushTransition(int i, int viewer, byte kind) {
+        if (transCount == transIdx.length) {
+            int cap = transCount << 1;
+            transIdx = java.util.Arrays.copyOf(transIdx, cap);
+            transViewer = java.util.Arrays.copyOf(transViewer, cap);
+            transKind = java.util.Arrays.copyOf(transKind, cap);
+        }
+        transIdx[transCount] = i;
+        transViewer[transCount] = viewer;
+        transKind[transCount] = kind;
+        transCount++;
+    }
+
+    /** Copies FFM kernel flags into {@code dst} so commit reads one layout. */
+    void pullFlags(boolean[] dst) {
+        for (int k = 0; k < pairCount; k++) dst[k] = flags[k] != 0;
+    }
+
+    /** Copies direct-buffer flags into {@code dst} so commit reads one layout. */
+    void pullDirectFlags(boolean[] dst) {
+        for (int k = 0; k < pairCount; k++) dst[k] = dOut.get(k) != 0;
+    }
+
+    private void allocatePairs(int cap) {
+        pairViewer = pairViewer == null ? new int[cap] : java.util.Arrays.copyOf(pairViewer, cap);
+        pairTypes = pairTypes == null ? new int[cap] : java.util.Arrays.copyOf(pairTypes, cap);
+        pairSpeeds = grow(pairSpeeds, cap);
+        distances = grow(distances, cap);
+        cosAngles = grow(cosAngles, cap);
+        boxRel = grow(boxRel, cap * 3);
+        boxExtent = grow(boxExtent, cap * 2);
+        out = out == null ? new boolean[cap] : java.util.Arrays.copyOf(out, cap);
+        outExit = outExit == null ? new boolean[cap] : java.util.Arrays.copyOf(outExit, cap);
+        flags = flags == null ? new byte[cap] : java.util.Arrays.copyOf(flags, cap);
+        if (dDistances != null) allocateDirect(cap);
+        pairCapacity = cap;
+    }
+
+    private void allocateDirect(int cap) {
+        ByteBuffer nd = ByteBuffer.allocateDirect(cap * Double.BYTES).order(ByteOrder.nativeOrder());
+        ByteBuffer ns = ByteBuffer.allocateDirect(cap * Double.BYTES).order(ByteOrder.nativeOrder());
+        ByteBuffer nc = ByteBuffer.allocateDirect(cap * Double.BYTES).order(ByteOrder.nativeOrder());
+        ByteBuffer no = ByteBuffer.allocateDirect(cap).order(ByteOrder.nativeOrder());
+        // Preserve pairs already written for this cycle
+        if (ddDistances != null && direct) {
+            for (int k = 0; k < pairCount; k++) {
+                nd.putDouble(k * Double.BYTES, ddDistances.get(k));
+                ns.putDouble(k * Double.BYTES, ddSpeeds.get(k));
+                nc.putDouble(k * Double.BYTES, ddCos.get(k));
+            }
+        }
+        dDistances = nd; dSpeeds = ns; dCos = nc; dOut = no;
+        ddDistances = nd.asDoubleBuffer();
+        ddSpeeds = ns.asDoubleBuffer();
+        ddCos = nc.asDoubleBuffer();
+    }
+
+    private static double[] grow(double[] a, int cap) {
+        return a == null ? new double[cap] : java.util.Arrays.copyOf(a, cap);
+    }
+}
@@ -0,0 +1,214 @@
+package id.rnggagib.performance;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+/**
+ * Pooled structure-of-arrays snapshot for one culling cycle. Filled on the main thread, computed
+ * off-thread, applied on the main thread, then reset and reused: steady-state cycles allocate nothing.
+ * The service keeps a few of them so capture, compute and apply of consecutive cycles overlap; each
+ * is in exactly one {@link #stage}. Entity/Player/World refs are only dereferenced on the main thread;
+ * the worker only reads primitives.
+ *
+ * Decisions are per (viewer, entity) pair: each evaluated entity owns a contiguous run of pairs, one
+ * per viewer in range, held by the {@link CullingShard} covering it. Entities of one world are
+ * contiguous, so shards are cut as ranges that never cross a world.
+ */
+final class CullingSnapshot {
+    private static final int MIN_CAPACITY = 1024;
+    private static final CullingShard[] NO_SHARDS = new CullingShard[0];
+
+    static final byte T_HIDE = 0; // hide the entity from one viewer
+    static final byte T_SHOW = 1; // show the entity to one viewer
+
+    // Pipeline stages
+    static final int S_FREE = 0;
+    static final int S_CAPTURED = 1;  // filled, waiting for the compute stage
+    static final int S_COMPUTING = 2;
+    static final int S_APPLYING = 3;  // result queued or being applied
+
+    int stage = S_FREE;
+    long capturedAt;   // nanoTime when capture started
+    long captureNanos; // main-thread capture cost
+    long dispatchedAt;
+    long computeNanos; // worker time in compute()
+    boolean nativeCompute; // compute ran the native kernels end to end (latency histograms)
+    long harvestedAt;
+
+    // Viewers (players), grouped contiguously per world
+    int viewerCount;
+    double[] vx = new double[64], vy = new double[64], vz = new double[64];
+    double[] vdx = new double[64], vdy = new double[64], vdz = new double[64];
+    double[] vyaw = new double[64], vpitch = new double[64];
+    double[] vplanes = new double[64 * ViewFrustum.STRIDE]; // frustum side planes, filled by compute when enabled
+    double[] vplanesEnter = new double[64 * ViewFrustum.STRIDE]; // hysteresis: planes widened by the angle band
+    int[] viewerIds = new int[64];
+    int[] viewerWorld = new int[64];
+    int[] viewerSlot = new int[64]; // matrix column, assigned by CullingState
+    Player[] viewers = new Player[64];
+
+    // Worlds: viewer index range [start, end), query radius, and changed-viewer range
+    int worldCount;
+    int[] worldViewerStart = new int[8];
+    int[] worldViewerEnd = new int[8];
+    double[] worldRadius = new double[8];
+    int[] worldChangedStart = new int[8];
+    int[] worldChangedEnd = new int[8];
+    ChunkSnapshotCache[] worldChunks = new ChunkSnapshotCache[8]; // occlusion terrain, null = none
+    World[] worlds = new World[8]; // main thread only (occlusion capture at dispatch)
+    int changedViewerCount;
+    int[] changedViewers = new int[64];
+
+    // Incremental state used by this snapshot (null = every pair is emitted)
+    CullingState state;
+    boolean direct; // shards keep kernel columns in direct buffers
+    OcclusionCuller occlusion; // null = occlusion stage off
+    boolean hysteresis; // shards carry separate enter/exit decisions (needs state)
+    boolean shadow; // re-check the native decisions of this cycle in Java (native health)
+
+    // Entities
+    int count;
+    int capacity;
+    double[] ex, ey, ez;
+    double[] widths, heights; // bounding box extents (feet-anchored)
+    double[] speeds;
+    int[] typeCodes;
+    int[] worldIdx;
+    int[] entityIds;
+    Entity[] entities;
+    int[] pairStart, pairEnd; // shard-local pair run [start, end); empty when not re-evaluated this cycle
+    boolean computed;
+    int validCount;   // (viewer, entity) pairs in range
+    int culledCount;  // of which hidden
+    int reevaluatedCount;
+    int occludedCount; // pairs hidden by the occlusion stage this cycle
+
+    // Incremental bookkeeping (per entity)
+    boolean[] dirty;
+    boolean[] isNew;
+    int[] stateSlot;
+    long[] stateKey;
+
+    // Shards for this cycle, in entity order; their transitions are applied in that order
+    int shardCount;
+    CullingShard[] shards = NO_SHARDS;
+
+    CullingSnapshot() {
+        allocate(MIN_CAPACITY);
+    }
+
+    void reset(boolean direct) {
+        java.util.Arrays.fill(entities, 0, count, null);
+        java.util.Arrays.fill(viewers, 0, viewerCount, null);
+        java.util.Arrays.fill(worldChunks, 0, worldCount, null);
+        java.util.Arrays.fill(worlds, 0, worldCount, null);
+        this.count = 0;
+        this.viewerCount = 0;
+        this.worldCount = 0;
+        this.changedViewerCount = 0;
+        this.shardCount = 0;
+        this.validCount = 0;
+        this.culledCount = 0;
+        this.reevaluatedCount = 0;
+        this.occludedCount = 0;
+        this.computed = false;
+        this.direct = direct;
+    }
+
+    /** Starts a world; viewers farther than {@code radius} (per axis) from an entity get no decision. */
+    int beginWorld(double radius) {
+        if (worldCount == worldViewerStart.length) {
+            int cap = worldCount << 1;
+            worldViewerStart = java.util.Arrays.copyOf(worldViewerStart, cap);
+            worldViewerEnd = java.util.Arrays.copyOf(worldViewerEnd, cap);
+            worldRadius = java.util.Arrays.copyOf(worldRadius, cap);
+            worldChangedStart = java.util.Arrays.copyOf(worldChangedStart, cap);
+            worldChangedEnd = java.util.Arrays.copyOf(worldChangedEnd, cap);
+            worldChunks = java.util.Arrays.copyOf(worldChunks, cap);
+            worlds = java.util.Arrays.copyOf(worlds, cap);
+        }
+        worldViewerStart[worldCount] = viewerCount;
+        worldViewerEnd[worldCount] = viewerCount;
+        worldRadius[worldCount] = radius;
+        return worldCount++;
+    }
+
+    /** Adds a viewer to the most recent world; the unit view direction is derived from yaw/pitch (degrees). */
+    void addViewer(int world, Player p, int id, double x, double y, double z, float yaw, float pitch) {
+        if (viewerCount == viewers.length) growViewers();
+        int v = viewerCount++;
+        double ry = Math.toRadians(yaw), rp = Math.toRadians(pitch);
+        double cosPitch = Math.cos(rp);
+        viewers[v] = p;
+        viewerIds[v] = id;
+        viewerWorld[v] = world;
+        viewerSlot[v] = -1;
+        vx[v] = x; vy[v] = y; vz[v] = z;
+        vyaw[v] = yaw; vpitch[v] = pitch;
+        vdx[v] = -Math.sin(ry) * cosPitch; vdy[v] = -Math.sin(rp); vdz[v] = Math.cos(ry) * cosPitch;
+        worldViewerEnd[world] = viewerCount;
+    }
+
+    void addEntity(int world, Entity e, int id, double x, double y, double z, double width, double height, double speed, int typeCode) {
+        if (count == capacity) allocate(capacity << 1);
+        int i = count++;
+        entities[i] = e;
+        entityIds[i] = id;
+        ex[i] = x; ey[i] = y; ez[i] = z;
+        widths[i] = width; heights[i] = height;
+        speeds[i] = speed;
+        typeCodes[i] = typeCode;
+        worldIdx[i] = world;
+    }
+
+    /** Takes the next pooled shard for this cycle. */
+    CullingShard nextShard() {
+        if (shardCount == shards.length) {
+            shards = java.util.Arrays.copyOf(shards, Math.max(4, shardCount << 1));
+        }
+        CullingShard s = shards[shardCount];
+        if (s == null) shards[shardCount] = s = new CullingShard();
+        shardCount++;
+        return s;
+    }
+
+    void pushChangedViewer(int v) {
+        if (changedViewerCount == changedViewers.length) changedViewers = java.util.Arrays.copyOf(changedViewers, changedViewerCount << 1);
+        changedViewers[changedViewerCount++] = v;
+    }
+
+    private void allocate(int cap) {
+        ex = grow(ex, cap); ey = grow(ey, cap); ez = grow(ez, cap);
+        widths = grow(widths, cap); heights = grow(heights, cap);
+        speeds = grow(speeds, cap);
+        typeCodes = typeCodes == null ? new int[cap] : java.util.Arrays.copyOf(typeCodes, cap);
+        worldIdx = worldIdx == null ? new int[cap] : java.util.Arrays.copyOf(worldIdx, cap);
+        entityIds = entityIds == null ? new int[cap] : java.util.Arrays.copyOf(entityIds, cap);
+        pairStart = pairStart == null ? new int[cap] : java.util.Arrays.copyOf(pairStart, cap);
+        pairEnd = pairEnd == null ? new int[cap] : java.util.Arrays.copyOf(pairEnd, cap);
+        stateSlot = stateSlot == null ? new int[cap] : java.util.Arrays.copyOf(stateSlot, cap);
+        stateKey = stateKey == null ? new long[cap] : java.util.Arrays.copyOf(stateKey, cap);
+        dirty = dirty == null ? new boolean[cap] : java.util.Arrays.copyOf(dirty, cap);
+        isNew = isNew == null ? new boolean[cap] : java.util.Arrays.copyOf(isNew, cap);
+        entities = entities == null ? new Entity[cap] : java.util.Arrays.copyOf(entities, cap);
+        capacity = cap;
+    }
+
+    private void growViewers() {
+        int cap = viewers.length << 1;
+        viewers = java.util.Arrays.copyOf(viewers, cap);
+        vx = java.util.Arrays.copyOf(vx, cap); vy = java.util.Arrays.copyOf(vy, cap); vz = java.util.Arrays.copyOf(vz, cap);
+        vdx = java.util.Arrays.copyOf(vdx, cap); vdy = java.util.Arrays.copyOf(vdy, cap); vdz = java.util.Arrays.copyOf(vdz, cap);
+        vyaw = java.util.Arrays.copyOf(vyaw, cap); vpitch = java.util.Arrays.copyOf(vpitch, cap);
+        vplanes = java.util.Arrays.copyOf(vplanes, cap * ViewFrustum.STRIDE);
+        vplanesEnter = java.util.Arrays.copyOf(vplanesEnter, cap * ViewFrustum.STRIDE);
+        viewerIds = java.util.Arrays.copyOf(viewerIds, cap);
+        viewerWorld = java.util.Arrays.copyOf(viewerWorld, cap);
+        viewerSlot = java.util.Arrays.copyOf(viewerSlot, cap);
+    }
+
+    private static double[] grow(double[] a, int cap) {
+        return a == null ? new double[cap] : java.util.Arrays.copyOf(a, cap);
+    }
+}
@@ -0,0 +1,255 @@
+package id.rnggagib.performance;
+
+/**
+ * Decisions carried across culling cycles. Keyed by Bukkit entity ids for both entities and viewers;
+ * the last decision per (viewer, entity) lives in a {@link VisibilityMatrix} indexed by their slots,
+ * so only decisions that actually changed are sent. In incremental mode entities whose quantised
+ * position did not change, and that no moving viewer is near, are not re-evaluated at all.
+ * Only the pipeline's current owner touches it: the culling pool during compute, the main thread
+ * between harvesting a result and dispatching the next one. Within compute, {@link #beginCycle},
+ * {@link #claim} and {@link #finishCycle} run on one thread; {@link #needsEval} and
+ * {@link #commitShard} run concurrently per shard and only touch their own entities' slots and rows.
+ *
+ * Hysteresis: a pair that was last sent as hidden keeps the shard's exit decision, any other pair
+ * the stricter enter decision, so boundary entities do not flicker. On top of that each entity has a
+ * minimum dwell: for a few cycles after one of its pairs flipped, further hides (or shows) are held
+ * back and the entity is re-evaluated next cycle instead.
+ */
+final class CullingState {
+    private final boolean incremental;
+    private final double positionQuantum;
+    private final double angleQuantum;
+    private final int evictAfterCycles;
+    private final int reevaluateAfterCycles; // upper bound on decision age (terrain may change under occlusion)
+    private final int minVisibleCycles; // after a flip, hides wait this long
+    private final int minHiddenCycles;  // after a flip, shows wait this long
+    private int cycle;
+
+    // Entities
+    private final IntSlotIndex entityIndex = new IntSlotIndex();
+    private long[] eKey = new long[128];
+    private int[] ePairs = new int[128];
+    private int[] eHidden = new int[128];
+    private int[] eLastSeen = new int[128];
+    private int[] eEvaluated = new int[128];
+    private int[] eFlipped = new int[128];
+    private boolean[] eHeld = new boolean[128]; // a flip was held back by dwell; re-evaluate next cycle
+
+    // Viewers
+    private final IntSlotIndex viewerIndex = new IntSlotIndex();
+    private long[] vKey = new long[64];
+    private int[] vLastSeen = new int[64];
+    private int[] vSnapIndex = new int[64];
+
+    // (entity slot, viewer slot) -> hidden
+    private final VisibilityMatrix matrix = new VisibilityMatrix();
+
+    CullingState(boolean incremental, double positionQuantum, double angleQuantumDegrees, int evictAfterCycles, int reevaluateAfterCycles,
+                 int minVisibleCycles, int minHiddenCycles) {
+        this.incremental = incremental;
+        this.positionQuantum = Math.max(0.01, positionQuantum);
+        this.angleQuantum = Math.max(0.1, angleQuantumDegrees);
+        this.evictAfterCycles = Math.max(1, evictAfterCycles);
+        this.reevaluateAfterCycles = Math.max(1, reevaluateAfterCycles);
+        this.minVisibleCycles = Math.max(0, minVisibleCycles);
+        this.minHiddenCycles = Math.max(0, minHiddenCycles);
+    }
+
+    int trackedEntities() { return entityIndex.size(); }
+
+    /** Words per matrix row; shards size their commit scratch with it. */
+    int rowWords() { return matrix.stride(); }
+
+    /** Registers this cycle's viewers (matrix columns) and records which ones moved or turned. */
+    void beginCycle(CullingSnapshot snap) {
+        cycle++;
+        snap.changedViewerCount = 0;
+        for (int w = 0; w < snap.worldCount; w++) {
+            int start = snap.changedViewerCount;
+            for (int v = snap.worldViewerStart[w]; v < snap.worldViewerEnd[w]; v++) {
+                int r = viewerIndex.getOrInsert(snap.viewerIds[v]);
+                boolean isNew = r < 0;
+                int slot = isNew ? -r - 1 : r;
+                ensureViewerCapacity(slot + 1);
+                long key = viewerKey(snap, v);
+                if (isNew) {
+                    // A reused column may hold another viewer's bits; nothing in it is trusted
+                    matrix.ensure(entityIndex.highWater(), viewerIndex.highWater());
+                    matrix.clearColumn(slot);
+                }
+                if (isNew || vKey[slot] != key) {
+                    vKey[slot] = key;
+                    snap.pushChangedViewer(v);
+                }
+                vLastSeen[slot] = cycle;
+                vSnapIndex[slot] = v;
+                snap.viewerSlot[v] = slot;
+            }
+            snap.worldChangedStart[w] = start;
+            snap.worldChangedEnd[w] = snap.changedViewerCount;
+        }
+        // Drop viewers that left (quit, changed world out of scope)
+        for (int slot = 0; slot < viewerIndex.highWater(); slot++) {
+            int id = viewerIndex.keyAt(slot);
+            if (id != Integer.MIN_VALUE && vLastSeen[slot] != cycle) viewerIndex.remove(id);
+        }
+        matrix.ensure(entityIndex.highWater(), viewerIndex.highWater());
+    }
+
+    /**
+     * Assigns entity i its slot (matrix row) and quantised key; new rows start unknown. The key's speed
+     * bit is taken against the entity's own type threshold from {@code typeSpeed}, as the decision is.
+     */
+    void claim(CullingSnapshot snap, int i, double[] typeSpeed) {
+        int r = entityIndex.getOrInsert(snap.entityIds[i]);
+        boolean isNew = r < 0;
+        int slot = isNew ? -r - 1 : r;
+        ensureEntityCapacity(slot + 1);
+        if (isNew) {
+            matrix.ensure(slot + 1, viewerIndex.highWater());
+            matrix.clearRow(slot);
+            eFlipped[slot] = Integer.MIN_VALUE / 2;
+            eHeld[slot] = false;
+        }
+        eLastSeen[slot] = cycle;
+        int code = snap.typeCodes[i];
+        if (code < 0 || code >= typeSpeed.length) code = 0;
+        long key = quantize(snap.ex[i], snap.ey[i], snap.ez[i]) ^ (snap.speeds[i] < typeSpeed[code] ? 0L : 1L << 63);
+        snap.stateSlot[i] = slot;
+        snap.stateKey[i] = key;
+        snap.isNew[i] = isNew;
+    }
+
+    /**
+     * Decides whether a claimed entity i must be re-evaluated: it is new, it moved (or crossed the
+     * speed threshold), a flip was held back by dwell, its decision is older than the re-evaluation
+     * bound, or a viewer that moved or turned is within the world's query radius of it.
+     */
+    boolean needsEval(CullingSnapshot snap, int i) {
+        int slot = snap.stateSlot[i];
+        if (!incremental || snap.isNew[i] || eHeld[slot] || eKey[slot] != snap.stateKey[i]) return true;
+        if (cycle - eEvaluated[slot] >= reevaluateAfterCycles) return true;
+
+        int w = snap.worldIdx[i];
+        double rad = snap.worldRadius[w];
+        double ex = snap.ex[i], ey = snap.ey[i], ez = snap.ez[i];
+        for (int c = snap.worldChangedStart[w]; c < snap.worldChangedEnd[w]; c++) {
+            int v = snap.changedViewers[c];
+            if (Math.abs(ex - snap.vx[v]) <= rad && Math.abs(ey - snap.vy[v]) <= rad && Math.abs(ez - snap.vz[v]) <= rad) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Folds a shard's pair decisions into the matrix and records only the (viewer, entity)
+     * transitions to apply: the XOR of the old and new row, plus anything not yet known.
+     * Also fills the shard's pair counters, carrying them over for entities not re-evaluated.
+     */
+    void commitShard(CullingSnapshot snap, CullingShard shard) {
+        int words = matrix.stride();
+        long[] mask = shard.rowMask, bits = shard.rowBits, emit = shard.rowEmit;
+        boolean[] enter = shard.out, exit = snap.hysteresis ? shard.outExit : shard.out;
+        int valid = 0, culled = 0;
+        for (int i = shard.from; i < shard.to; i++) {
+            int slot = snap.stateSlot[i];
+            if (!snap.dirty[i]) {
+                valid += ePairs[slot];
+                culled += eHidden[slot];
+                continue;
+            }
+            eEvaluated[slot] = cycle;
+            int ps = snap.pairStart[i], pe = snap.pairEnd[i];
+            if (ps == pe) {
+                // New entities without a viewer in range are dropped in finishCycle
+                if (!snap.isNew[i]) { ePairs[slot] = 0; eHidden[slot] = 0; eKey[slot] = snap.stateKey[i]; }
+                continue;
+            }
+            java.util.Arrays.fill(mask, 0, words, 0L);
+            java.util.Arrays.fill(bits, 0, words, 0L);
+            boolean dwell = cycle - eFlipped[slot] < Math.max(minVisibleCycles, minHiddenCycles);
+            boolean held = false, flipped = false;
+            int hidden = 0;
+            for (int k = ps; k < pe; k++) {
+                int col = snap.viewerSlot[shard.pairViewer[k]];
+                mask[col >>> 6] |= 1L << col;
+                boolean was = matrix.hidden(slot, col);
+                boolean hide = was ? exit[k] : enter[k];
+                if (hide != was && matrix.known(slot, col)) {
+                    if (dwell && cycle - eFlipped[slot] < (hide ? minVisibleCycles : minHiddenCycles)) {
+                        hide = was;
+                        held = true;
+                    } else {
+                        flipped = true;
+                    }
+                }
+                if (hide) { bits[col >>> 6] |= 1L << col; hidden++; }
+            }
+            matrix.merge(slot, mask, bits, emit);
+            for (int wd = 0; wd < words; wd++) {
+                long e = emit[wd];
+                while (e != 0) {
+                    int b = Long.numberOfTrailingZeros(e);
+                    e &= e - 1;
+                    int col = (wd << 6) | b;
+                    boolean hide = (bits[wd] & (1L << b)) != 0;
+                    shard.pushTransition(i, vSnapIndex[col], hide ? CullingSnapshot.T_HIDE : CullingSnapshot.T_SHOW);
+                }
+            }
+            if (flipped) eFlipped[slot] = cycle;
+            eHeld[slot] = held;
+            eKey[slot] = snap.stateKey[i];
+            ePairs[slot] = pe - ps;
+            eHidden[slot] = hidden;
+            valid += pe - ps;
+            culled += hidden;
+        }
+        shard.validCount = valid;
+        shard.culledCount = culled;
+    }
+
+    /** Drops new entities that got no viewer and evicts entities not seen for a while. */
+    void finishCycle(CullingSnapshot snap) {
+        for (int i = 0; i < snap.count; i++) {
+            if (snap.isNew[i] && snap.pairStart[i] == snap.pairEnd[i]) entityIndex.remove(snap.entityIds[i]);
+        }
+        // Evict entities not seen for a while; if they return they are treated as new (full re-emit)
+        int horizon = cycle - evictAfterCycles;
+        for (int slot = 0; slot < entityIndex.highWater(); slot++) {
+            int id = entityIndex.keyAt(slot);
+            if (id != Integer.MIN_VALUE && eLastSeen[slot] < horizon) entityIndex.remove(id);
+        }
+    }
+
+    private long quantize(double x, double y, double z) {
+        long qx = (long) Math.floor(x / positionQuantum) & 0x1FFFFFL;
+        long qy = (long) Math.floor(y / positionQuantum) & 0x1FFFFFL;
+        long qz = (long) Math.floor(z / positionQuantum) & 0x1FFFFFL;
+        return (qx << 42) | (qy << 21) | qz;
+    }
+
+    private long viewerKey(CullingSnapshot snap, int v) {
+        long qa = (long) Math.floor(snap.vyaw[v] / angleQuantum) & 0x3FFL;
+        long qp = (long) Math.floor(snap.vpitch[v] / angleQuantum) & 0x3FFL;
+        return quantize(snap.vx[v], snap.vy[v], snap.vz[v]) * 31L + ((qa << 10) | qp);
+    }
+
+    private void ensureEntityCapacity(int n) {
+        if (n <= eKey.length) return;
+        int cap = Math.max(n, eKey.length << 1);
+        eKey = java.util.Arrays.copyOf(eKey, cap);
+        ePairs = java.util.Arrays.copyOf(ePairs, cap);
+        eHidden = java.util.Arrays.copyOf(eHidden, cap);
+        eLastSeen = java.util.Arrays.copyOf(eLastSeen, cap);
+        eEvaluated = java.util.Arrays.copyOf(eEvaluated, cap);
+        eFlipped = java.util.Arrays.copyOf(eFlipped, cap);
+        eHeld = java.util.Arrays.copyOf(eHeld, cap);
+    }
+
+    private void ensureViewerCapacity(int n) {
+        if (n <= vKey.length) return;
+        int cap = Math.max(n, vKey.length << 1);
+        vKey = java.util.Arrays.copyOf(vKey, cap);
+        vLastSeen = java.util.Arrays.copyOf(vLastSeen, cap);
+        vSnapIndex = java.util.Arrays.copyOf(vSnapIndex, cap);
+    }
+}
@@ -0,0 +1,174 @@
+package id.rnggagib.performance;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Spawns the packet layer culled, per viewer, so the entity can be paired again once the viewer turns
+ * towards it or comes closer; without this an entity whose spawn was culled stays invisible until the
+ * server re-tracks it. Entries are just the entity id and UUID in slot columns keyed by an
+ * {@link IntSlotIndex}: replay goes through the server's tracker, which sends the spawn with the
+ * entity's current position, metadata, equipment and passengers rather than a stale packet.
+ *
+ * <p>Entries are added and removed on packet threads and re-evaluated on the main thread when the
+ * viewer's pose changed or every few ticks; each viewer's entries are guarded by that viewer's monitor.
+ * Periodic re-evaluations fall on a per-viewer phase of the recheck interval, so viewers that joined
+ * together do not all come due on the same tick.
+ */
+final class DeferredSpawns {
+    record Entry(int entityId, java.util.UUID entity) {}
+
+    private final int maxPerViewer;
+    private final double moveSq;
+    private final double turnDegrees;
+    private final int recheckTicks;
+    private final java.util.concurrent.ConcurrentHashMap<java.util.UUID, Viewer> viewers = new java.util.concurrent.ConcurrentHashMap<>();
+    private final java.util.concurrent.atomic.LongAdder deferred = new java.util.concurrent.atomic.LongAdder();
+    private final java.util.concurrent.atomic.LongAdder replayed = new java.util.concurrent.atomic.LongAdder();
+
+    private static final class Viewer {
+        final IntSlotIndex index = new IntSlotIndex();
+        final int phase; // periodic re-evaluations fall on ticks congruent to this
+        long[] most = new long[16], least = new long[16]; // entity UUID by slot
+        // Main thread only: pose at the last evaluation and the next periodic one
+        @Nullable World world;
+        double x, y, z;
+        float yaw, pitch;
+        long nextCheck = Long.MIN_VALUE / 2;
+
+        Viewer(java.util.UUID id) {
+            phase = id.hashCode();
+        }
+    }
+
+    DeferredSpawns(int maxPerViewer, double moveBlocks, double turnDegrees, int recheckTicks) {
+        this.maxPerViewer = maxPerViewer;
+        this.moveSq = moveBlocks * moveBlocks;
+        this.turnDegrees = turnDegrees;
+        this.recheckTicks = recheckTicks;
+    }
+
+    /** Packet thread: remembers a culled spawn; false when the viewer's store is full (send it instead). */
+    boolean defer(java.util.UUID viewer, int entityId, java.util.UUID entity) {
+        Viewer v = viewers.computeIfAbsent(viewer, Viewer::new);
+        synchronized (v) {
+            int slot = v.index.get(entityId);
+            if (slot < 0) {
+                if (v.index.size() >= maxPerViewer) return false;
+                slot = -(v.index.getOrInsert(entityId) + 1);
+                if (slot >= v.most.length) {
+                    int cap = Math.max(v.most.length << 1, slot + 1);
+                    v.most = java.util.Arrays.copyOf(v.most, cap);
+                    v.least = java.util.Arrays.copyOf(v.least, cap);
+                }
+            }
+            v.most[slot] = entity.getMostSignificantBits();
+            v.least[slot] = entity.getLeastSignificantBits();
+        }
+        deferred.increment();
+        return true;
+    }
+
+    /** Packet thread: the entity's spawn went out or it was destroyed for the viewer. */
+    void forget(java.util.UUID viewer, int entityId) {
+        Viewer v = viewers.get(viewer);
+        if (v == null) return;
+        synchronized (v) {
+            if (v.index.size() > 0) v.index.remove(entityId);
+        }
+    }
+
+    java.util.Set<java.util.UUID> viewerIds() {
+        return viewers.keySet();
+    }
+
+    void forgetViewer(java.util.UUID viewer) {
+        viewers.remove(viewer);
+    }
+
+    /**
+     * Main thread: true (and the pose recorded) when the viewer's entries are due for re-evaluation, i.e.
+     * the viewer moved or turned far enough since the last one, or its periodic recheck came round
+     * (entities move too); at most {@code recheckTicks} apart.
+     */
+    boolean due(java.util.UUID viewer, Location pose, long tick) {
+        Viewer v = viewers.get(viewer);
+        if (v == null) return false;
+        synchronized (v) {
+            if (v.index.size() == 0) return false;
+            boolean changed = pose.getWorld() != v.world
+                || sq(pose.getX() - v.x) + sq(pose.getY() - v.y) + sq(pose.getZ() - v.z) > moveSq
+                || Math.abs(wrapDegrees(pose.getYaw() - v.yaw)) > turnDegrees
+                || Math.abs(pose.getPitch() - v.pitch) > turnDegrees;
+            if (!changed && tick < v.nextCheck) return false;
+            v.world = pose.getWorld();
+            v.x = pose.getX(); v.y = pose.getY(); v.z = pose.getZ();
+            v.yaw = pose.getYaw(); v.pitch = pose.getPitch();
+            // First tick after this one on the viewer's phase
+            v.nextCheck = tick + 1 + Math.floorMod(v.phase - (tick + 1), (long) recheckTicks);
+            return true;
+        }
+    }
+
+    /** Main thread: the viewer's current entries into {@code out}. */
+    void entries(java.util.UUID viewer, java.util.List<Entry> out) {
+        Viewer v = viewers.get(viewer);
+        if (v == null) return;
+        synchronized (v) {
+            int hw = v.index.highWater();
+            for (int slot = 0; slot < hw; slot++) {
+                int id = v.index.keyAt(slot);
+                if (id == Integer.MIN_VALUE) continue;
+                out.add(new Entry(id, new java.util.UUID(v.most[slot], v.least[slot])));
+            }
+        }
+    }
+
+    /** Whether the entry is still held, i.e. neither sent nor destroyed since it was listed. */
+    boolean holds(java.util.UUID viewer, Entry e) {
+        Viewer v = viewers.get(viewer);
+        if (v == null) return false;
+        synchronized (v) {
+            int slot = v.index.get(e.entityId());
+            return slot >= 0 && v.most[slot] == e.entity().getMostSignificantBits() && v.least[slot] == e.entity().getLeastSignificantBits();
+        }
+    }
+
+    /** Main thread: drops an entry (replayed or gone) unless a newer spawn of another entity took the id. */
+    void remove(java.util.UUID viewer, Entry e, boolean replay) {
+        if (replay) replayed.increment();
+        Viewer v = viewers.get(viewer);
+        if (v == null) return;
+        synchronized (v) {
+            int slot = v.index.get(e.entityId());
+            if (slot >= 0 && v.most[slot] == e.entity().getMostSignificantBits() && v.least[slot] == e.entity().getLeastSignificantBits()) {
+                v.index.remove(e.entityId());
+            }
+        }
+    }
+
+    void clear() {
+        viewers.clear();
+    }
+
+    /** {deferred, replayed, currently held}. */
+    long[] stats() {
+        long held = 0;
+        for (Viewer v : viewers.values()) {
+            synchronized (v) { held += v.index.size(); }
+        }
+        return new long[]{deferred.sum(), replayed.sum(), held};
+    }
+
+    private static double sq(double d) {
+        return d * d;
+    }
+
+    private static float wrapDegrees(float d) {
+        d %= 360.0f;
+        if (d >= 180.0f) d -= 360.0f;
+        if (d < -180.0f) d += 360.0f;
+        return d;
+    }
+}
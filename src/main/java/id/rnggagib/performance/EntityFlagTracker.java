@@ -0,0 +1,125 @@
+package id.rnggagib.performance;
+
+import com.destroystokyo.paper.event.entity.EntityAddToWorldEvent;
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDismountEvent;
+import org.bukkit.event.entity.EntityMountEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Entity id to packet-culling flags (protected, Citizens NPC) and type, kept on the main thread from
+ * entity add/remove and mount events so packet listeners on network threads can exempt an entity by
+ * the id in its spawn packet without querying the world. Changes that only take effect after the
+ * event (mounts, metadata set right after spawning) are re-evaluated on the next tick.
+ */
+final class EntityFlagTracker implements Listener {
+    static final int KNOWN = 1;      // every tracked entity; keeps the stored value non-zero
+    static final int PROTECTED = 2;  // protected type, or riding / ridden (CullingService#isProtectedEntity)
+    static final int NPC = 4;        // Citizens "NPC" metadata
+    private static final int TYPE_SHIFT = 16; // EntityType ordinal + 1 in the high half
+
+    private final Plugin plugin;
+    private final CullingService culling;
+    private final IntFlagTable table = new IntFlagTable();
+    private final java.util.ArrayList<Entity> recheck = new java.util.ArrayList<>();
+    private int recheckTask = -1;
+
+    EntityFlagTracker(Plugin plugin, CullingService culling) {
+        this.plugin = plugin;
+        this.culling = culling;
+    }
+
+    /** Main thread: registers the listener and indexes every loaded entity. */
+    void start() {
+        stop();
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        for (World w : Bukkit.getWorlds()) {
+            for (Entity e : w.getEntities()) update(e);
+        }
+        recheckTask = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, this::recheck, 1L, 1L);
+    }
+
+    void stop() {
+        HandlerList.unregisterAll(this);
+        if (recheckTask != -1) { Bukkit.getScheduler().cancelTask(recheckTask); recheckTask = -1; }
+        recheck.clear();
+        table.clear();
+    }
+
+    /** Flags of an entity id, or 0 when it is not (yet) known. Any thread. */
+    int flags(int entityId) {
+        return table.get(entityId);
+    }
+
+    /** True when packets for the entity must never be culled; {@code typeIfUnknown} covers ids not indexed yet. */
+    boolean isExempt(int entityId, @Nullable EntityType typeIfUnknown) {
+        int f = table.get(entityId);
+        if (f != 0) return (f & (PROTECTED | NPC)) != 0;
+        return typeIfUnknown != null && culling.isProtectedType(typeIfUnknown);
+    }
+
+    static @Nullable EntityType type(int flags) {
+        int t = (flags >>> TYPE_SHIFT) - 1;
+        EntityType[] types = EntityType.values();
+        return t >= 0 && t < types.length ? types[t] : null;
+    }
+
+    int size() {
+        return table.size();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAdd(EntityAddToWorldEvent e) {
+        update(e.getEntity());
+        recheck.add(e.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRemove(EntityRemoveFromWorldEvent e) {
+        table.remove(e.getEntity().getEntityId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMount(EntityMountEvent e) {
+        recheck.add(e.getEntity());
+        recheck.add(e.getMount());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDismount(EntityDismountEvent e) {
+        recheck.add(e.getEntity());
+        recheck.add(e.getDismounted());
+    }
+
+    private void recheck() {
+        if (recheck.isEmpty()) return;
+        for (Entity e : recheck) {
+            if (e.isValid()) update(e);
+        }
+        recheck.clear();
+    }
+
+    private void update(Entity e) {
+        int f = KNOWN | ((e.getType().ordinal() + 1) << TYPE_SHIFT);
+        if (culling.isProtectedEntity(e)) f |= PROTECTED;
+        if (isNpc(e)) f |= NPC;
+        table.put(e.getEntityId(), f);
+    }
+
+    private static boolean isNpc(Entity e) {
+        if (!e.hasMetadata("NPC")) return false;
+        for (var m : e.getMetadata("NPC")) {
+            if (m != null && m.asBoolean()) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,132 @@
+package id.rnggagib.performance;
+
+import org.bukkit.entity.Entity;
+
+/**
+ * Chunk-bucketed uniform grid over one world's entities, rebuilt on the main thread per snapshot.
+ * Only cells covered by some player's query radius are kept, so far-away entities cost one hash probe.
+ * Storage is primitive and reused across snapshots (open addressing + intrusive chains).
+ */
+final class EntityGrid {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    // cell key -> head entity index (-1 = covered but empty)
+    private long[] keys = new long[256];
+    private int[] heads = new int[256];
+    private int mask = 255;
+    private int cells = 0;
+
+    // per-entity columns
+    private Entity[] entities = new Entity[256];
+    private double[] xs = new double[256];
+    private double[] ys = new double[256];
+    private double[] zs = new double[256];
+    private int[] next = new int[256];
+    private boolean[] emitted = new boolean[256];
+    private int size = 0;
+
+    EntityGrid() {
+        java.util.Arrays.fill(keys, EMPTY);
+    }
+
+    static long cellKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    void clear() {
+        if (cells > 0) java.util.Arrays.fill(keys, EMPTY);
+        java.util.Arrays.fill(entities, 0, size, null);
+        cells = 0;
+        size = 0;
+    }
+
+    /** Marks every chunk cell within {@code radius} blocks of (x, z) as covered. */
+    void cover(double x, double z, double radius) {
+        int minX = (int) Math.floor(x - radius) >> 4, maxX = (int) Math.floor(x + radius) >> 4;
+        int minZ = (int) Math.floor(z - radius) >> 4, maxZ = (int) Math.floor(z + radius) >> 4;
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                long k = cellKey(cx, cz);
+                if (slot(k) < 0) insertCell(k);
+            }
+        }
+    }
+
+    boolean isCovered(int cx, int cz) {
+        return slot(cellKey(cx, cz)) >= 0;
+    }
+
+    /** Adds an entity to its (already covered) cell. Returns false if the cell is not covered. */
+    boolean add(Entity e, double x, double y, double z) {
+        int s = slot(cellKey((int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4));
+        if (s < 0) return false;
+        if (size == entities.length) grow();
+        int i = size++;
+        entities[i] = e; xs[i] = x; ys[i] = y; zs[i] = z; emitted[i] = false;
+        next[i] = heads[s];
+        heads[s] = i;
+        return true;
+    }
+
+    /** Head of the entity chain for a cell, or -1. Iterate with {@link #next(int)}. */
+    int head(int cx, int cz) {
+        int s = slot(cellKey(cx, cz));
+        return s < 0 ? -1 : heads[s];
+    }
+
+    int next(int i) { return next[i]; }
+    Entity entity(int i) { return entities[i]; }
+    double x(int i) { return xs[i]; }
+    double y(int i) { return ys[i]; }
+    double z(int i) { return zs[i]; }
+    boolean isEmitted(int i) { return emitted[i]; }
+    void markEmitted(int i) { emitted[i] = true; }
+    int size() { return size; }
+
+    private int slot(long k) {
+        int i = mix(k) & mask;
+        while (true) {
+            long cur = keys[i];
+            if (cur == EMPTY) return -1;
+            if (cur == k) return i;
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void insertCell(long k) {
+        if ((cells + 1) * 2 > keys.length) rehash(keys.length << 1);
+        int i = mix(k) & mask;
+        while (keys[i] != EMPTY) i = (i + 1) & mask;
+        keys[i] = k;
+        heads[i] = -1;
+        cells++;
+    }
+
+    private void rehash(int cap) {
+        long[] oldKeys = keys; int[] oldHeads = heads;
+        keys = new long[cap]; heads = new int[cap]; mask = cap - 1;
+        java.util.Arrays.fill(keys, EMPTY);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            heads[i] = oldHeads[j];
+        }
+    }
+
+    private void grow() {
+        int cap = entities.length << 1;
+        entities = java.util.Arrays.copyOf(entities, cap);
+        xs = java.util.Arrays.copyOf(xs, cap);
+        ys = java.util.Arrays.copyOf(ys, cap);
+        zs = java.util.Arrays.copyOf(zs, cap);
+        next = java.util.Arrays.copyOf(next, cap);
+        emitted = java.util.Arrays.copyOf(emitted, cap);
+    }
+
+    private static int mix(long k) {
+        long h = k * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,64 @@
+package id.rnggagib.performance;
+
+/**
+ * Entity id to last captured position (feet), published by the culling capture for readers on packet
+ * threads. Open addressing over primitive columns; each capture fills a new index and publishes it
+ * through a volatile field, and nothing writes to it afterwards, so readers never lock and never see
+ * an id paired with another capture's position.
+ */
+final class EntityIdIndex {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final int[] keys;
+    private final double[] xs, ys, zs;
+    private final int mask;
+    private int size;
+
+    /** Sized for about {@code expected} entries (load factor <= 0.5). */
+    EntityIdIndex(int expected) {
+        int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new int[cap];
+        xs = new double[cap]; ys = new double[cap]; zs = new double[cap];
+        java.util.Arrays.fill(keys, EMPTY);
+        mask = cap - 1;
+    }
+
+    /** Writer only, before the index is published. */
+    void put(int id, double x, double y, double z) {
+        if (id == EMPTY || size * 2 >= keys.length) return;
+        int i = mix(id) & mask;
+        while (keys[i] != EMPTY && keys[i] != id) i = (i + 1) & mask;
+        if (keys[i] == EMPTY) size++;
+        keys[i] = id;
+        xs[i] = x; ys[i] = y; zs[i] = z;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Squared distance between two captured entities, or -1 when either is unknown. Any thread. */
+    double distanceSquared(int a, int b) {
+        int sa = slot(keys, a), sb = slot(keys, b);
+        if (sa < 0 || sb < 0) return -1.0;
+        double dx = xs[sa] - xs[sb], dy = ys[sa] - ys[sb], dz = zs[sa] - zs[sb];
+        return dx*dx + dy*dy + dz*dz;
+    }
+
+    private static int slot(int[] k, int id) {
+        int m = k.length - 1;
+        int i = mix(id) & m;
+        for (int probe = 0; probe <= m; probe++) {
+            int key = k[i];
+            if (key == id) return i;
+            if (key == EMPTY) return -1;
+            i = (i + 1) & m;
+        }
+        return -1;
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
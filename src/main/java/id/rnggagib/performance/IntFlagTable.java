@@ -0,0 +1,120 @@
+package id.rnggagib.performance;
+
+/**
+ * Int key to int value map for one writer thread and any number of lock-free readers. Each slot is
+ * one long (key in the high half, value in the low half) in an {@link java.util.concurrent.atomic.AtomicLongArray},
+ * so a reader sees a key together with its value or not at all. Values must be non-zero; removal
+ * leaves a tombstone (key with value 0) that keeps probe chains intact until the next rebuild, which
+ * the writer publishes as a fresh array.
+ */
+final class IntFlagTable {
+    private static final int MIN_CAPACITY = 64;
+
+    private volatile java.util.concurrent.atomic.AtomicLongArray slots = new java.util.concurrent.atomic.AtomicLongArray(MIN_CAPACITY);
+    private int live;  // writer only
+    private int used;  // live + tombstones, writer only
+
+    /** Value for {@code key}, or 0 when absent. Any thread. */
+    int get(int key) {
+        var s = slots;
+        int mask = s.length() - 1;
+        int i = mix(key) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long e = s.get(i);
+            if (e == 0L) return 0;
+            if ((int) (e >>> 32) == key) return (int) e;
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    /** Writer thread only. {@code value} 0 removes. */
+    void put(int key, int value) {
+        if (value == 0) { remove(key); return; }
+        var s = slots;
+        int mask = s.length() - 1;
+        int i = mix(key) & mask;
+        int free = -1;
+        for (int probe = 0; probe <= mask; probe++) {
+            long e = s.get(i);
+            if (e == 0L) break;
+            if ((int) (e >>> 32) == key) {
+                if ((int) e == 0) live++;
+                s.set(i, pack(key, value));
+                return;
+            }
+            if (free < 0 && (int) e == 0) free = i; // tombstone of another key
+            i = (i + 1) & mask;
+        }
+        if (free >= 0) {
+            s.set(free, pack(key, value));
+            live++;
+            return;
+        }
+        if ((used + 1) * 2 > s.length()) {
+            rebuild(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, live + 1) * 4 - 1) << 1));
+            put(key, value);
+            return;
+        }
+        s.set(i, pack(key, value));
+        live++;
+        used++;
+    }
+
+    /** Writer thread only. */
+    void remove(int key) {
+        var s = slots;
+        int mask = s.length() - 1;
+        int i = mix(key) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long e = s.get(i);
+            if (e == 0L) return;
+            if ((int) (e >>> 32) == key) {
+                if ((int) e != 0) {
+                    s.set(i, pack(key, 0));
+                    live--;
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /** Writer thread only. */
+    void clear() {
+        slots = new java.util.concurrent.atomic.AtomicLongArray(MIN_CAPACITY);
+        live = 0;
+        used = 0;
+    }
+
+    int size() {
+        return live;
+    }
+
+    // Copies live entries into a new array (dropping tombstones) and publishes it
+    private void rebuild(int capacity) {
+        var old = slots;
+        var next = new java.util.concurrent.atomic.AtomicLongArray(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.length(); j++) {
+            long e = old.get(j);
+            if (e == 0L || (int) e == 0) continue;
+            int i = mix((int) (e >>> 32)) & mask;
+            while (next.get(i) != 0L) i = (i + 1) & mask;
+            next.set(i, e);
+        }
+        used = live;
+        slots = next;
+    }
+
+    private static long pack(int key, int value) {
+        long e = ((long) key << 32) | (value & 0xffffffffL);
+        // Key 0's tombstone would read as an empty slot: keep it as a tombstone of another key instead
+        return e != 0L ? e : Long.MIN_VALUE;
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,132 @@
+package id.rnggagib.performance;
+
+/**
+ * Open-addressing int key -> dense slot index with slot recycling. Not thread-safe; owned by one
+ * thread at a time (the culling worker, or the main thread between harvest and the next dispatch).
+ */
+final class IntSlotIndex {
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] slots;
+    private int mask;
+    private int size;
+
+    // dense slot -> key, plus a free-slot stack so slot columns stay compact
+    private int[] slotKeys;
+    private int highWater;
+    private int[] freeSlots;
+    private int freeCount;
+
+    IntSlotIndex() {
+        keys = new int[256];
+        slots = new int[256];
+        mask = 255;
+        java.util.Arrays.fill(keys, FREE);
+        slotKeys = new int[128];
+        freeSlots = new int[32];
+    }
+
+    int size() { return size; }
+
+    /** Upper bound (exclusive) of slot indices ever handed out; size slot columns to this. */
+    int highWater() { return highWater; }
+
+    /** Key stored in a slot, or {@code Integer.MIN_VALUE} if the slot is free. */
+    int keyAt(int slot) { return slotKeys[slot]; }
+
+    int get(int key) {
+        int i = mix(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == FREE) return -1;
+            if (k == key) return slots[i];
+            i = (i + 1) & mask;
+        }
+    }
+
+    /** Returns the existing slot, or allocates one and returns {@code -(slot + 1)}. */
+    int getOrInsert(int key) {
+        int i = mix(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == FREE) break;
+            if (k == key) return slots[i];
+            i = (i + 1) & mask;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length << 1);
+            i = mix(key) & mask;
+            while (keys[i] != FREE) i = (i + 1) & mask;
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : highWater++;
+        if (slot >= slotKeys.length) {
+            int old = slotKeys.length;
+            slotKeys = java.util.Arrays.copyOf(slotKeys, old << 1);
+        }
+        slotKeys[slot] = key;
+        keys[i] = key;
+        slots[i] = slot;
+        size++;
+        return -(slot + 1);
+    }
+
+    /** Removes a key; returns its former slot or -1. */
+    int remove(int key) {
+        int i = mix(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == FREE) return -1;
+            if (k == key) break;
+            i = (i + 1) & mask;
+        }
+        int slot = slots[i];
+        // backward-shift deletion keeps probe chains intact without tombstones
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int k = keys[j];
+            if (k == FREE) break;
+            int home = mix(k) & mask;
+            if ((j > i && (home <= i || home > j)) || (j < i && (home <= i && home > j))) {
+                keys[i] = k;
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        size--;
+        slotKeys[slot] = FREE;
+        if (freeCount == freeSlots.length) freeSlots = java.util.Arrays.copyOf(freeSlots, freeCount << 1);
+        freeSlots[freeCount++] = slot;
+        return slot;
+    }
+
+    void clear() {
+        java.util.Arrays.fill(keys, FREE);
+        java.util.Arrays.fill(slotKeys, 0, highWater, FREE);
+        size = 0;
+        highWater = 0;
+        freeCount = 0;
+    }
+
+    private void rehash(int cap) {
+        int[] oldKeys = keys, oldSlots = slots;
+        keys = new int[cap];
+        slots = new int[cap];
+        mask = cap - 1;
+        java.util.Arrays.fill(keys, FREE);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == FREE) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (keys[i] != FREE) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            slots[i] = oldSlots[j];
+        }
+    }
+
+    private static int mix(int k) {
+        int h = k * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
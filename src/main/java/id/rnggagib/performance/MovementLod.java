@@ -0,0 +1,208 @@
+package id.rnggagib.performance;
+
+/**
+ * Per-viewer level of detail for entity movement packets: beyond the first distance band, relative
+ * moves, looks, head rotations and velocities of an entity are only let through every N ticks.
+ *
+ * <p>Relative moves carry deltas (1/4096 block) from the last position the client was sent, so the
+ * deltas of dropped moves are summed exactly and written into the next move that goes through, or
+ * flushed by {@link #flush} once the band's interval has elapsed; absolute packets (look, head
+ * rotation, velocity) keep only the latest dropped one. The client therefore ends up at the same
+ * position and rotation, just with fewer intermediate steps. A server teleport or respawn of the
+ * entity supersedes whatever is pending.
+ *
+ * <p>Decisions run on the viewer's network thread, flushes on the main thread; each viewer's tracks
+ * are guarded by that viewer's monitor. Packets are opaque here (ProtocolLib containers); the caller
+ * reads deltas and rewrites or sends them.
+ */
+final class MovementLod {
+    static final int MOVE = 0, MOVE_LOOK = 1, LOOK = 2, HEAD = 3, VELOCITY = 4;
+    // decide() outcomes
+    static final int PASS = 0, DROP = 1, REWRITE = 2;
+
+    private static final int MAX_DELTA = Short.MAX_VALUE;
+    private static final int EVICT_AFTER_TICKS = 200;
+
+    private final double[] bandsSq; // ascending squared band edges
+    private final int[] every;      // ticks between sends per band, bands + 1 entries
+    private final java.util.concurrent.ConcurrentHashMap<java.util.UUID, Viewer> viewers = new java.util.concurrent.ConcurrentHashMap<>();
+    private final java.util.concurrent.atomic.LongAdder dropped = new java.util.concurrent.atomic.LongAdder();
+    private final java.util.concurrent.atomic.LongAdder rewritten = new java.util.concurrent.atomic.LongAdder();
+    private final java.util.concurrent.atomic.LongAdder flushed = new java.util.concurrent.atomic.LongAdder();
+
+    private static final class Viewer {
+        final java.util.HashMap<Integer, Track> tracks = new java.util.HashMap<>();
+    }
+
+    private static final class Track {
+        long lastSent = Long.MIN_VALUE / 2;
+        long touched;
+        int every = 1;
+        int dx, dy, dz;       // summed deltas of dropped moves
+        boolean flushNow;     // a move could not be merged; flush on the next tick
+        Object lastMove;      // latest dropped MOVE/MOVE_LOOK (template for the flush)
+        boolean moveLook;     // lastMove carries the latest dropped rotation
+        Object lastLook, lastHead, lastVelocity;
+
+        boolean pending() {
+            return lastMove != null || lastLook != null || lastHead != null || lastVelocity != null;
+        }
+
+        void clear() {
+            dx = dy = dz = 0;
+            flushNow = false;
+            moveLook = false;
+            lastMove = lastLook = lastHead = lastVelocity = null;
+        }
+    }
+
+    /** One packet to send from {@link #flush}: a move template whose deltas must be set, or a packet as-is. */
+    record Flush(java.util.UUID viewer, Object packet, boolean move, int dx, int dy, int dz) {}
+
+    /**
+     * @param distances ascending band edges in blocks
+     * @param everyTicks ticks between sends per band; one more entry than {@code distances} (beyond the last edge)
+     */
+    MovementLod(double[] distances, int[] everyTicks) {
+        bandsSq = new double[distances.length];
+        for (int i = 0; i < distances.length; i++) bandsSq[i] = distances[i] * distances[i];
+        every = new int[distances.length + 1];
+        for (int i = 0; i <= distances.length; i++) {
+            every[i] = Math.max(1, i < everyTicks.length ? everyTicks[i] : everyTicks[everyTicks.length - 1]);
+        }
+    }
+
+    int everyFor(double distanceSq) {
+        if (distanceSq < 0) return 1; // position unknown: never decimate
+        for (int i = 0; i < bandsSq.length; i++) if (distanceSq <= bandsSq[i]) return every[i];
+        return every[bandsSq.length];
+    }
+
+    /**
+     * Decision for one movement packet of {@code entityId} to {@code viewer}. For moves, {@code delta}
+     * holds the packet's deltas on entry and, on REWRITE, the deltas to write into a copy of the packet.
+     */
+    int decide(java.util.UUID viewer, int entityId, int kind, Object packet, int[] delta, long tick, double distanceSq) {
+        int n = everyFor(distanceSq);
+        Viewer v = viewers.computeIfAbsent(viewer, k -> new Viewer());
+        synchronized (v) {
+            Track t = v.tracks.get(entityId);
+            if (t == null) {
+                if (n <= 1) return PASS; // nothing pending and nothing to decimate: no state needed
+                t = new Track();
+                v.tracks.put(entityId, t);
+            }
+            t.touched = tick;
+            t.every = n;
+            boolean due = n <= 1 || tick == t.lastSent || tick - t.lastSent >= n;
+            boolean move = kind == MOVE || kind == MOVE_LOOK;
+            if (move) {
+                long sx = (long) t.dx + delta[0], sy = (long) t.dy + delta[1], sz = (long) t.dz + delta[2];
+                boolean fits = Math.abs(sx) <= MAX_DELTA && Math.abs(sy) <= MAX_DELTA && Math.abs(sz) <= MAX_DELTA;
+                // A position-only move must not replace a template carrying a dropped rotation: merge it
+                // there and flush next tick instead of sending it now
+                boolean keepTemplate = kind == MOVE && t.moveLook && t.lastMove != null;
+                if ((!due || keepTemplate) && fits) {
+                    t.dx = (int) sx; t.dy = (int) sy; t.dz = (int) sz;
+                    if (!keepTemplate) {
+                        t.lastMove = packet;
+                        t.moveLook = kind == MOVE_LOOK;
+                    }
+                    if (kind == MOVE_LOOK) t.lastLook = null; // its rotation is newer
+                    if (due) t.flushNow = true;
+                    dropped.increment();
+                    return DROP;
+                }
+                t.lastSent = tick;
+                if (kind == MOVE_LOOK) t.lastLook = null;
+                if (t.lastMove == null) return PASS;
+                if (!fits) {
+                    // Deltas commute: send this one as is and the summed rest on the next tick, on this
+                    // packet's (newer) rotation when it has one
+                    if (kind == MOVE_LOOK) { t.lastMove = packet; t.moveLook = true; }
+                    t.flushNow = true;
+                    return PASS;
+                }
+                delta[0] = (int) sx; delta[1] = (int) sy; delta[2] = (int) sz;
+                t.dx = t.dy = t.dz = 0;
+                t.lastMove = null;
+                t.moveLook = false;
+                rewritten.increment();
+                return REWRITE;
+            }
+            if (!due) {
+                if (kind == LOOK) t.lastLook = packet;
+                else if (kind == HEAD) t.lastHead = packet;
+                else t.lastVelocity = packet;
+                dropped.increment();
+                return DROP;
+            }
+            t.lastSent = tick;
+            // A pending move template still carries an older rotation: resend this look after it
+            if (kind == LOOK) t.lastLook = t.moveLook && t.lastMove != null ? packet : null;
+            else if (kind == HEAD) t.lastHead = null;
+            else t.lastVelocity = null;
+            return PASS;
+        }
+    }
+
+    /** The client was sent an absolute position for the entity (spawn, teleport, sync): pending state is void. */
+    void reset(java.util.UUID viewer, int entityId, long tick) {
+        Viewer v = viewers.get(viewer);
+        if (v == null) return;
+        synchronized (v) {
+            Track t = v.tracks.get(entityId);
+            if (t == null) return;
+            t.clear();
+            t.lastSent = tick;
+        }
+    }
+
+    void forget(java.util.UUID viewer, int entityId) {
+        Viewer v = viewers.get(viewer);
+        if (v == null) return;
+        synchronized (v) { v.tracks.remove(entityId); }
+    }
+
+    void forgetViewer(java.util.UUID viewer) {
+        viewers.remove(viewer);
+    }
+
+    java.util.Set<java.util.UUID> viewerIds() {
+        return viewers.keySet();
+    }
+
+    /**
+     * Main thread, every tick: collects what is due for every track with dropped packets (summed move
+     * first, then look, head rotation and velocity) into {@code out}, and evicts idle tracks.
+     */
+    void flush(long tick, java.util.List<Flush> out) {
+        for (var e : viewers.entrySet()) {
+            var id = e.getKey();
+            Viewer v = e.getValue();
+            synchronized (v) {
+                var it = v.tracks.values().iterator();
+                while (it.hasNext()) {
+                    Track t = it.next();
+                    if (!t.pending()) {
+                        if (tick - t.touched > EVICT_AFTER_TICKS) it.remove();
+                        continue;
+                    }
+                    if (!t.flushNow && tick - t.lastSent < t.every) continue;
+                    if (t.lastMove != null) out.add(new Flush(id, t.lastMove, true, t.dx, t.dy, t.dz));
+                    if (t.lastLook != null) out.add(new Flush(id, t.lastLook, false, 0, 0, 0));
+                    if (t.lastHead != null) out.add(new Flush(id, t.lastHead, false, 0, 0, 0));
+                    if (t.lastVelocity != null) out.add(new Flush(id, t.lastVelocity, false, 0, 0, 0));
+                    t.clear();
+                    t.lastSent = tick;
+                    flushed.increment();
+                }
+            }
+        }
+    }
+
+    /** {dropped, merged into a passing move, flushed} since start. */
+    long[] stats() {
+        return new long[]{dropped.sum(), rewritten.sum(), flushed.sum()};
+    }
+}
@@ -0,0 +1,336 @@
+package id.rnggagib.performance;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Packet backend without ProtocolLib: a {@link ChannelDuplexHandler} placed before the connection's
+ * {@code packet_handler} in every player's pipeline sees the NMS packets the server writes and runs
+ * them through the service's filters. NMS classes (Mojang names, as Paper runs since 1.20.5) and
+ * their accessors are resolved once into {@link MethodHandle}s; the write path is a class identity
+ * check and a few {@code invokeExact} calls.
+ *
+ * <p>Spawns go out in bundles (the entity's pairing data): a bundle is culled or queued as a whole
+ * by its first spawn. NMS packets are immutable, so copies are the packets themselves and LOD
+ * rewrites construct new relative moves.
+ */
+final class NettyPacketBackend implements PacketBackend, Listener {
+    private static final String HANDLER = "gatotkacas_packet_culling";
+    private static final String BEFORE = "packet_handler";
+    private static final String GAME = "net.minecraft.network.protocol.game.";
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private final Plugin plugin;
+    private final Logger logger;
+    private final PacketCullingReflectService policy;
+    private final MethodHandle channel; // (Player)Channel: CraftPlayer -> ServerPlayer -> listener -> Connection -> Channel
+    private final Class<?> addEntity;
+    private final MethodHandle addEntityId, addEntityX, addEntityY, addEntityZ;
+    private final @Nullable MethodHandle addEntityUuid;
+    private final @Nullable Class<?> bundle, particles, remove;
+    private final @Nullable MethodHandle bundleSubPackets, removeIds;
+    private final @Nullable Moves moves;
+    private boolean warnedInject;
+
+    // Movement packets for the LOD; resolved together, absent as a whole when any required part is missing
+    private static final class Moves {
+        final Class<?> pos, posRot, rot, head, motion;
+        final @Nullable Class<?> teleport, sync;
+        final MethodHandle id, xa, ya, za, yRot, xRot, onGround, headId, motionId, posCtor, posRotCtor;
+        final @Nullable MethodHandle teleportId, syncId;
+
+        Moves(ClassLoader cl) throws ReflectiveOperationException {
+            Class<?> move = Class.forName(GAME + "ClientboundMoveEntityPacket", false, cl);
+            pos = Class.forName(GAME + "ClientboundMoveEntityPacket$Pos", false, cl);
+            posRot = Class.forName(GAME + "ClientboundMoveEntityPacket$PosRot", false, cl);
+            rot = Class.forName(GAME + "ClientboundMoveEntityPacket$Rot", false, cl);
+            head = Class.forName(GAME + "ClientboundRotateHeadPacket", false, cl);
+            motion = Class.forName(GAME + "ClientboundSetEntityMotionPacket", false, cl);
+            teleport = optionalClass(cl, "ClientboundTeleportEntityPacket");
+            sync = optionalClass(cl, "ClientboundEntityPositionSyncPacket");
+
+            id = getter(move, int.class, "entityId");
+            xa = getter(move, short.class, "xa");
+            ya = getter(move, short.class, "ya");
+            za = getter(move, short.class, "za");
+            yRot = getter(move, byte.class, "yRot");
+            xRot = getter(move, byte.class, "xRot");
+            onGround = getter(move, boolean.class, "onGround");
+            headId = getter(head, int.class, "entityId");
+            motionId = getter(motion, int.class, "getId", "id");
+            posCtor = MethodHandles.privateLookupIn(pos, MethodHandles.lookup())
+                .findConstructor(pos, MethodType.methodType(void.class, int.class, short.class, short.class, short.class, boolean.class))
+                .asType(MethodType.methodType(Object.class, int.class, short.class, short.class, short.class, boolean.class));
+            posRotCtor = MethodHandles.privateLookupIn(posRot, MethodHandles.lookup())
+                .findConstructor(posRot, MethodType.methodType(void.class, int.class, short.class, short.class, short.class, byte.class, byte.class, boolean.class))
+                .asType(MethodType.methodType(Object.class, int.class, short.class, short.class, short.class, byte.class, byte.class, boolean.class));
+            teleportId = teleport != null ? optionalGetter(teleport, int.class, "id", "getId") : null;
+            syncId = sync != null ? optionalGetter(sync, int.class, "id", "getId") : null;
+        }
+    }
+
+    private NettyPacketBackend(Plugin plugin, Logger logger, PacketCullingReflectService policy) throws ReflectiveOperationException {
+        this.plugin = plugin;
+        this.logger = logger;
+        this.policy = policy;
+        ClassLoader cl = Bukkit.getServer().getClass().getClassLoader();
+
+        Class<?> craftPlayer = Class.forName(Bukkit.getServer().getClass().getPackageName() + ".entity.CraftPlayer", false, cl);
+        var getHandle = craftPlayer.getMethod("getHandle");
+        Class<?> listener = Class.forName("net.minecraft.server.network.ServerGamePacketListenerImpl", false, cl);
+        Class<?> connection = Class.forName("net.minecraft.network.Connection", false, cl);
+        MethodHandle h = MethodHandles.publicLookup().unreflect(getHandle).asType(MethodType.methodType(Object.class, Player.class));
+        h = MethodHandles.filterReturnValue(h, fieldOfType(getHandle.getReturnType(), listener));
+        h = MethodHandles.filterReturnValue(h, fieldOfType(listener, connection));
+        h = MethodHandles.filterReturnValue(h, fieldOfType(connection, Channel.class));
+        channel = h.asType(MethodType.methodType(Channel.class, Player.class));
+
+        addEntity = Class.forName(GAME + "ClientboundAddEntityPacket", false, cl);
+        addEntityId = getter(addEntity, int.class, "getId", "id");
+        addEntityX = getter(addEntity, double.class, "getX", "x");
+        addEntityY = getter(addEntity, double.class, "getY", "y");
+        addEntityZ = getter(addEntity, double.class, "getZ", "z");
+        addEntityUuid = optionalGetter(addEntity, java.util.UUID.class, "getUUID", "uuid");
+        bundle = optionalClass(cl, "ClientboundBundlePacket");
+        bundleSubPackets = bundle != null ? optionalGetter(bundle, Iterable.class, "subPackets", "packets") : null;
+        particles = optionalClass(cl, "ClientboundLevelParticlesPacket");
+        remove = optionalClass(cl, "ClientboundRemoveEntitiesPacket");
+        removeIds = remove != null ? optionalGetter(remove, java.util.List.class, "getEntityIds", "entityIds") : null;
+
+        Moves m = null;
+        try {
+            m = new Moves(cl);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Netty packet backend: movement packets not resolved ({}); movement LOD unavailable", e.toString());
+        }
+        moves = m;
+    }
+
+    /** Resolves the NMS side, or throws when this server does not match (the caller falls back to ProtocolLib). */
+    static NettyPacketBackend resolve(Plugin plugin, Logger logger, PacketCullingReflectService policy) throws ReflectiveOperationException {
+        return new NettyPacketBackend(plugin, logger, policy);
+    }
+
+    boolean supportsMovement() {
+        return moves != null;
+    }
+
+    /** Main thread: injects online players now and joining players from here on. */
+    void start() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        for (Player p : Bukkit.getOnlinePlayers()) inject(p);
+    }
+
+    void stop() {
+        HandlerList.unregisterAll(this);
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            try {
+                Channel ch = (Channel) channel.invokeExact(p);
+                ch.eventLoop().execute(() -> {
+                    if (ch.pipeline().get(HANDLER) != null) ch.pipeline().remove(HANDLER);
+                });
+            } catch (Throwable ignored) {}
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent e) {
+        inject(e.getPlayer());
+    }
+
+    private void inject(Player p) {
+        try {
+            Channel ch = (Channel) channel.invokeExact(p);
+            // On the channel's loop: ordered after a pending removal from a previous start
+            ch.eventLoop().execute(() -> {
+                var pipe = ch.pipeline();
+                if (pipe.get(HANDLER) != null || pipe.get(BEFORE) == null) return;
+                pipe.addBefore(BEFORE, HANDLER, new Interceptor(p));
+            });
+        } catch (Throwable t) {
+            if (!warnedInject) {
+                warnedInject = true;
+                logger.warn("Netty packet backend: could not inject {}'s channel", p.getName(), t);
+            }
+        }
+    }
+
+    private final class Interceptor extends ChannelDuplexHandler {
+        private final Player viewer;
+        private final PlayerBudget budget;
+
+        Interceptor(Player viewer) {
+            this.viewer = viewer;
+            this.budget = policy.budget(viewer);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            Object out;
+            try {
+                out = filter(viewer, budget, msg);
+            } catch (Throwable t) {
+                out = msg; // never lose a packet to a filter error
+            }
+            if (out == null) {
+                promise.trySuccess();
+                return;
+            }
+            super.write(ctx, out, promise);
+        }
+    }
+
+    // Network thread: the packet to write (possibly a replacement), or null to drop it
+    private @Nullable Object filter(Player viewer, PlayerBudget budget, Object msg) throws Throwable {
+        if (policy.hasOwnResends() && policy.isOwnResend(msg)) return msg;
+        Class<?> c = msg.getClass();
+        if (c == addEntity) return spawn(viewer, budget, msg, msg);
+        if (c == bundle && bundleSubPackets != null) {
+            for (Object sub : (Iterable<?>) bundleSubPackets.invokeExact(msg)) {
+                if (sub.getClass() == addEntity) return spawn(viewer, budget, sub, msg);
+            }
+            return msg;
+        }
+        if (c == particles) return policy.dropParticle(viewer) ? null : msg;
+        if (c == remove) {
+            // Evicts queued spawns and LOD state of the removed entities
+            if (removeIds != null) policy.onDestroy(viewer, (java.util.List<?>) removeIds.invokeExact(msg));
+            return msg;
+        }
+        Moves m = moves;
+        if (m == null || !policy.isMovementLodActive()) return msg;
+        if (c == m.pos || c == m.posRot) {
+            int[] delta = {(short) m.xa.invokeExact(msg), (short) m.ya.invokeExact(msg), (short) m.za.invokeExact(msg)};
+            return policy.filterMovement(viewer, (int) m.id.invokeExact(msg), c == m.pos ? MovementLod.MOVE : MovementLod.MOVE_LOOK, msg, delta);
+        }
+        if (c == m.rot) return policy.filterMovement(viewer, (int) m.id.invokeExact(msg), MovementLod.LOOK, msg, null);
+        if (c == m.head) return policy.filterMovement(viewer, (int) m.headId.invokeExact(msg), MovementLod.HEAD, msg, null);
+        if (c == m.motion) return policy.filterMovement(viewer, (int) m.motionId.invokeExact(msg), MovementLod.VELOCITY, msg, null);
+        if (c == m.teleport && m.teleportId != null) {
+            policy.onAbsolutePosition(viewer, (int) m.teleportId.invokeExact(msg));
+        } else if (c == m.sync && m.syncId != null) {
+            policy.onAbsolutePosition(viewer, (int) m.syncId.invokeExact(msg));
+        }
+        return msg;
+    }
+
+    private @Nullable Object spawn(Player viewer, PlayerBudget budget, Object add, Object packet) throws Throwable {
+        int id = (int) addEntityId.invokeExact(add);
+        double x = (double) addEntityX.invokeExact(add);
+        double y = (double) addEntityY.invokeExact(add);
+        double z = (double) addEntityZ.invokeExact(add);
+        var uuid = addEntityUuid != null ? (java.util.UUID) addEntityUuid.invokeExact(add) : null;
+        return policy.filterSpawn(viewer, budget, id, uuid, null, x, y, z, packet) ? null : packet;
+    }
+
+    @Override
+    public String name() {
+        return "netty";
+    }
+
+    @Override
+    public boolean canSend() {
+        return true;
+    }
+
+    @Override
+    public void send(Player viewer, Object packet) throws Throwable {
+        Channel ch = (Channel) channel.invokeExact(viewer);
+        ch.writeAndFlush(packet);
+    }
+
+    @Override
+    public Object copy(Object packet) {
+        return packet; // NMS packets are immutable
+    }
+
+    @Override
+    public Object withDeltas(Object move, int dx, int dy, int dz) throws Throwable {
+        Moves m = moves;
+        if (m == null) return move;
+        int id = (int) m.id.invokeExact(move);
+        boolean ground = (boolean) m.onGround.invokeExact(move);
+        if (move.getClass() == m.posRot) {
+            return (Object) m.posRotCtor.invokeExact(id, (short) dx, (short) dy, (short) dz,
+                (byte) m.yRot.invokeExact(move), (byte) m.xRot.invokeExact(move), ground);
+        }
+        return (Object) m.posCtor.invokeExact(id, (short) dx, (short) dy, (short) dz, ground);
+    }
+
+    @Override
+    public Object identity(Object packet) {
+        return packet;
+    }
+
+    private static @Nullable Class<?> optionalClass(ClassLoader cl, String simpleName) {
+        try {
+            return Class.forName(GAME + simpleName, false, cl);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    // No-arg method or (private) field by any of the names, from owner up, returning type (or a subtype
+    // of it), adapted to (Object)type
+    private static MethodHandle getter(Class<?> owner, Class<?> type, String... names) throws ReflectiveOperationException {
+        MethodType adapted = MethodType.methodType(type, Object.class);
+        for (String n : names) {
+            for (Class<?> c = owner; c != null && c != Object.class; c = c.getSuperclass()) {
+                var lookup = MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+                try {
+                    var m = c.getDeclaredMethod(n);
+                    if (!java.lang.reflect.Modifier.isStatic(m.getModifiers()) && fits(m.getReturnType(), type)) {
+                        return lookup.unreflect(m).asType(adapted);
+                    }
+                } catch (NoSuchMethodException ignored) {}
+                try {
+                    var f = c.getDeclaredField(n);
+                    if (!java.lang.reflect.Modifier.isStatic(f.getModifiers()) && fits(f.getType(), type)) {
+                        return lookup.unreflectGetter(f).asType(adapted);
+                    }
+                } catch (NoSuchFieldException ignored) {}
+            }
+        }
+        throw new NoSuchFieldException(owner.getName() + "." + String.join("|", names));
+    }
+
+    private static boolean fits(Class<?> actual, Class<?> wanted) {
+        return wanted.isPrimitive() ? actual == wanted : wanted.isAssignableFrom(actual);
+    }
+
+    private static @Nullable MethodHandle optionalGetter(Class<?> owner, Class<?> type, String... names) {
+        try {
+            return getter(owner, type, names);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // First instance field of (a subtype of) type, from owner up; found by type so field names do not matter
+    private static MethodHandle fieldOfType(Class<?> owner, Class<?> type) throws ReflectiveOperationException {
+        for (Class<?> c = owner; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (var f : c.getDeclaredFields()) {
+                if (!java.lang.reflect.Modifier.isStatic(f.getModifiers()) && type.isAssignableFrom(f.getType())) {
+                    return MethodHandles.privateLookupIn(c, MethodHandles.lookup()).unreflectGetter(f).asType(GETTER);
+                }
+            }
+        }
+        throw new NoSuchFieldException(owner.getName() + " has no " + type.getName() + " field");
+    }
+}
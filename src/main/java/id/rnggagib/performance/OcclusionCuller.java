@@ -0,0 +1,139 @@
+package id.rnggagib.performance;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Voxel occlusion stage for culling. On the main thread it keeps {@link ChunkSnapshot}s of chunks
+ * around each viewer (a per-cycle capture budget, refreshed after a few cycles); off-thread it walks
+ * the voxels between a viewer's eye and an entity (3D DDA) and reports the entity occluded when
+ * opaque blocks block every sample ray. Missing terrain never occludes.
+ */
+final class OcclusionCuller {
+    static final double EYE_HEIGHT = 1.62;
+
+    // Material ordinal -> fully occluding block; built once on the main thread
+    private final boolean[] occluding;
+
+    private int chunkRadius;
+    private double minDistance;
+    private int snapshotsPerCycle;
+    private int refreshCycles;
+
+    private java.util.Map<java.util.UUID, ChunkSnapshotCache> caches = new java.util.HashMap<>();
+    private int cycle;
+    private int budget;
+    private int capturedLastCycle;
+
+    OcclusionCuller() {
+        Material[] all = Material.values();
+        occluding = new boolean[all.length];
+        for (Material m : all) {
+            try {
+                occluding[m.ordinal()] = m.isBlock() && m.isOccluding();
+            } catch (Throwable ignored) {}
+        }
+    }
+
+    void loadFromConfig(ConfigurationSection cfg) {
+        chunkRadius = Math.max(1, Math.min(8, cfg.getInt("features.culling.occlusion.chunk-radius", 3)));
+        minDistance = Math.max(0.0, cfg.getDouble("features.culling.occlusion.min-distance", 8.0));
+        snapshotsPerCycle = Math.max(1, cfg.getInt("features.culling.occlusion.snapshots-per-cycle", 16));
+        refreshCycles = Math.max(1, cfg.getInt("features.culling.occlusion.refresh-cycles", 5));
+        caches = new java.util.HashMap<>();
+        budget = snapshotsPerCycle;
+    }
+
+    double minDistance() { return minDistance; }
+    int refreshCycles() { return refreshCycles; }
+    int capturedLastCycle() { return capturedLastCycle; }
+    int cachedChunks() {
+        int n = 0;
+        for (var c : caches.values()) n += c.size();
+        return n;
+    }
+
+    /** Drops every cached chunk; used when an abandoned compute may still be reading them. */
+    void invalidate() {
+        caches = new java.util.HashMap<>();
+    }
+
+    void beginCycle() {
+        cycle++;
+        capturedLastCycle = snapshotsPerCycle - budget;
+        budget = snapshotsPerCycle;
+        // Worlds that no longer have viewers in scope release their snapshots
+        caches.values().removeIf(c -> { c.evictUnwanted(cycle - 2); return c.size() == 0; });
+    }
+
+    /**
+     * Main thread: makes sure chunks around viewers [from, to) of {@code snap} are cached. Missing
+     * chunks are captured first, then stale ones, nearest rings first, within the cycle budget.
+     */
+    ChunkSnapshotCache capture(World world, CullingSnapshot snap, int from, int to) {
+        var cache = caches.computeIfAbsent(world.getUID(), id -> new ChunkSnapshotCache(world.getMinHeight(), world.getMaxHeight()));
+        for (int pass = 0; pass < 2; pass++) {
+            for (int v = from; v < to; v++) {
+                int pcx = (int) Math.floor(snap.vx[v]) >> 4;
+                int pcz = (int) Math.floor(snap.vz[v]) >> 4;
+                for (int d = 0; d <= chunkRadius; d++) {
+                    for (int cx = pcx - d; cx <= pcx + d; cx++) {
+                        for (int cz = pcz - d; cz <= pcz + d; cz++) {
+                            if (Math.max(Math.abs(cx - pcx), Math.abs(cz - pcz)) != d) continue;
+                            int at = cache.touch(cx, cz, cycle);
+                            boolean take = pass == 0 ? at < 0 : at >= 0 && cycle - at >= refreshCycles;
+                            if (!take || budget <= 0) continue;
+                            if (!world.isChunkLoaded(cx, cz)) continue;
+                            cache.put(cx, cz, world.getChunkAt(cx, cz).getChunkSnapshot(false, false, false), cycle);
+                            budget--;
+                        }
+                    }
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Any thread: true when opaque blocks lie between the eye at (x0, y0, z0) and both sample points
+     * of the entity (near its feet and at {@code height}). Only reads the immutable chunk snapshots.
+     */
+    boolean occluded(ChunkSnapshotCache cache, double x0, double y0, double z0, double x1, double y1, double z1, double height) {
+        return blocked(cache, x0, y0, z0, x1, y1 + Math.min(0.25, height * 0.5), z1)
+            && blocked(cache, x0, y0, z0, x1, y1 + Math.max(0.25, height - 0.1), z1);
+    }
+
+    private boolean blocked(ChunkSnapshotCache cache, double x0, double y0, double z0, double x1, double y1, double z1) {
+        int x = (int) Math.floor(x0), y = (int) Math.floor(y0), z = (int) Math.floor(z0);
+        int tx = (int) Math.floor(x1), ty = (int) Math.floor(y1), tz = (int) Math.floor(z1);
+        double dx = x1 - x0, dy = y1 - y0, dz = z1 - z0;
+        int sx = dx > 0 ? 1 : -1, sy = dy > 0 ? 1 : -1, sz = dz > 0 ? 1 : -1;
+        double tdx = dx != 0 ? Math.abs(1.0 / dx) : Double.MAX_VALUE;
+        double tdy = dy != 0 ? Math.abs(1.0 / dy) : Double.MAX_VALUE;
+        double tdz = dz != 0 ? Math.abs(1.0 / dz) : Double.MAX_VALUE;
+        double tmx = dx > 0 ? (x + 1 - x0) * tdx : dx < 0 ? (x0 - x) * tdx : Double.MAX_VALUE;
+        double tmy = dy > 0 ? (y + 1 - y0) * tdy : dy < 0 ? (y0 - y) * tdy : Double.MAX_VALUE;
+        double tmz = dz > 0 ? (z + 1 - z0) * tdz : dz < 0 ? (z0 - z) * tdz : Double.MAX_VALUE;
+        int steps = Math.abs(tx - x) + Math.abs(ty - y) + Math.abs(tz - z);
+        ChunkSnapshot chunk = null;
+        int ccx = Integer.MIN_VALUE, ccz = Integer.MIN_VALUE;
+        // The eye voxel and the entity's own voxel are never tested
+        for (int s = 1; s < steps; s++) {
+            if (tmx < tmy && tmx < tmz) { x += sx; tmx += tdx; }
+            else if (tmy < tmz) { y += sy; tmy += tdy; }
+            else { z += sz; tmz += tdz; }
+            if (x == tx && y == ty && z == tz) return false;
+            if (y < cache.minY || y >= cache.maxY) continue;
+            int cx = x >> 4, cz = z >> 4;
+            if (cx != ccx || cz != ccz) {
+                chunk = cache.get(cx, cz);
+                ccx = cx; ccz = cz;
+            }
+            if (chunk == null) return false;
+            if (occluding[chunk.getBlockType(x & 15, y, z & 15).ordinal()]) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package id.rnggagib.performance;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Transport under {@link PacketCullingReflectService}: the backend intercepts outgoing packets and asks
+ * the service's filters (spawn, particle, movement), and gives the service what it needs to send
+ * packets of its own later (budget resends, movement LOD flushes). Packets are opaque here: ProtocolLib
+ * containers or NMS packets.
+ */
+interface PacketBackend {
+    String name();
+
+    /** False when packets cannot be sent later; the budget and movement LOD then stay off. */
+    boolean canSend();
+
+    /** Sends a packet the service held back; it passes the filters once (see {@link #identity}). */
+    void send(Player viewer, Object packet) throws Throwable;
+
+    /** A copy safe to hold past the send (packets may be mutable or shared between viewers). */
+    Object copy(Object packet);
+
+    /** A relative move like {@code move} (same entity, rotation and ground flag) carrying these deltas. */
+    Object withDeltas(Object move, int dx, int dy, int dz) throws Throwable;
+
+    /** Identity the filters see for a packet sent through {@link #send}. */
+    Object identity(Object packet) throws Throwable;
+}
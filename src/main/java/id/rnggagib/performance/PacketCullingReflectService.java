@@ -2,6 +2,8 @@ package id.rnggagib.performance;
 
 import id.rnggagib.monitor.TickMonitor;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.slf4j.Logger;
@@ -13,9 +15,10 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 
 /**
- * Packet culling via ProtocolLib using reflection only (no compile-time dependency).
- * If ProtocolLib is present, we register a listener for SPAWN_ENTITY(_LIVING) and
- * cancel packets that are very likely culled for the receiver using the quick heuristic.
+ * Packet culling: cancels spawn packets that are very likely culled for the receiver using the quick
+ * heuristic, paces the rest with a per-player spawn budget, downsamples particles and applies the
+ * movement LOD. The policy lives here; a {@link PacketBackend} intercepts the packets: a Netty handler
+ * in each player's pipeline, or a ProtocolLib listener through reflection (no compile-time dependency).
  */
 public final class PacketCullingReflectService {
     private final Plugin plugin;
@@ -39,27 +42,55 @@ public final class PacketCullingReflectService {
     private int budgetDynamicSmoothingTicks;
     private double budgetDynamicSmoothed = -1.0;
     private volatile int budgetMaxPerTickEffective;
+    // Movement LOD: distance bands (blocks) and ticks between sends per band (one more entry)
+    private boolean lodEnabled;
+    private double[] lodDistances = {16.0, 48.0};
+    private int[] lodEveryTicks = {1, 4, 10};
+    private volatile @Nullable MovementLod lod;
+    // Deferred spawns: culled spawns re-evaluated on viewer pose changes and re-paired once visible
+    private boolean deferEnabled;
+    private int deferMaxPerPlayer;
+    private int deferRecheckTicks;
+    private double deferMoveBlocks;
+    private double deferTurnDegrees;
+    private long deferBudgetNanos;
+    private volatile @Nullable DeferredSpawns deferred;
+    // Main thread: viewers due for replay, taken in turn under deferBudgetNanos per tick; the entries
+    // of the one being worked off and the next to check
+    private final java.util.ArrayDeque<java.util.UUID> replayRound = new java.util.ArrayDeque<>();
+    private final java.util.Set<java.util.UUID> replayQueued = new java.util.HashSet<>();
+    private final java.util.ArrayList<DeferredSpawns.Entry> replayEntries = new java.util.ArrayList<>();
+    private @Nullable java.util.UUID replayViewer;
+    private int replayNext;
     // kept for future use if we decode entity type from packet
     // private Set<String> excludeTypes = Set.of("PLAYER", "ARMOR_STAND");
     private Object protocolManager; // com.comphenix.protocol.ProtocolManager
     private Object packetListener;  // com.comphenix.protocol.events.PacketListener (dynamic proxy)
-    private Method sendServerPacketMethod; // ProtocolManager#sendServerPacket(Player, PacketContainer)
-    private Class<?> packetContainerCls;
+    private String backendMode = "auto"; // auto | netty | protocollib
+    private volatile @Nullable PacketBackend backend;
+    private @Nullable NettyPacketBackend netty;
     private int drainTask = -1;
+    private final EntityFlagTracker flags; // entity id -> protected/NPC flags for the spawn path
+    // Packets we send ourselves (budget resends, LOD flushes) by backend identity; the filters let them
+    // through once. Lock-free: every outbound packet checks isEmpty() on its network thread
+    private final java.util.Set<Resent> resent = java.util.concurrent.ConcurrentHashMap.newKeySet();
 
-    // Budget state
-    private long tickNow = 0L;
-    private final java.util.Map<java.util.UUID, Integer> sentThisTick = new java.util.HashMap<>();
-    private final java.util.Map<java.util.UUID, java.util.ArrayDeque<Queued>> queuedByPlayer = new java.util.HashMap<>();
-    private static final class Queued {
-        final Object container; final long tick; final double dist;
-        Queued(Object c, long t, double d) { this.container = c; this.tick = t; this.dist = d; }
+    // Identity key: packets may define equals (records), but only the instance we sent may pass
+    private record Resent(Object packet) {
+        @Override public boolean equals(Object o) { return o instanceof Resent r && r.packet == packet; }
+        @Override public int hashCode() { return System.identityHashCode(packet); }
     }
 
+    // Budget state
+    private volatile long tickNow = 0L;
+    // Per-player spawn counters and held-back spawns; packet threads resolve their player's once
+    private final java.util.concurrent.ConcurrentHashMap<java.util.UUID, PlayerBudget> budgets = new java.util.concurrent.ConcurrentHashMap<>();
+
     public PacketCullingReflectService(Plugin plugin, Logger logger, CullingService culling) {
         this.plugin = plugin;
         this.logger = logger;
         this.culling = culling;
+        this.flags = new EntityFlagTracker(plugin, culling);
     }
 
     public void setTickMonitor(@Nullable TickMonitor tickMonitor) {
@@ -118,6 +149,7 @@ public final class PacketCullingReflectService {
     public void loadFromConfig() {
         var cfg = plugin.getConfig();
         enabled = cfg.getBoolean("features.packet-culling.enabled", false);
+        backendMode = cfg.getString("features.packet-culling.backend", "auto").toLowerCase(java.util.Locale.ROOT);
         // Budget
         budgetEnabled = cfg.getBoolean("features.packet-culling.budget.enabled", false);
         budgetBaseMaxPerTick = Math.max(1, cfg.getInt("features.packet-culling.budget.max-spawns-per-tick", 20));
@@ -140,6 +172,22 @@ public final class PacketCullingReflectService {
         }
         budgetDynamicSmoothed = -1.0;
         budgetMaxPerTickEffective = budgetBaseMaxPerTick;
+        lodEnabled = cfg.getBoolean("features.packet-culling.movement-lod.enabled", false);
+        var lodD = cfg.getDoubleList("features.packet-culling.movement-lod.distances");
+        var lodE = cfg.getIntegerList("features.packet-culling.movement-lod.every-ticks");
+        if (!lodD.isEmpty() && !lodE.isEmpty()) {
+            lodDistances = new double[lodD.size()];
+            for (int i = 0; i < lodDistances.length; i++) lodDistances[i] = lodD.get(i);
+            java.util.Arrays.sort(lodDistances);
+            lodEveryTicks = new int[lodE.size()];
+            for (int i = 0; i < lodEveryTicks.length; i++) lodEveryTicks[i] = lodE.get(i);
+        }
+        deferEnabled = cfg.getBoolean("features.packet-culling.deferred-spawns.enabled", true);
+        deferMaxPerPlayer = Math.max(16, cfg.getInt("features.packet-culling.deferred-spawns.max-per-player", 512));
+        deferRecheckTicks = Math.max(1, cfg.getInt("features.packet-culling.deferred-spawns.recheck-ticks", 10));
+        deferMoveBlocks = Math.max(0.0, cfg.getDouble("features.packet-culling.deferred-spawns.move-blocks", 2.0));
+        deferTurnDegrees = Math.max(0.0, cfg.getDouble("features.packet-culling.deferred-spawns.turn-degrees", 20.0));
+        deferBudgetNanos = Math.max(10L, cfg.getLong("features.packet-culling.deferred-spawns.budget-us", 200L)) * 1_000L;
         // Exclude types configurable for future packet type decoding; currently unused in reflection mode
     }
 
@@ -147,6 +195,28 @@ public final class PacketCullingReflectService {
         stop();
         if (!enabled) { logger.info("Packet culling disabled"); return; }
 
+        // Netty pipeline first (no ProtocolLib needed, no per-packet proxy); ProtocolLib when NMS does not resolve
+        if (!backendMode.equals("protocollib")) {
+            try {
+                var n = NettyPacketBackend.resolve(plugin, logger, this);
+                netty = n;
+                backend = n;
+                startShared(n.supportsMovement());
+                n.start();
+                logger.info("Packet culling enabled (Netty pipeline){}{}", budgetEnabled ? " with per-player budget" : "",
+                    lod != null ? " and movement LOD" : "");
+                return;
+            } catch (Throwable t) {
+                netty = null;
+                backend = null;
+                if (backendMode.equals("netty")) logger.warn("Netty packet backend unavailable; trying ProtocolLib", t);
+                else logger.info("Netty packet backend unavailable ({}); trying ProtocolLib", t.toString());
+            }
+        }
+        startProtocolLib();
+    }
+
+    private void startProtocolLib() {
         // Resolve ProtocolLib via PluginManager and use its classloader (plugin classloaders are isolated)
         ClassLoader plCl;
         try {
@@ -173,9 +243,7 @@ public final class PacketCullingReflectService {
             // optional classes may not exist across versions
             Class<?> listeningWhitelistCls = Class.forName("com.comphenix.protocol.events.ListeningWhitelist", false, cl);
             Class<?> packetListenerItf = Class.forName("com.comphenix.protocol.events.PacketListener", false, cl);
-            Class<?> packetEventCls = Class.forName("com.comphenix.protocol.events.PacketEvent", false, cl);
-            packetContainerCls = Class.forName("com.comphenix.protocol.events.PacketContainer", false, cl);
-            try { sendServerPacketMethod = protocolManager.getClass().getMethod("sendServerPacket", Player.class, packetContainerCls); } catch (Throwable ignored) {}
+            final ProtocolLibAccess pl = ProtocolLibAccess.resolve(cl, protocolManager);
 
             // Packet types: SPAWN_ENTITY and SPAWN_ENTITY_LIVING (if present)
             Object spawnEntity = packetTypePlayServerCls.getField("SPAWN_ENTITY").get(null);
@@ -193,6 +261,24 @@ public final class PacketCullingReflectService {
                 }
             }
 
+            // Movement LOD packet types (names as in ProtocolLib 5; missing ones are simply not handled)
+            final java.util.Map<Object, Integer> lodKinds = new java.util.HashMap<>();
+            final java.util.Set<Object> lodResets = new java.util.HashSet<>();
+            Object destroyType = null;
+            if (lodEnabled && pl.canSend()) {
+                String[] names = {"REL_ENTITY_MOVE", "REL_ENTITY_MOVE_LOOK", "ENTITY_LOOK", "ENTITY_HEAD_ROTATION", "ENTITY_VELOCITY"};
+                int[] kinds = {MovementLod.MOVE, MovementLod.MOVE_LOOK, MovementLod.LOOK, MovementLod.HEAD, MovementLod.VELOCITY};
+                for (int i = 0; i < names.length; i++) {
+                    try { lodKinds.put(packetTypePlayServerCls.getField(names[i]).get(null), kinds[i]); } catch (Throwable ignored) {}
+                }
+                for (String n : new String[]{"ENTITY_TELEPORT", "ENTITY_POSITION_SYNC"}) {
+                    try { lodResets.add(packetTypePlayServerCls.getField(n).get(null)); } catch (Throwable ignored) {}
+                }
+            }
+            if ((lodEnabled || budgetEnabled) && pl.canSend()) {
+                try { destroyType = packetTypePlayServerCls.getField("ENTITY_DESTROY").get(null); } catch (Throwable ignored) {}
+            }
+
             // Build ListeningWhitelist for sending packets using builder pattern
             // ListeningWhitelist.newBuilder().priority(ListenerPriority.NORMAL).types(PacketType...)
             Class<?> builderCls = Class.forName("com.comphenix.protocol.events.ListeningWhitelist$Builder", false, cl);
@@ -213,6 +299,10 @@ public final class PacketCullingReflectService {
                 if ((boolean) isSupported.invoke(spawnEntity)) supported.add(spawnEntity);
                 if (spawnLiving != null && (boolean) isSupported.invoke(spawnLiving)) supported.add(spawnLiving);
                 if (worldParticles != null && (boolean) isSupported.invoke(worldParticles)) supported.add(worldParticles);
+                for (Object t : lodKinds.keySet()) if ((boolean) isSupported.invoke(t)) supported.add(t);
+                for (Object t : lodResets) if ((boolean) isSupported.invoke(t)) supported.add(t);
+                // Destroys evict queued spawns (budget) and forget LOD state
+                if (destroyType != null && (budgetEnabled || !lodKinds.isEmpty()) && (boolean) isSupported.invoke(destroyType)) supported.add(destroyType);
             } catch (Throwable ignore) {
                 // If API lacks isSupported, fall back to SPAWN_ENTITY only
                 supported.clear();
@@ -232,8 +322,12 @@ public final class PacketCullingReflectService {
             bPriority.invoke(recvBuilder, priorityNormal);
             Object receivingWhitelist = bBuild.invoke(recvBuilder);
 
+            backend = pl;
+            startShared(!lodKinds.isEmpty());
+
             // Create dynamic proxy for PacketListener
             final Object worldParticlesFinal = worldParticles; // capture for inner
+            final Object destroyFinal = destroyType;
             packetListener = Proxy.newProxyInstance(cl, new Class[]{packetListenerItf}, new InvocationHandler() {
                 @Override
                 public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
@@ -246,124 +340,67 @@ public final class PacketCullingReflectService {
                             case "toString": return "GatotkacasPacketListenerProxy";
                         }
                     }
-                    if (name.equals("getPlugin")) return plugin;
-            if (name.equals("getPriority")) return priorityNormal;
-                    if (name.equals("getListeningWhitelist") || name.equals("getSendingWhitelist")) return sendingWhitelist;
-                    if (name.equals("getReceivingWhitelist")) return receivingWhitelist;
+                    // Hot path first: every listened packet comes through here
                     if (name.equals("onPacketSending")) {
                         Object packetEvent = args[0];
-                        // boolean isCancelled()
-                        boolean cancelled = (boolean) packetEventCls.getMethod("isCancelled").invoke(packetEvent);
-                        if (cancelled) return null;
-                        Player viewer = (Player) packetEventCls.getMethod("getPlayer").invoke(packetEvent);
-                        Object container = packetEventCls.getMethod("getPacket").invoke(packetEvent);
-                        Object ptype = packetEventCls.getMethod("getPacketType").invoke(packetEvent);
+                        if (pl.isCancelled(packetEvent)) return null;
+                        Object container = pl.packet(packetEvent);
+                        if (hasOwnResends() && isOwnResend(pl.identity(container))) return null;
+                        Player viewer = pl.player(packetEvent);
+                        Object ptype = pl.packetType(packetEvent);
+                        if (lod != null) {
+                            Integer kind = lodKinds.get(ptype);
+                            if (kind != null) {
+                                int[] delta = null;
+                                if (kind == MovementLod.MOVE || kind == MovementLod.MOVE_LOOK) {
+                                    delta = new int[3];
+                                    pl.readShorts3(container, delta);
+                                }
+                                Object out = filterMovement(viewer, pl.readInt(container, 0), kind, container, delta);
+                                if (out == null) pl.cancel(packetEvent);
+                                else if (out != container) pl.setPacket(packetEvent, out);
+                                return null;
+                            }
+                            if (lodResets.contains(ptype)) {
+                                try { onAbsolutePosition(viewer, pl.readInt(container, 0)); } catch (Throwable ignored) {}
+                                return null;
+                            }
+                        }
+                        if (ptype.equals(destroyFinal)) {
+                            try {
+                                var ids = pl.readIntList(container);
+                                if (ids != null) onDestroy(viewer, ids);
+                            } catch (Throwable ignored) {}
+                            return null;
+                        }
                         // Particle downsampling first
                         if (worldParticlesFinal != null && ptype.equals(worldParticlesFinal)) {
-                            int pct = 100;
-                            try { pct = ((id.rnggagib.Plugin) plugin).particlePercent(viewer); } catch (Throwable ignored) {}
-                            if (pct <= 0) { packetEventCls.getMethod("setCancelled", boolean.class).invoke(packetEvent, true); return null; }
-                            if (pct >= 100) return null;
-                            // sample by hash for stability: player + current tick
-                            int h = viewer.getUniqueId().hashCode() ^ (int) tickNow;
-                            h = (h ^ (h >>> 16)) & 0x7fffffff;
-                            int r = h % 100;
-                            if (r >= pct) { packetEventCls.getMethod("setCancelled", boolean.class).invoke(packetEvent, true); }
+                            if (dropParticle(viewer)) pl.cancel(packetEvent);
                             return null;
                         }
 
                         // Extract position doubles if present (indices differ by packet type, fallback safe reads)
                         double x = 0, y = 0, z = 0;
                         try {
-                            Object doubles = packetContainerCls.getMethod("getDoubles").invoke(container);
-                            // StructureModifier<Double> with method read(int)
-                            Class<?> smCls = doubles.getClass();
-                            x = ((Number) smCls.getMethod("read", int.class).invoke(doubles, 0)).doubleValue();
-                            y = ((Number) smCls.getMethod("read", int.class).invoke(doubles, 1)).doubleValue();
-                            z = ((Number) smCls.getMethod("read", int.class).invoke(doubles, 2)).doubleValue();
+                            double[] pos = new double[3];
+                            pl.readDoubles3(container, pos);
+                            x = pos[0]; y = pos[1]; z = pos[2];
                         } catch (Throwable ignore) { /* Some versions store locations differently; skip if not available */ }
-
-                        var vloc = viewer.getLocation();
-                        double dx = x - vloc.getX();
-                        double dy = y - vloc.getY();
-                        double dz = z - vloc.getZ();
-                        double distance = Math.sqrt(dx*dx + dy*dy + dz*dz);
-
-                        // Citizens NPC exemption: if the target entity at this location has metadata "NPC", skip culling.
+                        int entityId = -1;
+                        EntityType type = null;
+                        java.util.UUID uuid = null;
                         try {
-                            org.bukkit.World w = viewer.getWorld();
-                            // Search small radius for an entity with metadata NPC near the spawn position
-                            for (org.bukkit.entity.Entity nearby : w.getNearbyEntities(new org.bukkit.Location(w, x, y, z), 0.75, 0.75, 0.75)) {
-                                if (nearby.hasMetadata("NPC")) {
-                                    java.util.List<org.bukkit.metadata.MetadataValue> mv = nearby.getMetadata("NPC");
-                                    boolean npc = false; for (var m : mv) { if (m != null && m.asBoolean()) { npc = true; break; } }
-                                    if (npc) { return null; }
-                                }
-                                if (culling.isProtectedEntity(nearby)) {
-                                    return null;
-                                }
-                            }
+                            entityId = pl.readInt(container, 0);
+                            if (flags.flags(entityId) == 0) type = pl.readEntityType(container);
+                            if (deferred != null) uuid = pl.readUuid(container);
                         } catch (Throwable ignored) {}
-                        var dir = new org.bukkit.util.Vector(dx, dy, dz);
-                        if (dir.lengthSquared() > 1e-9) dir.normalize();
-                        var view = vloc.getDirection().normalize();
-                        double cos = view.dot(dir);
-                        double speed = 0.0;
-
-                        // Build a compact key: 24 bits per coord after quantization + 16 bits of viewer hash
-                        boolean shouldCull = culling.quickShouldCull(distance, speed, cos);
-
-                        // Budget check (applies only when we can re-send later)
-                        if (budgetEnabled && sendServerPacketMethod != null && !shouldCull) {
-                            int limit = budgetMaxPerTickEffective;
-                            if (limit < 1) limit = 1;
-                            if (distance > budgetAlwaysSendWithin) {
-                                java.util.UUID pid = viewer.getUniqueId();
-                                int used; synchronized (sentThisTick) { used = sentThisTick.getOrDefault(pid, 0); }
-                                if (used >= limit) {
-                                    boolean queued = false;
-                                    synchronized (queuedByPlayer) {
-                                        var dq = queuedByPlayer.computeIfAbsent(pid, k -> new java.util.ArrayDeque<Queued>());
-                                        if (dq.size() < budgetQueueCap) {
-                                            Object copy = container;
-                                            try {
-                                                Method deepClone = packetContainerCls.getMethod("deepClone");
-                                                copy = deepClone.invoke(container);
-                                            } catch (Throwable __) {
-                                                try { Method shallow = packetContainerCls.getMethod("shallowClone"); copy = shallow.invoke(container); } catch (Throwable ___) { /* fallback to same ref */ }
-                                            }
-                                            dq.addLast(new Queued(copy, tickNow, distance));
-                                            queued = true;
-                                        }
-                                    }
-                                    if (queued) {
-                                        packetEventCls.getMethod("setCancelled", boolean.class).invoke(packetEvent, true);
-                                        return null;
-                                    }
-                                    int next = used + 1;
-                                    if (next > limit) next = limit;
-                                    synchronized (sentThisTick) { sentThisTick.put(pid, next); }
-                                } else {
-                                    int next = used + 1;
-                                    if (next > limit) next = limit;
-                                    synchronized (sentThisTick) { sentThisTick.put(pid, next); }
-                                }
-                            } else {
-                                // within always-send range: bypass budget but still count a bit to avoid abuse
-                                java.util.UUID pid = viewer.getUniqueId();
-                                int used; synchronized (sentThisTick) { used = sentThisTick.getOrDefault(pid, 0); }
-                                int next = used + 1;
-                                if (next > limit) next = limit;
-                                synchronized (sentThisTick) { sentThisTick.put(pid, next); }
-                            }
-                        }
-
-                        if (shouldCull) {
-                            // event.setCancelled(true)
-                            packetEventCls.getMethod("setCancelled", boolean.class).invoke(packetEvent, true);
-                        }
+                        if (filterSpawn(viewer, budget(viewer), entityId, uuid, type, x, y, z, container)) pl.cancel(packetEvent);
                         return null;
                     }
+                    if (name.equals("getPlugin")) return plugin;
+                    if (name.equals("getPriority")) return priorityNormal;
+                    if (name.equals("getListeningWhitelist") || name.equals("getSendingWhitelist")) return sendingWhitelist;
+                    if (name.equals("getReceivingWhitelist")) return receivingWhitelist;
                     // Ignore other methods: onPacketReceiving, onTick, onAdd, onRemove
                     return null;
                 }
@@ -372,57 +409,55 @@ public final class PacketCullingReflectService {
             // protocolManager.addPacketListener(PacketListener)
             Method add = protocolManager.getClass().getMethod("addPacketListener", packetListener.getClass().getInterfaces()[0]);
             add.invoke(protocolManager, packetListener);
-            logger.info("Packet culling enabled ({} packet type(s)){}", java.lang.Integer.valueOf(supported.size()), budgetEnabled ? " with per-player budget" : "");
-
-            // Tick task to advance time and drain queues
-            recalcEffectiveBudget();
-            drainTask = org.bukkit.Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, () -> {
-                tickNow++;
-                recalcEffectiveBudget();
-                // Reset counters each tick
-                synchronized (sentThisTick) { sentThisTick.clear(); }
-                if (!budgetEnabled || sendServerPacketMethod == null) return;
-                synchronized (queuedByPlayer) {
-                    for (var entry : new java.util.ArrayList<>(queuedByPlayer.entrySet())) {
-                        java.util.UUID pid = entry.getKey();
-                        var dq = entry.getValue();
-                        Player p = org.bukkit.Bukkit.getPlayer(pid);
-                        if (p == null || !p.isOnline()) { dq.clear(); continue; }
-                        if (budgetQueueTtlTicks > 0 && !dq.isEmpty()) {
-                            var iter = dq.iterator();
-                            while (iter.hasNext()) {
-                                Queued q = iter.next();
-                                if ((tickNow - q.tick) > budgetQueueTtlTicks) {
-                                    iter.remove();
-                                    try { sendServerPacketMethod.invoke(protocolManager, p, q.container); } catch (Throwable ignored) {}
-                                }
-                            }
-                        }
-                        if (dq.isEmpty()) { queuedByPlayer.remove(pid); continue; }
-                        int sent = 0;
-                        int limit = budgetMaxPerTickEffective;
-                        if (limit < 1) limit = 1;
-                        while (!dq.isEmpty() && sent < limit) {
-                            Queued best = null;
-                            for (Queued q : dq) { if (best == null || q.dist < best.dist) { best = q; } }
-                            if (best == null) break;
-                            boolean removed = dq.remove(best);
-                            if (!removed) {
-                                best = dq.pollFirst();
-                                if (best == null) break;
-                            }
-                            try { sendServerPacketMethod.invoke(protocolManager, p, best.container); } catch (Throwable ignored) {}
-                            sent++;
-                        }
-                        if (dq.isEmpty()) queuedByPlayer.remove(pid);
-                    }
-                }
-            }, 1L, 1L);
+            logger.info("Packet culling enabled ({} packet type(s)){}{}", java.lang.Integer.valueOf(supported.size()), budgetEnabled ? " with per-player budget" : "",
+                lod != null ? " and movement LOD" : "");
         } catch (Throwable t) {
             logger.warn("Failed to enable packet culling via reflection", t);
         }
     }
 
+    // Backend-independent state: entity flags, movement LOD, and the tick task that advances time,
+    // drains budget queues and flushes the LOD
+    private void startShared(boolean movementSupported) {
+        flags.start();
+        var b = backend;
+        if (lodEnabled && (!movementSupported || b == null || !b.canSend())) {
+            logger.warn("Movement LOD is not supported by the {} packet backend; disabled", b != null ? b.name() : "current");
+        }
+        lod = lodEnabled && movementSupported && b != null && b.canSend() ? new MovementLod(lodDistances, lodEveryTicks) : null;
+        if (lod != null) culling.setEntityIndexEnabled(true);
+        deferred = deferEnabled ? new DeferredSpawns(deferMaxPerPlayer, deferMoveBlocks, deferTurnDegrees, deferRecheckTicks) : null;
+
+        // Tick task to advance time and drain queues
+        recalcEffectiveBudget();
+        drainTask = org.bukkit.Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, () -> {
+            tickNow++;
+            recalcEffectiveBudget(); // counters of the previous tick are stale by their tick, no reset
+            if (tickNow % 100 == 0 && resent.size() > 4096) resent.clear(); // sends that never reached the filters
+            if (lod != null) flushMovementLod(lod, b);
+            if (deferred != null) replayDeferred(deferred);
+            if (!budgetEnabled || b == null || !b.canSend()) {
+                // Nothing to drain; still drop the state of players who left
+                if (tickNow % 100 == 0) budgets.values().removeIf(pb -> org.bukkit.Bukkit.getPlayer(pb.playerId) == null);
+                return;
+            }
+            int limit = budgetMaxPerTickEffective;
+            if (limit < 1) limit = 1;
+            // Overdue spawns go out regardless of the budget, oldest first
+            long minTick = budgetQueueTtlTicks > 0 ? tickNow - budgetQueueTtlTicks : Long.MIN_VALUE;
+            var due = new java.util.ArrayList<Object>();
+            for (var it = budgets.values().iterator(); it.hasNext(); ) {
+                PlayerBudget pb = it.next();
+                Player p = org.bukkit.Bukkit.getPlayer(pb.playerId);
+                if (p == null || !p.isOnline()) { it.remove(); continue; }
+                if (pb.isIdle()) continue;
+                pb.drain(minTick, limit, due);
+                for (Object packet : due) resend(b, p, packet);
+                due.clear();
+            }
+        }, 1L, 1L);
+    }
+
     public void stop() {
         if (protocolManager != null && packetListener != null) {
             try {
@@ -431,7 +466,254 @@ public final class PacketCullingReflectService {
             } catch (Throwable ignored) { }
             packetListener = null;
         }
+        if (netty != null) {
+            netty.stop();
+            netty = null;
+        }
+        backend = null;
         if (drainTask != -1) { org.bukkit.Bukkit.getScheduler().cancelTask(drainTask); drainTask = -1; }
-        queuedByPlayer.clear(); sentThisTick.clear();
+        budgets.clear();
+        if (deferred != null) { deferred.clear(); deferred = null; }
+        clearReplay();
+        if (lod != null) {
+            lod = null;
+            culling.setEntityIndexEnabled(false);
+        }
+        resent.clear();
+        flags.stop();
+    }
+
+    /** Active packet backend ("netty" or "ProtocolLib"), or null when packet culling is not running. */
+    public @Nullable String backendName() {
+        var b = backend;
+        return b != null ? b.name() : null;
+    }
+
+    /** Movement LOD counters {dropped, merged into a passing move, flushed}, or null when LOD is off. */
+    public long @Nullable [] movementLodStats() {
+        var l = lod;
+        return l != null ? l.stats() : null;
+    }
+
+    /** Deferred spawn counters {deferred, replayed, held now}, or null when deferral is off. */
+    public long @Nullable [] deferredSpawnStats() {
+        var d = deferred;
+        return d != null ? d.stats() : null;
+    }
+
+    // ---- Filters shared by the backends; called on network threads ----
+
+    boolean hasOwnResends() {
+        return !resent.isEmpty();
+    }
+
+    /** True once for a packet we sent ourselves (budget resend, LOD flush): it passes untouched. */
+    boolean isOwnResend(Object identity) {
+        return resent.remove(new Resent(identity));
+    }
+
+    boolean isMovementLodActive() {
+        return lod != null;
+    }
+
+    /** Particle downsampling by the viewer's /plimit percentage; true drops the packet. */
+    boolean dropParticle(Player viewer) {
+        int pct = 100;
+        try { pct = ((id.rnggagib.Plugin) plugin).particlePercent(viewer); } catch (Throwable ignored) {}
+        if (pct <= 0) return true;
+        if (pct >= 100) return false;
+        // sample by hash for stability: player + current tick
+        int h = viewer.getUniqueId().hashCode() ^ (int) tickNow;
+        h = (h ^ (h >>> 16)) & 0x7fffffff;
+        int r = h % 100;
+        return r >= pct;
+    }
+
+    /**
+     * Spawn of {@code entityId} at (x, y, z) for {@code viewer}: true when the packet must not go out now,
+     * because it is culled or because the spawn budget queued {@code packet} for a later tick. A culled
+     * spawn is deferred when the entity's {@code uuid} is known, so it can be replayed once visible.
+     * {@code type} is only needed for entities the flag tracker has not indexed yet.
+     */
+    boolean filterSpawn(Player viewer, PlayerBudget budget, int entityId, @Nullable java.util.UUID uuid, @Nullable EntityType type,
+                        double x, double y, double z, Object packet) {
+        var l = lod;
+        if (l != null) l.reset(viewer.getUniqueId(), entityId, tickNow); // absolute position sent
+        // Citizens NPCs and protected entities are never culled: resolved by the spawned entity's id,
+        // falling back to its type for ids the tracker has not seen yet (no world access here)
+        if (flags.isExempt(entityId, type)) return false;
+
+        var vloc = viewer.getLocation();
+        double dx = x - vloc.getX();
+        double dy = y - vloc.getY();
+        double dz = z - vloc.getZ();
+        double distance = Math.sqrt(dx*dx + dy*dy + dz*dz);
+        boolean shouldCull = cullsSpawn(vloc, dx, dy, dz, distance);
+
+        var d = deferred;
+        if (d != null && entityId >= 0) {
+            // Remembered to be re-paired later; when the store is full the spawn goes out instead of being lost.
+            // Players are never deferred: re-pairing a player drops and re-adds it in the viewer's tab list
+            int f = flags.flags(entityId);
+            EntityType known = f != 0 ? EntityFlagTracker.type(f) : type;
+            if (!shouldCull) d.forget(viewer.getUniqueId(), entityId);
+            else if (known == EntityType.PLAYER) shouldCull = false;
+            else if (uuid != null && !d.defer(viewer.getUniqueId(), entityId, uuid)) shouldCull = false;
+        }
+
+        // Budget check (applies only when we can re-send later)
+        var b = backend;
+        if (budgetEnabled && b != null && b.canSend() && !shouldCull) {
+            int limit = budgetMaxPerTickEffective;
+            if (limit < 1) limit = 1;
+            // Within always-send range the spawn bypasses the budget but still counts against it
+            boolean counted = budget.tryCount(tickNow, limit);
+            // A newer spawn of an entity already held back replaces it (no duplicate spawn later)
+            if (!counted && distance > budgetAlwaysSendWithin
+                && budget.offer(entityId, b.copy(packet), distance, tickNow, budgetQueueCap)) return true;
+        }
+        return shouldCull;
+    }
+
+    // The spawn-cull test for an entity at (dx, dy, dz) from the viewer; spawn packets carry no speed
+    private boolean cullsSpawn(org.bukkit.Location vloc, double dx, double dy, double dz, double distance) {
+        var dir = new org.bukkit.util.Vector(dx, dy, dz);
+        if (dir.lengthSquared() > 1e-9) dir.normalize();
+        var view = vloc.getDirection().normalize();
+        double cos = view.dot(dir);
+        double speed = 0.0;
+        return culling.quickShouldCull(distance, speed, cos);
+    }
+
+    /**
+     * Movement packet through the LOD by the viewer's distance band: the packet itself, a replacement
+     * carrying merged deltas, or null to drop it. {@code delta} holds a relative move's deltas (else null).
+     */
+    @Nullable Object filterMovement(Player viewer, int entityId, int kind, Object packet, int[] delta) throws Throwable {
+        var l = lod;
+        var b = backend;
+        if (l == null || b == null) return packet;
+        var index = culling.entityIndex();
+        double d2 = index != null ? index.distanceSquared(viewer.getEntityId(), entityId) : -1.0;
+        return switch (l.decide(viewer.getUniqueId(), entityId, kind, packet, delta, tickNow, d2)) {
+            case MovementLod.DROP -> null;
+            // The packet may be shared with other viewers: rewrite a copy
+            case MovementLod.REWRITE -> b.withDeltas(packet, delta[0], delta[1], delta[2]);
+            default -> packet;
+        };
+    }
+
+    /** The viewer was sent an absolute position for the entity (teleport, position sync). */
+    void onAbsolutePosition(Player viewer, int entityId) {
+        var l = lod;
+        if (l != null) l.reset(viewer.getUniqueId(), entityId, tickNow);
+    }
+
+    /** Entities destroyed for the viewer; {@code ids} holds Integers. Evicts their queued spawns. */
+    void onDestroy(Player viewer, Iterable<?> ids) {
+        java.util.UUID pid = viewer.getUniqueId();
+        var l = lod;
+        if (l != null) {
+            for (Object id : ids) l.forget(pid, ((Number) id).intValue());
+        }
+        var d = deferred;
+        if (d != null) {
+            for (Object id : ids) d.forget(pid, ((Number) id).intValue());
+        }
+        PlayerBudget pb = budgetEnabled ? budgets.get(pid) : null;
+        if (pb != null) pb.evict(ids);
+    }
+
+    /** The viewer's budget state; packet threads resolve it once per connection where they can. */
+    PlayerBudget budget(Player viewer) {
+        java.util.UUID pid = viewer.getUniqueId();
+        PlayerBudget pb = budgets.get(pid);
+        return pb != null ? pb : budgets.computeIfAbsent(pid, PlayerBudget::new);
+    }
+
+    // Main thread: sends a held-back packet so that the filters let it through
+    private void resend(PacketBackend b, Player p, Object packet) {
+        try {
+            resent.add(new Resent(b.identity(packet)));
+            b.send(p, packet);
+        } catch (Throwable ignored) {}
+    }
+
+    // Main thread: re-evaluates deferred spawns of viewers that moved or turned (or every few ticks) and
+    // re-pairs entities now visible through the tracker, so the client gets the spawn with current
+    // position and metadata. Hide then show is a no-op for the server's view when nothing else hid it.
+    // Due viewers queue up and are worked off in turn within deferBudgetNanos, resuming next tick.
+    private void replayDeferred(DeferredSpawns d) {
+        for (java.util.UUID vid : d.viewerIds()) {
+            if (replayQueued.contains(vid)) continue;
+            Player p = Bukkit.getPlayer(vid);
+            if (p == null) { d.forgetViewer(vid); continue; }
+            if (d.due(vid, p.getLocation(), tickNow)) {
+                replayQueued.add(vid);
+                replayRound.add(vid);
+            }
+        }
+        long start = System.nanoTime();
+        int checked = 0;
+        Player p = null;
+        org.bukkit.Location pose = null;
+        while (true) {
+            if (replayNext >= replayEntries.size()) {
+                replayEntries.clear();
+                replayNext = 0;
+                replayViewer = replayRound.poll();
+                if (replayViewer == null) return;
+                replayQueued.remove(replayViewer);
+                d.entries(replayViewer, replayEntries);
+                p = null;
+                continue;
+            }
+            if (++checked % 16 == 0 && System.nanoTime() - start >= deferBudgetNanos) return;
+            if (p == null) {
+                p = Bukkit.getPlayer(replayViewer);
+                if (p == null) { replayNext = replayEntries.size(); continue; }
+                pose = p.getLocation();
+            }
+            var en = replayEntries.get(replayNext++);
+            if (!d.holds(replayViewer, en)) continue; // sent or destroyed since it was listed
+            Entity e = Bukkit.getEntity(en.entity());
+            // Players are not re-paired (tab list churn); filterSpawn does not defer them either
+            if (e == null || !e.isValid() || e.getWorld() != p.getWorld() || e instanceof Player) { d.remove(replayViewer, en, false); continue; }
+            var at = e.getLocation();
+            double dx = at.getX() - pose.getX(), dy = at.getY() - pose.getY(), dz = at.getZ() - pose.getZ();
+            if (cullsSpawn(pose, dx, dy, dz, Math.sqrt(dx*dx + dy*dy + dz*dz))) continue;
+            // Hidden by someone (e.g. culling): showing it later pairs it anyway
+            boolean replay = p.canSee(e);
+            d.remove(replayViewer, en, replay);
+            if (!replay) continue;
+            p.hideEntity(plugin, e);
+            p.showEntity(plugin, e);
+        }
+    }
+
+    private void clearReplay() {
+        replayRound.clear();
+        replayQueued.clear();
+        replayEntries.clear();
+        replayViewer = null;
+        replayNext = 0;
+    }
+
+    // Main thread: send what the LOD is due to flush (summed moves on a copy of the latest dropped move)
+    private void flushMovementLod(MovementLod l, @Nullable PacketBackend b) {
+        if (b == null) return;
+        var due = new java.util.ArrayList<MovementLod.Flush>();
+        l.flush(tickNow, due);
+        if (tickNow % 100 == 0) {
+            for (var id : l.viewerIds()) if (Bukkit.getPlayer(id) == null) l.forgetViewer(id);
+        }
+        for (var f : due) {
+            Player p = Bukkit.getPlayer(f.viewer());
+            if (p == null) continue;
+            try {
+                Object packet = f.move() ? b.withDeltas(f.packet(), f.dx(), f.dy(), f.dz()) : f.packet();
+                resend(b, p, packet);
+            } catch (Throwable ignored) {}
+        }
     }
 }
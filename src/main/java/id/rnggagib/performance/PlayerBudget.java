@@ -0,0 +1,83 @@
+package id.rnggagib.performance;
+
+/**
+ * One player's spawn budget, shared by the packet threads that send to the player and the main
+ * thread that drains it, without locks. The spawns counted this tick live in one atomic word next
+ * to the tick they belong to, so a new tick starts from zero without anyone clearing it. Spawns held
+ * back and destroys of their entities go through a lock-free multi-producer inbox; only the main
+ * thread moves them into the {@link SpawnQueue} and sends from it.
+ */
+final class PlayerBudget {
+    private record Offer(int entityId, Object packet, double distance, long tick) {}
+    private record Evict(int[] entityIds) {}
+
+    final java.util.UUID playerId;
+    // (tick << 32) | spawns sent in that tick
+    private final java.util.concurrent.atomic.AtomicLong counter = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.ConcurrentLinkedQueue<Object> inbox = new java.util.concurrent.ConcurrentLinkedQueue<>();
+    // Offers in the inbox plus spawns in the queue; reserved before an offer so the cap holds across threads
+    private final java.util.concurrent.atomic.AtomicInteger held = new java.util.concurrent.atomic.AtomicInteger();
+    private final SpawnQueue queue = new SpawnQueue(); // main thread only
+
+    PlayerBudget(java.util.UUID playerId) {
+        this.playerId = playerId;
+    }
+
+    /** Counts a spawn sent in {@code tick}; false (and not counted) when {@code limit} was already reached. Any thread. */
+    boolean tryCount(long tick, int limit) {
+        int epoch = (int) tick;
+        while (true) {
+            long cur = counter.get();
+            int used = (int) (cur >>> 32) == epoch ? (int) cur : 0;
+            if (used >= limit) return false;
+            if (counter.compareAndSet(cur, ((long) epoch << 32) | (used + 1))) return true;
+        }
+    }
+
+    /** Holds a spawn back for a later tick; false when {@code cap} spawns are already held. Any thread. */
+    boolean offer(int entityId, Object packet, double distance, long tick, int cap) {
+        while (true) {
+            int h = held.get();
+            if (h >= cap) return false;
+            if (held.compareAndSet(h, h + 1)) break;
+        }
+        inbox.add(new Offer(entityId, packet, distance, tick));
+        return true;
+    }
+
+    /** Entities destroyed for the player: their held spawns must not go out. {@code ids} holds Integers. Any thread. */
+    void evict(Iterable<?> ids) {
+        if (held.get() == 0) return;
+        var list = new java.util.ArrayList<Integer>();
+        for (Object id : ids) list.add(((Number) id).intValue());
+        int[] a = new int[list.size()];
+        for (int i = 0; i < a.length; i++) a[i] = list.get(i);
+        inbox.add(new Evict(a));
+    }
+
+    boolean isIdle() {
+        return held.get() == 0;
+    }
+
+    /**
+     * Main thread: takes in the inbox, then moves spawns held since before {@code minTick} and up to
+     * {@code limit} more (nearest first) into {@code out} for sending.
+     */
+    void drain(long minTick, int limit, java.util.List<Object> out) {
+        int before = queue.size();
+        int offers = 0;
+        Object m;
+        while ((m = inbox.poll()) != null) {
+            if (m instanceof Offer o) {
+                offers++;
+                queue.offer(o.entityId(), o.packet(), o.distance(), o.tick(), Integer.MAX_VALUE);
+            } else {
+                for (int id : ((Evict) m).entityIds()) queue.remove(id);
+            }
+        }
+        queue.expire(minTick, out);
+        for (int sent = 0; sent < limit && !queue.isEmpty(); sent++) out.add(queue.poll());
+        // Each offer reserved one; the queue accounts for replacements, evictions and sends
+        held.addAndGet(queue.size() - before - offers);
+    }
+}
@@ -0,0 +1,202 @@
+package id.rnggagib.performance;
+
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * ProtocolLib accessors used on the packet path, resolved once into {@link MethodHandle}s adapted to
+ * erased signatures ({@code Object} receivers), so the listener calls them with {@code invokeExact}:
+ * no reflective lookup, no argument arrays and no boxing of our own arguments per packet. Values
+ * ProtocolLib itself boxes (StructureModifier fields) are still unboxed here.
+ *
+ * <p>Resolved against ProtocolLib's classloader; there is no compile-time dependency.
+ */
+final class ProtocolLibAccess implements PacketBackend {
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    // PacketEvent
+    private final MethodHandle isCancelled, setCancelled, getPlayer, getPacket, getPacketType, setPacket;
+    // PacketContainer
+    private final MethodHandle getIntegers, getShorts, getDoubles, getHandle, deepClone;
+    private final @Nullable MethodHandle getIntLists, shallowClone, getEntityTypes, getUuids;
+    // StructureModifier
+    private final MethodHandle read, write;
+    // ProtocolManager#sendServerPacket(Player, PacketContainer), bound to the manager; optional
+    private final @Nullable MethodHandle send;
+
+    private ProtocolLibAccess(ClassLoader cl, Object protocolManager) throws ReflectiveOperationException {
+        var lookup = MethodHandles.publicLookup();
+        Class<?> event = Class.forName("com.comphenix.protocol.events.PacketEvent", false, cl);
+        Class<?> container = Class.forName("com.comphenix.protocol.events.PacketContainer", false, cl);
+        Class<?> modifier = Class.forName("com.comphenix.protocol.reflect.StructureModifier", false, cl);
+        Class<?> packetType = Class.forName("com.comphenix.protocol.PacketType", false, cl);
+
+        isCancelled = lookup.findVirtual(event, "isCancelled", MethodType.methodType(boolean.class))
+            .asType(MethodType.methodType(boolean.class, Object.class));
+        setCancelled = lookup.findVirtual(event, "setCancelled", MethodType.methodType(void.class, boolean.class))
+            .asType(MethodType.methodType(void.class, Object.class, boolean.class));
+        getPlayer = lookup.findVirtual(event, "getPlayer", MethodType.methodType(Player.class))
+            .asType(MethodType.methodType(Player.class, Object.class));
+        getPacket = getter(lookup, event, "getPacket", container);
+        getPacketType = getter(lookup, event, "getPacketType", packetType);
+        setPacket = lookup.findVirtual(event, "setPacket", MethodType.methodType(void.class, container))
+            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+        getIntegers = getter(lookup, container, "getIntegers", modifier);
+        getShorts = getter(lookup, container, "getShorts", modifier);
+        getDoubles = getter(lookup, container, "getDoubles", modifier);
+        getHandle = getter(lookup, container, "getHandle", Object.class);
+        deepClone = getter(lookup, container, "deepClone", container);
+        getIntLists = optionalGetter(lookup, container, "getIntLists", modifier);
+        shallowClone = optionalGetter(lookup, container, "shallowClone", container);
+        getEntityTypes = optionalGetter(lookup, container, "getEntityTypeModifier", modifier);
+        getUuids = optionalGetter(lookup, container, "getUUIDs", modifier);
+
+        read = lookup.findVirtual(modifier, "read", MethodType.methodType(Object.class, int.class))
+            .asType(MethodType.methodType(Object.class, Object.class, int.class));
+        write = lookup.findVirtual(modifier, "write", MethodType.methodType(modifier, int.class, Object.class))
+            .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+
+        MethodHandle s = null;
+        try {
+            Class<?> manager = Class.forName("com.comphenix.protocol.ProtocolManager", false, cl);
+            s = lookup.findVirtual(manager, "sendServerPacket", MethodType.methodType(void.class, Player.class, container))
+                .bindTo(protocolManager)
+                .asType(MethodType.methodType(void.class, Player.class, Object.class));
+        } catch (ReflectiveOperationException ignored) {}
+        send = s;
+    }
+
+    /** Resolves every accessor, or throws when this ProtocolLib lacks a required one. */
+    static ProtocolLibAccess resolve(ClassLoader cl, Object protocolManager) throws ReflectiveOperationException {
+        return new ProtocolLibAccess(cl, protocolManager);
+    }
+
+    private static MethodHandle getter(MethodHandles.Lookup lookup, Class<?> owner, String name, Class<?> returns)
+            throws ReflectiveOperationException {
+        return lookup.findVirtual(owner, name, MethodType.methodType(returns)).asType(GETTER);
+    }
+
+    private static @Nullable MethodHandle optionalGetter(MethodHandles.Lookup lookup, Class<?> owner, String name, Class<?> returns) {
+        try {
+            return getter(lookup, owner, name, returns);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    boolean isCancelled(Object event) throws Throwable {
+        return (boolean) isCancelled.invokeExact(event);
+    }
+
+    void cancel(Object event) throws Throwable {
+        setCancelled.invokeExact(event, true);
+    }
+
+    Player player(Object event) throws Throwable {
+        return (Player) getPlayer.invokeExact(event);
+    }
+
+    Object packet(Object event) throws Throwable {
+        return (Object) getPacket.invokeExact(event);
+    }
+
+    Object packetType(Object event) throws Throwable {
+        return (Object) getPacketType.invokeExact(event);
+    }
+
+    void setPacket(Object event, Object container) throws Throwable {
+        setPacket.invokeExact(event, container);
+    }
+
+    int readInt(Object container, int index) throws Throwable {
+        Object ints = (Object) getIntegers.invokeExact(container);
+        return ((Number) (Object) read.invokeExact(ints, index)).intValue();
+    }
+
+    /** Reads three consecutive short fields (relative move deltas) into {@code out}. */
+    void readShorts3(Object container, int[] out) throws Throwable {
+        Object shorts = (Object) getShorts.invokeExact(container);
+        for (int i = 0; i < 3; i++) out[i] = ((Number) (Object) read.invokeExact(shorts, i)).intValue();
+    }
+
+    void writeShorts3(Object container, int a, int b, int c) throws Throwable {
+        Object shorts = (Object) getShorts.invokeExact(container);
+        write.invokeExact(shorts, 0, (Object) (short) a);
+        write.invokeExact(shorts, 1, (Object) (short) b);
+        write.invokeExact(shorts, 2, (Object) (short) c);
+    }
+
+    /** Reads three consecutive double fields (spawn/particle position) into {@code out}. */
+    void readDoubles3(Object container, double[] out) throws Throwable {
+        Object doubles = (Object) getDoubles.invokeExact(container);
+        for (int i = 0; i < 3; i++) out[i] = ((Number) (Object) read.invokeExact(doubles, i)).doubleValue();
+    }
+
+    /** The first int list field (entity ids of a destroy packet), or null when unavailable. */
+    @Nullable java.util.List<?> readIntList(Object container) throws Throwable {
+        if (getIntLists == null) return null;
+        Object lists = (Object) getIntLists.invokeExact(container);
+        return (java.util.List<?>) (Object) read.invokeExact(lists, 0);
+    }
+
+    /** Entity type of a spawn packet, or null when this ProtocolLib cannot decode it. */
+    @Nullable EntityType readEntityType(Object container) throws Throwable {
+        if (getEntityTypes == null) return null;
+        Object types = (Object) getEntityTypes.invokeExact(container);
+        return (Object) read.invokeExact(types, 0) instanceof EntityType t ? t : null;
+    }
+
+    /** First UUID field (the entity's in spawn packets), or null when this ProtocolLib cannot read it. */
+    @Nullable java.util.UUID readUuid(Object container) throws Throwable {
+        if (getUuids == null) return null;
+        Object uuids = (Object) getUuids.invokeExact(container);
+        return (Object) read.invokeExact(uuids, 0) instanceof java.util.UUID u ? u : null;
+    }
+
+    @Override
+    public String name() {
+        return "ProtocolLib";
+    }
+
+    /** Deep copy, falling back to a shallow copy and then to the same container. */
+    @Override
+    public Object copy(Object container) {
+        try {
+            return (Object) deepClone.invokeExact(container);
+        } catch (Throwable t) {
+            try {
+                if (shallowClone != null) return (Object) shallowClone.invokeExact(container);
+            } catch (Throwable ignored) {}
+            return container;
+        }
+    }
+
+    @Override
+    public boolean canSend() {
+        return send != null;
+    }
+
+    @Override
+    public void send(Player player, Object container) throws Throwable {
+        if (send != null) send.invokeExact(player, container);
+    }
+
+    @Override
+    public Object withDeltas(Object move, int dx, int dy, int dz) throws Throwable {
+        Object copy = (Object) deepClone.invokeExact(move);
+        writeShorts3(copy, dx, dy, dz);
+        return copy;
+    }
+
+    /** The wrapped NMS packet: containers are rewrapped on the way, the handle is what stays the same. */
+    @Override
+    public Object identity(Object container) throws Throwable {
+        return (Object) getHandle.invokeExact(container);
+    }
+}
@@ -0,0 +1,184 @@
+package id.rnggagib.performance;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One player's spawn packets held back by the packet budget: a binary min-heap by distance over slot
+ * columns, with the entity id mapped to its slot ({@link IntSlotIndex}) so a later spawn of the same
+ * entity replaces the queued one and a destroy evicts it. Draining k packets is O(k log n).
+ *
+ * <p>Expiry (queue TTL) runs over a FIFO of (slot, generation) in enqueue order; entries replaced or
+ * removed since are skipped by their generation, so expiring is amortized O(log n) per entry too.
+ * Not thread-safe; {@link PlayerBudget} keeps it on the main thread.
+ */
+final class SpawnQueue {
+    private final IntSlotIndex index = new IntSlotIndex();
+    private int nextSyntheticKey = -2; // for spawns whose entity id could not be read (never deduplicated)
+
+    // By slot
+    private Object[] packets = new Object[16];
+    private double[] dist = new double[16];
+    private long[] ticks = new long[16];
+    private int[] gen = new int[16];
+    private int[] heapPos = new int[16];
+    // Heap of slots, nearest first
+    private int[] heap = new int[16];
+    private int size;
+    // Enqueue order: (slot << 32) | generation, as a growable ring
+    private long[] fifo = new long[16];
+    private int fifoHead, fifoSize;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Queues a spawn, replacing a queued one for the same entity (which keeps its heap slot, takes the
+     * new packet and distance and restarts its TTL). Returns false when the queue is full.
+     */
+    boolean offer(int entityId, Object packet, double distance, long tick, int cap) {
+        int key = entityId >= 0 ? entityId : syntheticKey();
+        int slot = index.get(key);
+        if (slot < 0) {
+            if (size >= cap) return false;
+            slot = -(index.getOrInsert(key) + 1);
+            ensureSlot(slot);
+            heap[size] = slot;
+            heapPos[slot] = size;
+            size++;
+            packets[slot] = packet;
+            dist[slot] = distance;
+            siftUp(heapPos[slot]);
+        } else {
+            double old = dist[slot];
+            packets[slot] = packet;
+            dist[slot] = distance;
+            if (distance < old) siftUp(heapPos[slot]); else siftDown(heapPos[slot]);
+        }
+        ticks[slot] = tick;
+        gen[slot]++;
+        pushFifo(slot);
+        return true;
+    }
+
+    /** Evicts the queued spawn of an entity (destroyed before it went out); true when there was one. */
+    boolean remove(int entityId) {
+        if (entityId < 0) return false;
+        int slot = index.get(entityId);
+        if (slot < 0) return false;
+        removeSlot(slot);
+        return true;
+    }
+
+    /** Nearest queued spawn, removed, or null when empty. */
+    @Nullable Object poll() {
+        if (size == 0) return null;
+        int slot = heap[0];
+        Object p = packets[slot];
+        removeSlot(slot);
+        return p;
+    }
+
+    /** Removes spawns queued before {@code minTick} (oldest first) into {@code out}. */
+    void expire(long minTick, java.util.List<Object> out) {
+        while (fifoSize > 0) {
+            long e = fifo[fifoHead];
+            int slot = (int) (e >>> 32);
+            int g = (int) e;
+            boolean live = slot < index.highWater() && index.keyAt(slot) != Integer.MIN_VALUE && gen[slot] == g;
+            if (live && ticks[slot] >= minTick) break;
+            fifoHead = (fifoHead + 1) & (fifo.length - 1);
+            fifoSize--;
+            if (live) {
+                out.add(packets[slot]);
+                removeSlot(slot);
+            }
+        }
+    }
+
+    void clear() {
+        index.clear();
+        java.util.Arrays.fill(packets, null);
+        size = 0;
+        fifoHead = 0;
+        fifoSize = 0;
+    }
+
+    private void removeSlot(int slot) {
+        int pos = heapPos[slot];
+        int last = heap[--size];
+        if (pos < size) {
+            heap[pos] = last;
+            heapPos[last] = pos;
+            siftDown(pos);
+            siftUp(heapPos[last]);
+        }
+        packets[slot] = null;
+        gen[slot]++; // stale FIFO entries for this slot no longer match
+        index.remove(index.keyAt(slot));
+    }
+
+    private void siftUp(int pos) {
+        int slot = heap[pos];
+        double d = dist[slot];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            int ps = heap[parent];
+            if (dist[ps] <= d) break;
+            heap[pos] = ps;
+            heapPos[ps] = pos;
+            pos = parent;
+        }
+        heap[pos] = slot;
+        heapPos[slot] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int slot = heap[pos];
+        double d = dist[slot];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) break;
+            if (child + 1 < size && dist[heap[child + 1]] < dist[heap[child]]) child++;
+            int cs = heap[child];
+            if (dist[cs] >= d) break;
+            heap[pos] = cs;
+            heapPos[cs] = pos;
+            pos = child;
+        }
+        heap[pos] = slot;
+        heapPos[slot] = pos;
+    }
+
+    private void pushFifo(int slot) {
+        if (fifoSize == fifo.length) {
+            long[] grown = new long[fifo.length << 1];
+            for (int i = 0; i < fifoSize; i++) grown[i] = fifo[(fifoHead + i) & (fifo.length - 1)];
+            fifo = grown;
+            fifoHead = 0;
+        }
+        fifo[(fifoHead + fifoSize) & (fifo.length - 1)] = ((long) slot << 32) | (gen[slot] & 0xffffffffL);
+        fifoSize++;
+    }
+
+    private void ensureSlot(int slot) {
+        if (slot < packets.length) return;
+        int cap = Math.max(packets.length << 1, slot + 1);
+        packets = java.util.Arrays.copyOf(packets, cap);
+        dist = java.util.Arrays.copyOf(dist, cap);
+        ticks = java.util.Arrays.copyOf(ticks, cap);
+        gen = java.util.Arrays.copyOf(gen, cap);
+        heapPos = java.util.Arrays.copyOf(heapPos, cap);
+        heap = java.util.Arrays.copyOf(heap, cap);
+    }
+
+    private int syntheticKey() {
+        int k = nextSyntheticKey;
+        nextSyntheticKey = k == Integer.MIN_VALUE + 1 ? -2 : k - 1;
+        return k;
+    }
+}
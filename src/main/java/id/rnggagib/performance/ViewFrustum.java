@@ -0,0 +1,55 @@
+package id.rnggagib.performance;
+
+/**
+ * Player view frustum for culling. Each viewer gets the four side planes of its view pyramid, built
+ * from yaw/pitch, a vertical FOV and an aspect ratio; all planes pass through the eye, so only their
+ * inward unit normals are stored (12 doubles per viewer). An entity is outside when its bounding box
+ * lies entirely behind one of the planes. The same layout is consumed by the native frustum kernel.
+ */
+final class ViewFrustum {
+    static final int STRIDE = 12; // 4 planes x (nx, ny, nz)
+
+    private static final double MAX_HALF_ANGLE = Math.toRadians(89.0);
+
+    private ViewFrustum() {}
+
+    /** Half-angles in radians: {vertical, horizontal}, widened by {@code marginDegrees} and clamped below 90. */
+    static double[] halfAngles(double fovDegrees, double aspect, double marginDegrees) {
+        double hv = Math.toRadians(Math.max(1.0, Math.min(170.0, fovDegrees)) * 0.5);
+        double hh = Math.atan(Math.tan(hv) * Math.max(0.1, aspect));
+        double m = Math.toRadians(Math.max(0.0, marginDegrees));
+        return new double[]{Math.min(MAX_HALF_ANGLE, hv + m), Math.min(MAX_HALF_ANGLE, hh + m)};
+    }
+
+    /** Fills {@code p} (e.g. {@code snap.vplanes}) for every viewer of the snapshot. */
+    static void buildPlanes(CullingSnapshot snap, double[] p, double halfVertical, double halfHorizontal) {
+        double sv = Math.sin(halfVertical), cv = Math.cos(halfVertical);
+        double sh = Math.sin(halfHorizontal), ch = Math.cos(halfHorizontal);
+        for (int v = 0; v < snap.viewerCount; v++) {
+            double fx = snap.vdx[v], fy = snap.vdy[v], fz = snap.vdz[v];
+            // Right is horizontal (Minecraft has no roll); up = right x forward
+            double ry = Math.toRadians(snap.vyaw[v]);
+            double rx = -Math.cos(ry), rz = -Math.sin(ry);
+            double ux = -rz * fy, uy = rz * fx - rx * fz, uz = rx * fy;
+            int b = v * STRIDE;
+            // right, left, top, bottom
+            p[b]     = -rx * ch + fx * sh; p[b + 1]  = fy * sh;           p[b + 2]  = -rz * ch + fz * sh;
+            p[b + 3] =  rx * ch + fx * sh; p[b + 4]  = fy * sh;           p[b + 5]  =  rz * ch + fz * sh;
+            p[b + 6] = -ux * cv + fx * sv; p[b + 7]  = -uy * cv + fy * sv; p[b + 8]  = -uz * cv + fz * sv;
+            p[b + 9] =  ux * cv + fx * sv; p[b + 10] =  uy * cv + fy * sv; p[b + 11] =  uz * cv + fz * sv;
+        }
+    }
+
+    /**
+     * True when the box centred at (x, y, z) relative to the eye, with half extents (hw, hh, hw),
+     * lies fully outside one of the planes starting at {@code base}.
+     */
+    static boolean outside(double[] planes, int base, double x, double y, double z, double hw, double hh) {
+        for (int q = base; q < base + STRIDE; q += 3) {
+            double nx = planes[q], ny = planes[q + 1], nz = planes[q + 2];
+            double radius = hw * (Math.abs(nx) + Math.abs(nz)) + hh * Math.abs(ny);
+            if (nx * x + ny * y + nz * z < -radius) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package id.rnggagib.performance;
+
+/**
+ * Per-(entity, viewer) visibility as two bitset matrices: rows are entity state slots, columns are
+ * viewer state slots, packed 64 viewers per word. {@code hidden} holds the last decision sent to
+ * each viewer, {@code known} whether that decision is trusted (cleared for new entities and for
+ * viewer slots that were released and reused, so the next evaluation is always re-sent).
+ */
+final class VisibilityMatrix {
+    private int rows;
+    private int stride; // words per row
+    private long[] hidden = new long[0];
+    private long[] known = new long[0];
+
+    int stride() { return stride; }
+
+    /** Grows to cover the given slot high-water marks; a wider row re-lays out existing rows. */
+    void ensure(int rowCount, int columnCount) {
+        int words = Math.max(1, (columnCount + 63) >>> 6);
+        if (words > stride) {
+            int cap = Math.max(rows, rowCount);
+            long[] nh = new long[cap * words], nk = new long[cap * words];
+            for (int r = 0; r < rows; r++) {
+                System.arraycopy(hidden, r * stride, nh, r * words, stride);
+                System.arraycopy(known, r * stride, nk, r * words, stride);
+            }
+            hidden = nh; known = nk; stride = words; rows = cap;
+        }
+        if (rowCount > rows) {
+            int cap = Math.max(rowCount, rows << 1);
+            hidden = java.util.Arrays.copyOf(hidden, cap * stride);
+            known = java.util.Arrays.copyOf(known, cap * stride);
+            rows = cap;
+        }
+    }
+
+    void clearRow(int row) {
+        if (row >= rows) return;
+        int base = row * stride;
+        java.util.Arrays.fill(hidden, base, base + stride, 0L);
+        java.util.Arrays.fill(known, base, base + stride, 0L);
+    }
+
+    void clearColumn(int column) {
+        int word = column >>> 6;
+        if (word >= stride) return;
+        long keep = ~(1L << column);
+        for (int idx = word; idx < hidden.length; idx += stride) {
+            hidden[idx] &= keep;
+            known[idx] &= keep;
+        }
+    }
+
+    /** Last decision sent for (row, column) is hidden; false when not known. */
+    boolean hidden(int row, int column) {
+        int idx = row * stride + (column >>> 6);
+        return (hidden[idx] & known[idx] & (1L << column)) != 0;
+    }
+
+    /** A decision for (row, column) was sent and is still trusted. */
+    boolean known(int row, int column) {
+        return (known[row * stride + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    /**
+     * Merges a freshly evaluated row: bits in {@code mask} (viewers evaluated this cycle) take the
+     * value from {@code bits}, others keep their last decision. Returns, per word, the bits that must
+     * be sent to the client (changed, or not yet known) via {@code emit}.
+     */
+    void merge(int row, long[] mask, long[] bits, long[] emit) {
+        int base = row * stride;
+        for (int w = 0; w < stride; w++) {
+            long m = mask[w], nb = bits[w] & m;
+            long old = hidden[base + w];
+            emit[w] = ((old ^ nb) | ~known[base + w]) & m;
+            hidden[base + w] = (old & ~m) | nb;
+            known[base + w] |= m;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package id.rnggagib.nativebridge;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * JDK 22+ FFM binding to the culling-rs C ABI exports; see the base version for the contract. Heap
+ * columns go through critical downcalls ({@code Linker.Option.critical(true)}), so the kernel reads
+ * and writes the Java arrays in place; direct buffers are wrapped with {@link MemorySegment#ofBuffer}.
+ * The library lookup lives in a shared arena so every culling worker can call the handles.
+ */
+public final class NativeCullingFfm {
+    private static volatile Handles handles;
+
+    private record Handles(Arena arena, MethodHandle batch, MethodHandle byType, MethodHandle frustum) {}
+
+    private NativeCullingFfm() {}
+
+    public static boolean isSupported() {
+        return true;
+    }
+
+    public static synchronized boolean load(Path library) {
+        if (handles != null) return true;
+        Arena arena = Arena.ofShared();
+        try {
+            SymbolLookup lookup = SymbolLookup.libraryLookup(library, arena);
+            var batch = lookup.find("gtk_cull_batch");
+            var byType = lookup.find("gtk_cull_by_type");
+            var frustum = lookup.find("gtk_cull_frustum");
+            if (batch.isEmpty() || byType.isEmpty() || frustum.isEmpty()) {
+                arena.close();
+                return false;
+            }
+            Linker linker = Linker.nativeLinker();
+            Linker.Option critical = Linker.Option.critical(true);
+            handles = new Handles(arena,
+                linker.downcallHandle(batch.get(), FunctionDescriptor.of(JAVA_INT,
+                    ADDRESS, ADDRESS, ADDRESS, JAVA_INT, JAVA_DOUBLE, JAVA_DOUBLE, JAVA_DOUBLE, ADDRESS), critical),
+                linker.downcallHandle(byType.get(), FunctionDescriptor.of(JAVA_INT,
+                    ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, ADDRESS), critical),
+                linker.downcallHandle(frustum.get(), FunctionDescriptor.of(JAVA_INT,
+                    ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS, JAVA_INT, ADDRESS, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, ADDRESS), critical));
+            return true;
+        } catch (Throwable t) {
+            arena.close();
+            throw t;
+        }
+    }
+
+    public static void shouldCullBatchDirect(ByteBuffer distancesDoubles, ByteBuffer speedsDoubles,
+                                             ByteBuffer cosAnglesDoubles, ByteBuffer outFlagsBytes,
+                                             int count, double maxDistance, double speedThreshold, double cosAngleThreshold) {
+        var h = bound();
+        MemorySegment d = MemorySegment.ofBuffer(distancesDoubles), s = MemorySegment.ofBuffer(speedsDoubles);
+        MemorySegment c = MemorySegment.ofBuffer(cosAnglesDoubles), out = MemorySegment.ofBuffer(outFlagsBytes);
+        long bytes = (long) count * Double.BYTES;
+        if (count <= 0 || d.byteSize() < bytes || s.byteSize() < bytes || c.byteSize() < bytes || out.byteSize() < count) {
+            throw new IllegalArgumentException("Direct buffers too small for requested count");
+        }
+        int rc;
+        try {
+            rc = (int) h.batch.invokeExact(d, s, c, count, maxDistance, speedThreshold, cosAngleThreshold, out);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        check(rc, "gtk_cull_batch");
+    }
+
+    public static void shouldCullBatchByType(double[] distances, double[] speeds, double[] cosAngles, int[] typeCodes,
+                                             double[] typeMaxDistance, double[] typeSpeedThreshold, double[] typeCosAngleThreshold,
+                                             int count, byte[] outFlags) {
+        var h = bound();
+        int types = typeMaxDistance.length;
+        if (count <= 0 || distances.length < count || speeds.length < count || cosAngles.length < count
+                || typeCodes.length < count || outFlags.length < count) {
+            throw new IllegalArgumentException("Arrays shorter than count");
+        }
+        if (types == 0 || typeSpeedThreshold.length < types || typeCosAngleThreshold.length < types) {
+            throw new IllegalArgumentException("type thresholds length mismatch or zero");
+        }
+        int rc;
+        try {
+            rc = (int) h.byType.invokeExact(MemorySegment.ofArray(distances), MemorySegment.ofArray(speeds),
+                MemorySegment.ofArray(cosAngles), MemorySegment.ofArray(typeCodes), MemorySegment.ofArray(typeMaxDistance),
+                MemorySegment.ofArray(typeSpeedThreshold), MemorySegment.ofArray(typeCosAngleThreshold), types, count,
+                MemorySegment.ofArray(outFlags));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        check(rc, "gtk_cull_by_type");
+    }
+
+    public static void shouldCullBatchFrustum(double[] distances, double[] speeds, double[] boxRel, double[] boxExtent,
+                                              int[] pairViewers, double[] viewerPlanes, int[] typeCodes,
+                                              double[] typeMaxDistance, double[] typeSpeedThreshold,
+                                              int count, byte[] outFlags) {
+        var h = bound();
+        int types = typeMaxDistance.length;
+        if (count <= 0 || distances.length < count || speeds.length < count || boxRel.length < 3L * count
+                || boxExtent.length < 2L * count || pairViewers.length < count || typeCodes.length < count || outFlags.length < count) {
+            throw new IllegalArgumentException("Arrays shorter than count");
+        }
+        if (types == 0 || typeSpeedThreshold.length < types) {
+            throw new IllegalArgumentException("type thresholds length mismatch or zero");
+        }
+        int rc;
+        try {
+            rc = (int) h.frustum.invokeExact(MemorySegment.ofArray(distances), MemorySegment.ofArray(speeds),
+                MemorySegment.ofArray(boxRel), MemorySegment.ofArray(boxExtent), MemorySegment.ofArray(pairViewers),
+                MemorySegment.ofArray(viewerPlanes), viewerPlanes.length, MemorySegment.ofArray(typeCodes),
+                MemorySegment.ofArray(typeMaxDistance), MemorySegment.ofArray(typeSpeedThreshold), types, count,
+                MemorySegment.ofArray(outFlags));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        check(rc, "gtk_cull_frustum");
+    }
+
+    private static Handles bound() {
+        var h = handles;
+        if (h == null) throw new IllegalStateException("FFM culling binding not loaded");
+        return h;
+    }
+
+    private static void check(int rc, String symbol) {
+        if (rc != 0) throw new IllegalArgumentException(symbol + " rejected its arguments (" + rc + ")");
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException re) return re;
+        if (t instanceof Error e) throw e;
+        return new IllegalStateException(t);
+    }
+}